@@ -0,0 +1,63 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decompressing a single entry, through {@link ArchiveInput} and through the decoder alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecompressBenchmark {
+
+    @Param({"4096", "65536", "1048576"})
+    public int rawSize;
+
+    private ByteBuffer compressed;
+    private ArchiveInput input;
+    private byte[] output;
+
+    @Setup
+    public void setup() {
+        byte[] contents = SyntheticArchives.contents(new Random(rawSize), rawSize);
+        compressed = ByteBuffer.wrap(new DclEncoder().encode(ByteBuffer.wrap(contents)));
+        input = new ArchiveInput(new byte[0]);
+        output = new byte[rawSize];
+    }
+
+    @Benchmark
+    public byte[] decompress(Throughput throughput) throws IOException {
+        byte[] result = input.decompress(compressed, rawSize);
+        throughput.entries++;
+        throughput.bytes += rawSize;
+        return result;
+    }
+
+    @Benchmark
+    public byte[] decodeIntoReusedArray(Throughput throughput) throws DecompressionException {
+        DclDecoder.decode(compressed, output);
+        throughput.entries++;
+        throughput.bytes += rawSize;
+        return output;
+    }
+}
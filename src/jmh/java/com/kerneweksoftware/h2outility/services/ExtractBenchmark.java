@@ -0,0 +1,87 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading every file of an archive, and writing them out with {@link DirectoryOutput}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExtractBenchmark {
+
+    @Param({"100", "5000"})
+    public int fileCount;
+
+    @Param({"1024", "65536"})
+    public int fileSize;
+
+    private ArchiveInput input;
+    private ParallelExtractor extractor;
+    private ArchivedData data;
+    private Path outputDirectory;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        input = new ArchiveInput(SyntheticArchives.write(fileCount, fileSize));
+        extractor = new ParallelExtractor(Runtime.getRuntime().availableProcessors(),
+            ParallelExtractor.DEFAULT_MAX_IN_FLIGHT_BYTES);
+        data = input.readContents();
+        outputDirectory = Files.createTempDirectory("extract");
+    }
+
+    @TearDown
+    public void teardown() {
+        extractor.close();
+    }
+
+    @Benchmark
+    public ArchivedData readContents(Throughput throughput)
+            throws IncorrectFileTypeException, DecompressionException {
+        ArchivedData result = input.readContents();
+        count(throughput);
+        return result;
+    }
+
+    @Benchmark
+    public ArchivedData readContentsParallel(Throughput throughput)
+            throws IncorrectFileTypeException, DecompressionException, InterruptedException {
+        ArchivedData result = input.readContents(extractor);
+        count(throughput);
+        return result;
+    }
+
+    @Benchmark
+    public void directoryOutputWrite(Throughput throughput) throws IOException {
+        new DirectoryOutput(data, outputDirectory, Runtime.getRuntime().availableProcessors()).write();
+        count(throughput);
+    }
+
+    private void count(Throughput throughput) {
+        throughput.entries += fileCount;
+        throughput.bytes += (long) fileCount * fileSize;
+    }
+}
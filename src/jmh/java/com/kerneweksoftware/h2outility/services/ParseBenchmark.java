@@ -0,0 +1,90 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading everything but the file data: the header and file entries, then the name tables.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1000", "50000"})
+    public int fileCount;
+
+    private ByteBuffer archive;
+    private ArchiveInput input;
+    private int namesOffset;
+    private ByteBuffer rawNames;
+    private int nameCount;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path path = SyntheticArchives.write(fileCount, 16);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            archive = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        input = new ArchiveInput(archive);
+        ArchiveIndex index = input.readIndex();
+        namesOffset = index.getNamesOffset();
+
+        List<String> fileNames = index.getFileNames();
+        nameCount = fileNames.size();
+        rawNames = ByteBuffer.wrap(String.join("\0", fileNames).concat("\0").getBytes(StandardCharsets.UTF_16LE))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public ArchiveIndex readIndex(Throughput throughput)
+            throws IncorrectFileTypeException, DecompressionException {
+        ArchiveIndex index = input.readIndex();
+        throughput.entries += index.getEntries().size();
+        return index;
+    }
+
+    @Benchmark
+    public List<String> getNames(Throughput throughput) throws DecompressionException {
+        archive.position(namesOffset);
+        List<String> folderNames = input.getNames();
+        List<String> fileNames = input.getNames();
+        throughput.entries += folderNames.size() + fileNames.size();
+        return fileNames;
+    }
+
+    @Benchmark
+    public List<String> getStrings(Throughput throughput) {
+        rawNames.position(0);
+        List<String> names = input.getStrings(rawNames, nameCount);
+        throughput.entries += nameCount;
+        throughput.bytes += rawNames.capacity();
+        return names;
+    }
+}
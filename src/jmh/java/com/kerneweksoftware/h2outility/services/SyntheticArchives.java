@@ -0,0 +1,98 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
+
+/**
+ * Builds archives for the benchmarks to read, so no game archives are needed to run them.
+ */
+final class SyntheticArchives {
+
+    private static final String[] WORDS = {
+        "dragon", "serpent", "lotus", "wolf", "clan", "peasant", "zen", "master", "yin", "yang", "rice", "water",
+        "battle", "realms", "kenji", "horse", "archer", "spearman", "\n", "\t", "0", "1", "2", "3", "=", ";"
+    };
+
+    private SyntheticArchives() {
+    }
+
+    /**
+     * Builds contents that compress roughly as well as the text and model files found in game archives.
+     */
+    static byte[] contents(Random random, int size) {
+        StringBuilder sb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i++) {
+            contents[i] = (byte) sb.charAt(i);
+        }
+        // A run of noise, as in textures, so not everything compresses well
+        for (int i = size / 2; i < size / 2 + size / 8; i++) {
+            contents[i] = (byte) random.nextInt(256);
+        }
+        return contents;
+    }
+
+    /**
+     * Builds the model of an archive, spreading the files across a small folder hierarchy.
+     */
+    static ArchivedData data(int fileCount, int fileSize) {
+        Random random = new Random(fileCount * 31L + fileSize);
+        int folderCount = Math.max(1, fileCount / 100);
+        ArchivedFolder[] folders = new ArchivedFolder[folderCount];
+        for (int i = 0; i < folderCount; i++) {
+            folders[i] = new ArchivedFolder();
+            int parentIndex = i == 0 ? -1 : (i - 1) / 4;
+            folders[i].setParentIndex(parentIndex);
+            folders[i].setName(parentIndex < 0 ? "Data" : folders[parentIndex].getName() + "\\Folder" + i);
+        }
+
+        List<ArchivedFile> topLevelFiles = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            ArchivedFile file = new ArchivedFile();
+            file.setId(i);
+            file.setName("File" + i + ".txt");
+            file.setContents(contents(random, fileSize));
+            if (i % 10 == 0) {
+                file.setFolderIndex(-1);
+                topLevelFiles.add(file);
+            } else {
+                file.setFolderIndex(i % folderCount);
+                folders[i % folderCount].getFiles().add(file);
+            }
+        }
+
+        ArchivedData data = new ArchivedData();
+        data.setName("Synthetic");
+        data.setFolders(folders);
+        data.setTopLevelFiles(topLevelFiles);
+        data.setUnusedFiles(new ArrayList<>());
+        return data;
+    }
+
+    /**
+     * Writes an archive of the given shape to a temporary file, deleted when the JVM exits.
+     */
+    static Path write(int fileCount, int fileSize) throws IOException, InterruptedException {
+        Path archive = Files.createTempFile("synthetic", ".H2O");
+        archive.toFile().deleteOnExit();
+        try (ArchiveOutput output = new ArchiveOutput(Runtime.getRuntime().availableProcessors(),
+                ParallelExtractor.DEFAULT_MAX_IN_FLIGHT_BYTES);
+                FileChannel channel = FileChannel.open(archive, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            output.write(data(fileCount, fileSize), channel);
+        }
+        return archive;
+    }
+}
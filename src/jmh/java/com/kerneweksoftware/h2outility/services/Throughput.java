@@ -0,0 +1,24 @@
+package com.kerneweksoftware.h2outility.services;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Rates reported alongside each benchmark. JMH reports these per second, so bytes gives throughput in bytes per
+ * second and entries gives entries per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+    public long bytes;
+    public long entries;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        entries = 0;
+    }
+}
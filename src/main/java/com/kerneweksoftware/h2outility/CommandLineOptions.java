@@ -0,0 +1,235 @@
+package com.kerneweksoftware.h2outility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.kerneweksoftware.h2outility.server.ArchiveServer;
+import com.kerneweksoftware.h2outility.services.ParallelExtractor;
+
+import lombok.Data;
+
+/**
+ * Options given to {@link H2oUtility} on the command line.
+ * 
+ * Options take the form <code>--name=value</code>, anything not starting with <code>--</code> is taken as the path
+ * of an archive.
+ * 
+ * <p><b>--threads</b> - Number of threads to decompress files with. Defaults to the number of processors.</p>
+ * <p><b>--io-threads</b> - Number of threads to write files with. Defaults to the number of processors.</p>
+ * <p><b>--stream</b> - Write each file as soon as it is decompressed, rather than once the whole archive is read.</p>
+ * <p><b>--verify</b> - Check the archive against its stored checksums instead of extracting it.</p>
+ * <p><b>--pack</b> - Directory to pack into a new archive, written to the given path, instead of extracting.</p>
+ * <p><b>--read</b> - Path of a file to write to standard output, looked up across every archive given. Archives given
+ * first take priority.</p>
+ * <p><b>--zip</b> - Write the archive's files into a ZIP file at the given path instead of a folder, or to standard
+ * output for -.</p>
+ * <p><b>--tar</b> - Write the archive's files as a tar stream to the given path instead of a folder, or to standard
+ * output for -.</p>
+ * <p><b>--include</b> - Glob pattern of paths to extract, e.g. Data/&#42;&#42;.tga. May be given more than
+ * once.</p>
+ * <p><b>--exclude</b> - Glob pattern of paths not to extract. May be given more than once.</p>
+ * <p><b>--include-regex</b> - Regular expression found in paths to extract. May be given more than once.</p>
+ * <p><b>--exclude-regex</b> - Regular expression found in paths not to extract. May be given more than once.</p>
+ * <p><b>--extension</b> - Comma separated extensions of the files to extract.</p>
+ * <p><b>--folder</b> - Folder to extract the files of, including those of folders beneath it. May be given more than
+ * once.</p>
+ * <p><b>--min-size</b> - Smallest size in bytes of the files to extract.</p>
+ * <p><b>--max-size</b> - Largest size in bytes of the files to extract.</p>
+ * <p><b>--diff</b> - Older version of the archive to compare the archive given against, listing files added, removed
+ * and changed instead of extracting.</p>
+ * <p><b>--diff-contents</b> - Compare the contents of files found in both versions as well as their checksums.</p>
+ * <p><b>--delta</b> - Path to write the files added and changed since the older version to, as a new archive.</p>
+ * <p><b>--incremental</b> - Skip files already extracted with the same contents, writing only new and changed files.
+ * Implies --stream.</p>
+ * <p><b>--batch</b> - Extract every archive given, with directories searched for archives and glob patterns expanded,
+ * through one shared pool of threads.</p>
+ * <p><b>--output</b> - Directory to extract archives beneath in batch mode. Defaults to the working directory.</p>
+ * <p><b>--index-cache</b> - Keep each archive's index in a file beside it, or in the given directory, so archives
+ * opened again while unchanged are not parsed again.</p>
+ * <p><b>--serve</b> - Keep running and answer requests for archives over HTTP on the loopback address, see
+ * {@link ArchiveServer}.</p>
+ * <p><b>--port</b> - Port to serve on. Defaults to 7460.</p>
+ * <p><b>--metrics</b> - Print time spent in each phase, bytes in and out and decompression latencies once done.</p>
+ * <p><b>--max-in-flight</b> - Megabytes of decompressed data to hold at once while extracting. Defaults to 64.</p>
+ */
+@Data
+public class CommandLineOptions {
+    private List<String> paths = new ArrayList<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private boolean stream;
+    private boolean verify;
+    private String pack;
+    private String read;
+    private String zip;
+    private String tar;
+    private List<String> includes = new ArrayList<>();
+    private List<String> excludes = new ArrayList<>();
+    private List<String> includeRegexes = new ArrayList<>();
+    private List<String> excludeRegexes = new ArrayList<>();
+    private List<String> extensions = new ArrayList<>();
+    private List<String> folders = new ArrayList<>();
+    private long minSize;
+    private long maxSize = Long.MAX_VALUE;
+    private String diff;
+    private boolean diffContents;
+    private String delta;
+    private boolean incremental;
+    private boolean batch;
+    private String output = "";
+    private String indexCache;
+    private boolean serve;
+    private int port = ArchiveServer.DEFAULT_PORT;
+    private boolean metrics;
+    private long maxInFlightBytes = ParallelExtractor.DEFAULT_MAX_IN_FLIGHT_BYTES;
+
+    /**
+     * Parses the given command line arguments.
+     * 
+     * @param args Arguments passed to the program.
+     * @return Parsed options.
+     * @throws IllegalArgumentException When an option is not recognised or its value is invalid.
+     */
+    public static CommandLineOptions parse(String[] args) {
+        CommandLineOptions options = new CommandLineOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                options.getPaths().add(arg);
+                continue;
+            }
+
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? null : arg.substring(separator + 1);
+            switch (name) {
+                case "threads":
+                    options.setThreads(parsePositiveInt(name, value));
+                    break;
+                case "io-threads":
+                    options.setIoThreads(parsePositiveInt(name, value));
+                    break;
+                case "stream":
+                    options.setStream(true);
+                    break;
+                case "verify":
+                    options.setVerify(true);
+                    break;
+                case "pack":
+                    options.setPack(parseString(name, value));
+                    break;
+                case "read":
+                    options.setRead(parseString(name, value));
+                    break;
+                case "zip":
+                    options.setZip(parseString(name, value));
+                    break;
+                case "tar":
+                    options.setTar(parseString(name, value));
+                    break;
+                case "include":
+                    options.getIncludes().add(parseString(name, value));
+                    break;
+                case "exclude":
+                    options.getExcludes().add(parseString(name, value));
+                    break;
+                case "include-regex":
+                    options.getIncludeRegexes().add(parseRegex(name, value));
+                    break;
+                case "exclude-regex":
+                    options.getExcludeRegexes().add(parseRegex(name, value));
+                    break;
+                case "extension":
+                    options.getExtensions().addAll(List.of(parseString(name, value).split(",")));
+                    break;
+                case "folder":
+                    options.getFolders().add(parseString(name, value));
+                    break;
+                case "min-size":
+                    options.setMinSize(parseSize(name, value));
+                    break;
+                case "max-size":
+                    options.setMaxSize(parseSize(name, value));
+                    break;
+                case "diff":
+                    options.setDiff(parseString(name, value));
+                    break;
+                case "diff-contents":
+                    options.setDiffContents(true);
+                    break;
+                case "delta":
+                    options.setDelta(parseString(name, value));
+                    break;
+                case "incremental":
+                    options.setIncremental(true);
+                    break;
+                case "batch":
+                    options.setBatch(true);
+                    break;
+                case "output":
+                    options.setOutput(parseString(name, value));
+                    break;
+                case "index-cache":
+                    options.setIndexCache(value == null ? "" : value);
+                    break;
+                case "serve":
+                    options.setServe(true);
+                    break;
+                case "port":
+                    options.setPort(parsePositiveInt(name, value));
+                    break;
+                case "metrics":
+                    options.setMetrics(true);
+                    break;
+                case "max-in-flight":
+                    options.setMaxInFlightBytes(parsePositiveInt(name, value) * 1024L * 1024L);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("Unrecognised option --%s", name));
+            }
+        }
+        return options;
+    }
+
+    private static String parseString(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(String.format("Option --%s needs a value", name));
+        }
+        return value;
+    }
+
+    private static String parseRegex(String name, String value) {
+        try {
+            Pattern.compile(parseString(name, value));
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(String.format("Option --%s needs a valid regular expression, got %s",
+                name, value));
+        }
+        return value;
+    }
+
+    private static long parseSize(String name, String value) {
+        try {
+            long size = Long.parseLong(value);
+            if (size >= 0) {
+                return size;
+            }
+        } catch (NumberFormatException e) {
+            // Falls through to the exception below
+        }
+        throw new IllegalArgumentException(String.format("Option --%s needs a size in bytes, got %s", name, value));
+    }
+
+    private static int parsePositiveInt(String name, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Falls through to the exception below
+        }
+        throw new IllegalArgumentException(String.format("Option --%s needs a positive number, got %s", name, value));
+    }
+}
@@ -1,47 +1,359 @@
 package com.kerneweksoftware.h2outility;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import java.util.zip.DataFormatException;
 
 import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
 import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.metrics.ArchiveMetrics;
+import com.kerneweksoftware.h2outility.metrics.Phase;
+import com.kerneweksoftware.h2outility.models.BatchSummary;
+import com.kerneweksoftware.h2outility.models.ChecksumMismatch;
+import com.kerneweksoftware.h2outility.models.ChecksumSection;
+import com.kerneweksoftware.h2outility.models.DiffReport;
+import com.kerneweksoftware.h2outility.models.DiffStatus;
+import com.kerneweksoftware.h2outility.models.EntryDifference;
+import com.kerneweksoftware.h2outility.models.VerificationReport;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.server.ArchiveServer;
+import com.kerneweksoftware.h2outility.services.ArchiveDiff;
 import com.kerneweksoftware.h2outility.services.ArchiveInput;
+import com.kerneweksoftware.h2outility.services.ArchiveOutput;
+import com.kerneweksoftware.h2outility.services.BatchExtractor;
 import com.kerneweksoftware.h2outility.services.DirectoryOutput;
+import com.kerneweksoftware.h2outility.services.DirectorySink;
+import com.kerneweksoftware.h2outility.services.EntryCache;
+import com.kerneweksoftware.h2outility.services.EntryFilter;
+import com.kerneweksoftware.h2outility.services.IndexCache;
+import com.kerneweksoftware.h2outility.services.ParallelExtractor;
+import com.kerneweksoftware.h2outility.services.TarSink;
+import com.kerneweksoftware.h2outility.services.VirtualFileSystem;
+import com.kerneweksoftware.h2outility.services.ZipSink;
 
 public class H2oUtility 
 {
 
-    public static void main(String[] args) throws IOException, DataFormatException {
+    public static void main(String[] args) throws IOException, DataFormatException, InterruptedException {
+        CommandLineOptions options;
+        try {
+            options = CommandLineOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        if (options.isServe()) {
+            serve(options);
+            return;
+        }
+        if (options.isBatch()) {
+            if (!batch(options)) {
+                System.exit(1);
+            }
+            return;
+        }
+
         String archivePath = "";
         String archiveName = "";
-        if (args.length == 0) {
+        if (options.getPaths().isEmpty()) {
             archivePath = getUserInput();
             archiveName = getArchiveName(archivePath);
         } else {
-            archivePath = args[args.length - 1];
+            archivePath = options.getPaths().get(options.getPaths().size() - 1);
             archiveName = getArchiveName(archivePath);
         }
 
-        ByteBuffer archive = readArchive(archivePath);
+        if (options.getPack() != null) {
+            pack(options, Paths.get(options.getPack()), Paths.get(archivePath));
+            return;
+        }
+        if (options.getRead() != null) {
+            read(options, archivePath);
+            return;
+        }
+        if (options.getDiff() != null) {
+            if (!diff(options, Paths.get(options.getDiff()), Paths.get(archivePath))) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        boolean valid = true;
+        // Standard output carries the container when extracting to "-", so everything else goes to standard error
+        PrintStream messages = "-".equals(options.getZip()) || "-".equals(options.getTar()) ? System.err : System.out;
+        ArchiveMetrics metrics = new ArchiveMetrics();
+        try (ParallelExtractor extractor = new ParallelExtractor(options.getThreads(), options.getMaxInFlightBytes())) {
+            ArchiveInput archiveInput = openArchive(options, Paths.get(archivePath));
+            archiveInput.setFilter(openFilter(options));
+            if (options.isMetrics()) {
+                archiveInput.addListener(metrics);
+            }
+            if (options.isVerify()) {
+                VerificationReport report = archiveInput.verify(extractor);
+                printReport(archiveName, report);
+                valid = report.isValid();
+            } else if (options.getZip() != null) {
+                try (ZipSink sink = new ZipSink(openOutput(options.getZip()))) {
+                    archiveInput.extract(extractor, sink);
+                }
+            } else if (options.getTar() != null) {
+                try (TarSink sink = new TarSink(openOutput(options.getTar()))) {
+                    archiveInput.extract(extractor, sink);
+                }
+            } else if (options.isStream() || options.isIncremental()) {
+                Path root = Paths.get(archiveName.replace(".H2O", ""));
+                try (DirectorySink sink = new DirectorySink(root, options.isIncremental())) {
+                    archiveInput.extract(extractor, sink);
+                }
+            } else {
+                ArchivedData archiveData = archiveInput.readContents(extractor);
+
+                archiveData.setName(archiveName.replace(".H2O", ""));
+                DirectoryOutput output = new DirectoryOutput(archiveData, null, options.getIoThreads());
+                output.write();
+            }
+            if (options.isMetrics()) {
+                printMetrics(messages, metrics);
+            }
+        } catch (IncorrectFileTypeException e) {
+            messages.println(e.getMessage());
+            valid = false;
+        } catch (DecompressionException e) {
+            messages.println(e.getMessage());
+            valid = false;
+        }
 
+        if (!valid) {
+            System.exit(1);
+        }
+    }
+
+    protected static void pack(CommandLineOptions options, Path directory, Path archivePath)
+            throws IOException, InterruptedException {
+        try (ArchiveOutput output = new ArchiveOutput(options.getThreads(), options.getMaxInFlightBytes());
+                FileChannel channel = FileChannel.open(archivePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ)) {
+            output.write(directory, channel);
+        }
+    }
+
+    protected static void read(CommandLineOptions options, String archivePath) throws IOException {
+        List<String> archivePaths = options.getPaths().isEmpty() ? List.of(archivePath) : options.getPaths();
+        List<ArchiveInput> archives = new ArrayList<>();
+        for (String path : archivePaths) {
+            archives.add(openArchive(options, Paths.get(path)));
+        }
         try {
-            ArchiveInput archiveInput = new ArchiveInput(archive);
-            ArchivedData archiveData = archiveInput.readContents();
+            VirtualFileSystem fileSystem = new VirtualFileSystem(archives);
+            System.out.write(fileSystem.readAllBytes(options.getRead()));
+            System.out.flush();
+        } catch (NoSuchFileException e) {
+            System.out.println(String.format("%s was not found in any archive", e.getMessage()));
+        } catch (IncorrectFileTypeException e) {
+            System.out.println(e.getMessage());
+        } catch (DecompressionException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-            archiveData.setName(archiveName.replace(".H2O", ""));
-            DirectoryOutput output = new DirectoryOutput(archiveData);
-            output.write();
+    protected static boolean diff(CommandLineOptions options, Path oldArchivePath, Path newArchivePath)
+            throws IOException, InterruptedException {
+        try {
+            ArchiveInput oldInput = openArchive(options, oldArchivePath);
+            ArchiveDiff diff = new ArchiveDiff(oldInput, openArchive(options, newArchivePath));
+            DiffReport report = options.isDiffContents() ? diff.compareContents() : diff.compare();
+            printDiff(report);
+            if (options.getDelta() != null) {
+                try (ArchiveOutput output = new ArchiveOutput(options.getThreads(), options.getMaxInFlightBytes());
+                        FileChannel channel = FileChannel.open(Paths.get(options.getDelta()),
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                            StandardOpenOption.READ)) {
+                    diff.writeDelta(report, output, channel);
+                }
+            }
+            return report.isIdentical();
         } catch (IncorrectFileTypeException e) {
             System.out.println(e.getMessage());
         } catch (DecompressionException e) {
             System.out.println(e.getMessage());
         }
+        return false;
+    }
+
+    protected static void serve(CommandLineOptions options) throws IOException {
+        // Left open for as long as the process runs, with the server's own threads keeping it alive
+        ParallelExtractor extractor = new ParallelExtractor(options.getThreads(), options.getMaxInFlightBytes());
+        ArchiveServer server = new ArchiveServer(options.getPort(), extractor,
+            new EntryCache(ArchiveServer.DEFAULT_CACHE_BYTES));
+        server.setIndexCache(openIndexCache(options));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            extractor.close();
+        }));
+        server.start();
+        System.out.println(String.format("Serving archives on http://%s:%s", server.getAddress().getHostString(),
+            server.getAddress().getPort()));
+    }
+
+    protected static ArchiveInput openArchive(CommandLineOptions options, Path archivePath) throws IOException {
+        ArchiveInput input = new ArchiveInput(archivePath);
+        input.setIndexCache(openIndexCache(options));
+        return input;
+    }
+
+    protected static IndexCache openIndexCache(CommandLineOptions options) {
+        if (options.getIndexCache() == null) {
+            return null;
+        }
+        String directory = options.getIndexCache();
+        return directory.isEmpty() ? new IndexCache() : new IndexCache(Paths.get(directory));
+    }
+
+    protected static EntryFilter openFilter(CommandLineOptions options) {
+        EntryFilter filter = new EntryFilter();
+        options.getIncludes().forEach(filter::include);
+        options.getExcludes().forEach(filter::exclude);
+        options.getIncludeRegexes().forEach(filter::includeRegex);
+        options.getExcludeRegexes().forEach(filter::excludeRegex);
+        options.getFolders().forEach(filter::folder);
+        filter.extension(options.getExtensions().toArray(new String[0]));
+        filter.sizeRange(options.getMinSize(), options.getMaxSize());
+        return filter.isEmpty() ? null : filter;
+    }
+
+    protected static OutputStream openOutput(String target) throws IOException {
+        if (!"-".equals(target)) {
+            return Files.newOutputStream(Paths.get(target));
+        }
+        // Closing the sink only flushes, so messages written after the container still reach the console
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+                if (((PrintStream) out).checkError()) {
+                    throw new IOException("Failed to write to standard output");
+                }
+            }
+        };
+    }
+
+    protected static boolean batch(CommandLineOptions options) throws IOException, InterruptedException {
+        List<Path> archives = BatchExtractor.findArchives(options.getPaths());
+        if (archives.isEmpty()) {
+            System.out.println("No archives found to extract");
+            return false;
+        }
+        try (ParallelExtractor extractor = new ParallelExtractor(options.getThreads(), options.getMaxInFlightBytes())) {
+            BatchExtractor batch = new BatchExtractor(extractor);
+            batch.setIncremental(options.isIncremental());
+            batch.setIndexCache(openIndexCache(options));
+            batch.setFilter(openFilter(options));
+            ArchiveMetrics metrics = new ArchiveMetrics();
+            if (options.isMetrics()) {
+                batch.setListener(metrics);
+            }
+            BatchSummary summary = batch.extract(archives, Paths.get(options.getOutput()));
+            printSummary(summary);
+            if (options.isMetrics()) {
+                printMetrics(System.out, metrics);
+            }
+            return summary.isSuccessful();
+        }
+    }
+
+    protected static void printSummary(BatchSummary summary) {
+        double seconds = summary.getElapsedNanos() / 1e9;
+        System.out.println(String.format("Extracted %s files, %s bytes from %s archives in %.1f s (%.1f MB/s)",
+            summary.getFiles(), summary.getBytes(), summary.getArchives(), seconds,
+            summary.getBytesPerSecond() / (1024 * 1024)));
+        if (summary.getSkippedFiles() > 0) {
+            System.out.println(String.format("  %s files unchanged and skipped", summary.getSkippedFiles()));
+        }
+        if (summary.getFailedFiles() > 0) {
+            System.out.println(String.format("  %s files failed to decompress", summary.getFailedFiles()));
+        }
+        for (String failure : summary.getFailedArchives()) {
+            System.out.println(String.format("  %s", failure));
+        }
+        System.out.println(summary.isSuccessful() ? "OK" : String.format("%s archives failed",
+            summary.getFailedArchives().size()));
+    }
+
+    protected static void printDiff(DiffReport report) {
+        for (EntryDifference difference : report.getDifferences()) {
+            switch (difference.getStatus()) {
+                case ADDED:
+                    System.out.println(String.format("A %s (%s bytes)", difference.getPath(),
+                        Integer.toUnsignedLong(difference.getNewRawSize())));
+                    break;
+                case REMOVED:
+                    System.out.println(String.format("D %s", difference.getPath()));
+                    break;
+                case CHANGED:
+                    String detail = difference.getFirstDifference() < 0 ? ""
+                        : String.format(", first differs at byte %s", difference.getFirstDifference());
+                    System.out.println(String.format("M %s (%s -> %s bytes%s)", difference.getPath(),
+                        Integer.toUnsignedLong(difference.getOldRawSize()),
+                        Integer.toUnsignedLong(difference.getNewRawSize()), detail));
+                    break;
+                case UNCHANGED:
+                    break;
+            }
+        }
+        System.out.println(String.format("%s added, %s removed, %s changed, %s unchanged",
+            report.count(DiffStatus.ADDED), report.count(DiffStatus.REMOVED),
+            report.count(DiffStatus.CHANGED), report.count(DiffStatus.UNCHANGED)));
+    }
+
+    protected static void printMetrics(PrintStream out, ArchiveMetrics metrics) {
+        for (Phase phase : Phase.values()) {
+            out.println(String.format("  %-8s %10.3f ms %12s bytes", phase.name().toLowerCase(),
+                metrics.getPhaseNanos(phase) / 1e6, metrics.getPhaseBytes(phase)));
+        }
+        out.println(String.format("  Decoded %s files, %s bytes in, %s bytes out, ratio %.2f",
+            metrics.getDecodedFiles(), metrics.getBytesIn(), metrics.getBytesOut(), metrics.getCompressionRatio()));
+        out.println(String.format("  Decode latency p50 < %.3f ms, p99 < %.3f ms, max < %.3f ms",
+            metrics.getDecodePercentileNanos(50) / 1e6, metrics.getDecodePercentileNanos(99) / 1e6,
+            metrics.getDecodePercentileNanos(100) / 1e6));
+        out.println(String.format("  Wrote %s bytes in %.3f ms across threads",
+            metrics.getWrittenBytes(), metrics.getWriteNanos() / 1e6));
+        out.println(String.format("  %s unused entries, %s failed files", metrics.getUnusedEntries(),
+            metrics.getFailedFiles()));
+    }
+
+    protected static void printReport(String archiveName, VerificationReport report) {
+        System.out.println(String.format("%s: checked %s files, %s bytes", archiveName, report.getCheckedFiles(),
+            report.getCheckedBytes()));
+        for (ChecksumMismatch mismatch : report.getMismatches()) {
+            String location = mismatch.getPath();
+            if (location == null) {
+                location = mismatch.getSection() == ChecksumSection.FOLDER_NAMES ? "folder names" : "file names";
+            }
+            if (mismatch.getError() != null) {
+                System.out.println(String.format("  %s could not be read: %s", location, mismatch.getError()));
+            } else {
+                System.out.println(String.format("  %s checksum %08x does not match stored %08x", location,
+                    mismatch.getActual(), mismatch.getExpected()));
+            }
+        }
+        System.out.println(report.isValid() ? "OK" : String.format("%s mismatches", report.getMismatches().size()));
     }
 
     protected static String getUserInput() {
@@ -67,11 +379,4 @@ public class H2oUtility
         }
         return name;
     }
-
-    protected static ByteBuffer readArchive(String path) throws IOException {
-        byte[] rawArchive = Files.readAllBytes(Paths.get(path));
-        ByteBuffer archive = ByteBuffer.wrap(rawArchive);
-        archive.order(ByteOrder.LITTLE_ENDIAN);
-        return archive;
-    }
 }
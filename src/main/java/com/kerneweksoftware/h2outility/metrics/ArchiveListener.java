@@ -0,0 +1,112 @@
+package com.kerneweksoftware.h2outility.metrics;
+
+/**
+ * Receives timings and counts as an archive is read, see
+ * {@link com.kerneweksoftware.h2outility.services.ArchiveInput#addListener(ArchiveListener)}.
+ * 
+ * Every method has an empty default, so only those of interest need implementing. Methods about single files are
+ * called from the pool threads decompressing them, so may be called from several threads at once and should be
+ * cheap.
+ */
+public interface ArchiveListener {
+
+    /** Listener ignoring everything. */
+    ArchiveListener NONE = new ArchiveListener() {
+    };
+
+    /**
+     * Called once a stage of reading the archive has finished.
+     * 
+     * @param phase Stage finished.
+     * @param nanos Time taken in nanoseconds.
+     * @param bytes Bytes of the archive the stage covered.
+     */
+    default void phaseCompleted(Phase phase, long nanos, long bytes) {
+    }
+
+    /**
+     * Called once the entries have been read with the number that have no data, in place of logging each.
+     * 
+     * @param count Number of unused entries.
+     */
+    default void entriesUnused(int count) {
+    }
+
+    /**
+     * Called once a file's data has been decoded. Files that are not compressed are included, with the same
+     * compressed and raw size.
+     * 
+     * @param fileId ID of the file.
+     * @param compressedSize Bytes of data read from the archive.
+     * @param rawSize Bytes of contents decoded.
+     * @param nanos Time taken to decompress in nanoseconds.
+     */
+    default void entryDecoded(int fileId, int compressedSize, int rawSize, long nanos) {
+    }
+
+    /**
+     * Called when a file's data failed to decompress.
+     * 
+     * @param fileId ID of the file.
+     * @param reason Description of the failure.
+     */
+    default void entryFailed(int fileId, String reason) {
+    }
+
+    /**
+     * Called once a file's contents have been handed to a sink.
+     * 
+     * @param fileId ID of the file.
+     * @param bytes Bytes of contents written.
+     * @param nanos Time the sink took in nanoseconds.
+     */
+    default void entryWritten(int fileId, long bytes, long nanos) {
+    }
+
+    /**
+     * Combines two listeners into one calling both in turn.
+     * 
+     * @param first Listener called first.
+     * @param second Listener called second.
+     * @return Listener forwarding to both.
+     */
+    static ArchiveListener of(ArchiveListener first, ArchiveListener second) {
+        if (first == NONE) {
+            return second;
+        }
+        if (second == NONE) {
+            return first;
+        }
+        return new ArchiveListener() {
+            @Override
+            public void phaseCompleted(Phase phase, long nanos, long bytes) {
+                first.phaseCompleted(phase, nanos, bytes);
+                second.phaseCompleted(phase, nanos, bytes);
+            }
+
+            @Override
+            public void entriesUnused(int count) {
+                first.entriesUnused(count);
+                second.entriesUnused(count);
+            }
+
+            @Override
+            public void entryDecoded(int fileId, int compressedSize, int rawSize, long nanos) {
+                first.entryDecoded(fileId, compressedSize, rawSize, nanos);
+                second.entryDecoded(fileId, compressedSize, rawSize, nanos);
+            }
+
+            @Override
+            public void entryFailed(int fileId, String reason) {
+                first.entryFailed(fileId, reason);
+                second.entryFailed(fileId, reason);
+            }
+
+            @Override
+            public void entryWritten(int fileId, long bytes, long nanos) {
+                first.entryWritten(fileId, bytes, nanos);
+                second.entryWritten(fileId, bytes, nanos);
+            }
+        };
+    }
+}
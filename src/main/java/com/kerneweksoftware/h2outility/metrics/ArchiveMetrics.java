@@ -0,0 +1,201 @@
+package com.kerneweksoftware.h2outility.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener totting up timings and counts across any number of archives, safe to share between threads.
+ * 
+ * Per file decompression times are kept in a histogram of power of two buckets, so percentiles are only accurate to
+ * within a factor of two but recording never allocates or locks.
+ */
+public class ArchiveMetrics implements ArchiveListener {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray phaseBytes = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray decodeHistogram = new AtomicLongArray(BUCKETS);
+    private final LongAdder decodedFiles = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder failedFiles = new LongAdder();
+    private final LongAdder unusedEntries = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos, long bytes) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+        phaseBytes.addAndGet(phase.ordinal(), bytes);
+    }
+
+    @Override
+    public void entriesUnused(int count) {
+        unusedEntries.add(count);
+    }
+
+    @Override
+    public void entryDecoded(int fileId, int compressedSize, int rawSize, long nanos) {
+        decodedFiles.increment();
+        bytesIn.add(Integer.toUnsignedLong(compressedSize));
+        bytesOut.add(Integer.toUnsignedLong(rawSize));
+        decodeNanos.add(nanos);
+        decodeHistogram.incrementAndGet(bucket(nanos));
+    }
+
+    @Override
+    public void entryFailed(int fileId, String reason) {
+        failedFiles.increment();
+    }
+
+    @Override
+    public void entryWritten(int fileId, long bytes, long nanos) {
+        writtenBytes.add(bytes);
+        writeNanos.add(nanos);
+    }
+
+    /**
+     * Gets the total time spent in a stage.
+     * 
+     * @param phase Stage of reading.
+     * @return Nanoseconds across every archive.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the total bytes of archive a stage covered.
+     * 
+     * @param phase Stage of reading.
+     * @return Bytes across every archive.
+     */
+    public long getPhaseBytes(Phase phase) {
+        return phaseBytes.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the number of files decoded, compressed or not.
+     * 
+     * @return Number of files.
+     */
+    public long getDecodedFiles() {
+        return decodedFiles.sum();
+    }
+
+    /**
+     * Gets the total bytes of file data read from archives.
+     * 
+     * @return Bytes before decompression.
+     */
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    /**
+     * Gets the total bytes of file contents decoded.
+     * 
+     * @return Bytes after decompression.
+     */
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Gets the total time spent decompressing files, summed across threads.
+     * 
+     * @return Nanoseconds.
+     */
+    public long getDecodeNanos() {
+        return decodeNanos.sum();
+    }
+
+    /**
+     * Gets the number of files that failed to decompress.
+     * 
+     * @return Number of files.
+     */
+    public long getFailedFiles() {
+        return failedFiles.sum();
+    }
+
+    /**
+     * Gets the number of entries without data.
+     * 
+     * @return Number of entries.
+     */
+    public long getUnusedEntries() {
+        return unusedEntries.sum();
+    }
+
+    /**
+     * Gets the total bytes of contents handed to sinks.
+     * 
+     * @return Bytes written.
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    /**
+     * Gets the total time sinks took to write files, summed across threads.
+     * 
+     * @return Nanoseconds.
+     */
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+
+    /**
+     * Gets how many times bigger files are once decompressed.
+     * 
+     * @return Bytes out divided by bytes in, or 0 before any file is decoded.
+     */
+    public double getCompressionRatio() {
+        long in = getBytesIn();
+        return in == 0 ? 0 : (double) getBytesOut() / in;
+    }
+
+    /**
+     * Gets an upper bound on the time taken to decompress the given share of files.
+     * 
+     * @param percentile Share of files between 0 and 100, e.g. 99 for the 99th percentile.
+     * @return Nanoseconds at the top of the bucket the percentile falls in, or 0 before any file is decoded.
+     */
+    public long getDecodePercentileNanos(double percentile) {
+        long[] counts = getDecodeHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of files decompressed within each power of two of nanoseconds.
+     * 
+     * @return Counts where index <code>i</code> holds files taking below <code>2^i</code> nanoseconds and at least
+     *         half that.
+     */
+    public long[] getDecodeHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = decodeHistogram.get(i);
+        }
+        return counts;
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+}
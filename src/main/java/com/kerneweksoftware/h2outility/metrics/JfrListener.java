@@ -0,0 +1,153 @@
+package com.kerneweksoftware.h2outility.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Listener emitting Java Flight Recorder events, so a recording shows where time goes without a profiler attached.
+ * 
+ * Events are only filled in and committed while a recording has them enabled, e.g. when run with
+ * <code>-XX:StartFlightRecording:filename=h2o.jfr</code>. Every
+ * {@link com.kerneweksoftware.h2outility.services.ArchiveInput} reports to this listener.
+ */
+public final class JfrListener implements ArchiveListener {
+
+    /** Shared instance, as the listener holds no state. */
+    public static final JfrListener INSTANCE = new JfrListener();
+
+    private JfrListener() {
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos, long bytes) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.name();
+            event.elapsed = nanos;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void entriesUnused(int count) {
+        UnusedEntriesEvent event = new UnusedEntriesEvent();
+        if (event.shouldCommit()) {
+            event.count = count;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void entryDecoded(int fileId, int compressedSize, int rawSize, long nanos) {
+        DecodeEvent event = new DecodeEvent();
+        if (event.shouldCommit()) {
+            event.fileId = fileId;
+            event.compressedSize = Integer.toUnsignedLong(compressedSize);
+            event.rawSize = Integer.toUnsignedLong(rawSize);
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void entryFailed(int fileId, String reason) {
+        FailureEvent event = new FailureEvent();
+        if (event.shouldCommit()) {
+            event.fileId = fileId;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void entryWritten(int fileId, long bytes, long nanos) {
+        WriteEvent event = new WriteEvent();
+        if (event.shouldCommit()) {
+            event.fileId = fileId;
+            event.bytes = bytes;
+            event.elapsed = nanos;
+            event.commit();
+        }
+    }
+
+    @Name("com.kerneweksoftware.h2outility.Phase")
+    @Label("Archive Phase")
+    @Category("H2O Utility")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.kerneweksoftware.h2outility.UnusedEntries")
+    @Label("Unused Entries")
+    @Category("H2O Utility")
+    @StackTrace(false)
+    static class UnusedEntriesEvent extends Event {
+        @Label("Count")
+        int count;
+    }
+
+    @Name("com.kerneweksoftware.h2outility.Decode")
+    @Label("File Decoded")
+    @Category("H2O Utility")
+    @StackTrace(false)
+    static class DecodeEvent extends Event {
+        @Label("File ID")
+        int fileId;
+
+        @Label("Compressed Size")
+        @DataAmount
+        long compressedSize;
+
+        @Label("Raw Size")
+        @DataAmount
+        long rawSize;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    @Name("com.kerneweksoftware.h2outility.Failure")
+    @Label("File Failed")
+    @Category("H2O Utility")
+    static class FailureEvent extends Event {
+        @Label("File ID")
+        int fileId;
+
+        @Label("Reason")
+        String reason;
+    }
+
+    @Name("com.kerneweksoftware.h2outility.Write")
+    @Label("File Written")
+    @Category("H2O Utility")
+    @StackTrace(false)
+    static class WriteEvent extends Event {
+        @Label("File ID")
+        int fileId;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+}
@@ -0,0 +1,17 @@
+package com.kerneweksoftware.h2outility.metrics;
+
+/**
+ * Stages of reading an archive, in the order they happen.
+ */
+public enum Phase {
+    /** Magic number, versions, comments and counts at the start of the archive. */
+    HEADER,
+    /** Fixed size entry of every file. */
+    ENTRIES,
+    /** Folder and file name tables, decompressed if needed. */
+    NAMES,
+    /** Parent index of every folder. */
+    FOLDERS,
+    /** Data of every file, located, decompressed and handed on. */
+    DATA
+}
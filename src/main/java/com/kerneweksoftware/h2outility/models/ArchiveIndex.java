@@ -0,0 +1,102 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Everything in a H2O archive except the file data itself.
+ * 
+ * Made up of the header, file entries, folder names, file names and folder structure. Holding this is enough to
+ * list an archive, and to jump to the data of any one file through {@link FileEntryTable#getOffset(int)}. An index
+ * read back from an index cache also holds the hash of every entry's path, so a path index over it need not hash the
+ * names again. Otherwise <b>pathHashes</b> is null.
+ */
+@Data
+public class ArchiveIndex {
+    private ArchiveHeader header;
+    private FileEntryTable entries;
+    private List<String> folderNames;
+    private List<String> fileNames;
+    private int[] folderParentIndexes;
+    private int namesOffset;
+    private int dataOffset;
+    private int[] pathHashes;
+
+    /**
+     * Gets the name of the given entry's file.
+     * 
+     * @param entry Entry from this index.
+     * @return Name of the file, or null if the entry is unused.
+     */
+    public String getFileName(FileEntry entry) {
+        return entry.isUnused() ? null : fileNames.get(entry.getFileNameIndex());
+    }
+
+    /**
+     * Gets the name of the file at the given entry index.
+     * 
+     * @param entryIndex Index of the entry in {@link #getEntries()}.
+     * @return Name of the file, or null if the entry is unused.
+     */
+    public String getFileName(int entryIndex) {
+        return entries.isUnused(entryIndex) ? null : fileNames.get(entries.getFileNameIndex(entryIndex));
+    }
+
+    /**
+     * Gets the full path of the given entry's file, being its folder name and file name separated by a backslash.
+     * 
+     * @param entry Entry from this index.
+     * @return Path of the file within the archive, or null if the entry is unused.
+     */
+    public String getPath(FileEntry entry) {
+        if (entry.isUnused()) {
+            return null;
+        }
+        return buildPath(entry.getFolderNameIndex(), entry.getFileNameIndex());
+    }
+
+    /**
+     * Gets the full path of the file at the given entry index, see {@link #getPath(FileEntry)}.
+     * 
+     * @param entryIndex Index of the entry in {@link #getEntries()}.
+     * @return Path of the file within the archive, or null if the entry is unused.
+     */
+    public String getPath(int entryIndex) {
+        if (entries.isUnused(entryIndex)) {
+            return null;
+        }
+        return buildPath(entries.getFolderNameIndex(entryIndex), entries.getFileNameIndex(entryIndex));
+    }
+
+    /**
+     * Finds the entry of the file at the given path.
+     * 
+     * @param path Full path of the file within the archive, as given by {@link #getPath(FileEntry)}.
+     * @return Matching entry, or null if there is no file at that path.
+     */
+    public FileEntry findEntry(String path) {
+        int entryIndex = indexOf(path);
+        return entryIndex < 0 ? null : entries.get(entryIndex);
+    }
+
+    /**
+     * Finds the index of the entry of the file at the given path.
+     * 
+     * @param path Full path of the file within the archive, as given by {@link #getPath(int)}.
+     * @return Index of the matching entry, or -1 if there is no file at that path.
+     */
+    public int indexOf(String path) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (path.equalsIgnoreCase(getPath(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String buildPath(int folderIndex, int fileNameIndex) {
+        String fileName = fileNames.get(fileNameIndex);
+        return folderIndex < 0 ? fileName : folderNames.get(folderIndex) + "\\" + fileName;
+    }
+}
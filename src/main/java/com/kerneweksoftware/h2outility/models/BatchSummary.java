@@ -0,0 +1,38 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Totals across every archive extracted in one batch.
+ */
+@Data
+public class BatchSummary {
+    private int archives;
+    private long files;
+    private long bytes;
+    private long failedFiles;
+    private long skippedFiles;
+    private long elapsedNanos;
+    private List<String> failedArchives = new ArrayList<>();
+
+    /**
+     * Gets the rate decompressed data was written at.
+     * 
+     * @return Bytes per second over the whole batch.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Whether every archive and every file in it was extracted.
+     * 
+     * @return True when nothing failed.
+     */
+    public boolean isSuccessful() {
+        return failedArchives.isEmpty() && failedFiles == 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.kerneweksoftware.h2outility.models;
+
+import lombok.Data;
+
+/**
+ * A section of an archive whose stored CRC32 checksum does not match its contents.
+ * 
+ * <p><b>section</b> - What was checked.</p>
+ * <p><b>fileId</b> - ID of the file, or -1 for the name tables.</p>
+ * <p><b>path</b> - Path of the file within the archive, or null for the name tables.</p>
+ * <p><b>expected</b> - Checksum stored in the archive.</p>
+ * <p><b>actual</b> - Checksum of the contents as read.</p>
+ * <p><b>error</b> - Reason the contents could not be read, in which case actual is meaningless. Otherwise null.</p>
+ */
+@Data
+public class ChecksumMismatch {
+    private ChecksumSection section;
+    private int fileId;
+    private String path;
+    private int expected;
+    private int actual;
+    private String error;
+}
@@ -0,0 +1,13 @@
+package com.kerneweksoftware.h2outility.models;
+
+/**
+ * Part of an archive covered by a stored CRC32 checksum.
+ */
+public enum ChecksumSection {
+    /** The compressed table of folder names. */
+    FOLDER_NAMES,
+    /** The compressed table of file names. */
+    FILE_NAMES,
+    /** The contents of a single file. */
+    FILE
+}
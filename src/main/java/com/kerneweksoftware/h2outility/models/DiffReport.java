@@ -0,0 +1,39 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Outcome of comparing an older and a newer version of an archive, file by file.
+ */
+@Data
+public class DiffReport {
+    private List<EntryDifference> differences = new ArrayList<>();
+
+    /**
+     * Counts the files of the given status.
+     * 
+     * @param status Status to count.
+     * @return Number of files.
+     */
+    public int count(DiffStatus status) {
+        int count = 0;
+        for (EntryDifference difference : differences) {
+            if (difference.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether every file is unchanged.
+     * 
+     * @return True when both archives hold the same files.
+     */
+    public boolean isIdentical() {
+        return count(DiffStatus.UNCHANGED) == differences.size();
+    }
+}
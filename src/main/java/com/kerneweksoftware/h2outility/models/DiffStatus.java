@@ -0,0 +1,15 @@
+package com.kerneweksoftware.h2outility.models;
+
+/**
+ * How a file differs between an older and a newer version of an archive.
+ */
+public enum DiffStatus {
+    /** Only in the newer archive. */
+    ADDED,
+    /** Only in the older archive. */
+    REMOVED,
+    /** In both archives, with different contents. */
+    CHANGED,
+    /** In both archives, with the same contents. */
+    UNCHANGED
+}
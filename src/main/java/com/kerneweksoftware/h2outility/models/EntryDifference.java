@@ -0,0 +1,30 @@
+package com.kerneweksoftware.h2outility.models;
+
+import lombok.Data;
+
+/**
+ * How one file differs between an older and a newer version of an archive.
+ * 
+ * <p><b>status</b> - Whether the file was added, removed, changed or left unchanged.</p>
+ * <p><b>path</b> - Path of the file within the archive.</p>
+ * <p><b>oldEntryIndex</b> - Index of the file's entry in the older archive, or -1 if added.</p>
+ * <p><b>newEntryIndex</b> - Index of the file's entry in the newer archive, or -1 if removed.</p>
+ * <p><b>oldRawSize</b> - Size of the file in the older archive, or 0 if added.</p>
+ * <p><b>newRawSize</b> - Size of the file in the newer archive, or 0 if removed.</p>
+ * <p><b>oldCrc32</b> - Checksum stored in the older archive, or 0 if added.</p>
+ * <p><b>newCrc32</b> - Checksum stored in the newer archive, or 0 if removed.</p>
+ * <p><b>firstDifference</b> - Offset of the first byte to differ, when contents were compared and differ. Otherwise
+ * -1.</p>
+ */
+@Data
+public class EntryDifference {
+    private DiffStatus status;
+    private String path;
+    private int oldEntryIndex = -1;
+    private int newEntryIndex = -1;
+    private int oldRawSize;
+    private int newRawSize;
+    private int oldCrc32;
+    private int newCrc32;
+    private long firstDifference = -1;
+}
@@ -1,5 +1,8 @@
 package com.kerneweksoftware.h2outility.models;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import lombok.Data;
 
 /**
@@ -18,4 +21,22 @@ public class FileEntry {
     private long offset;
     private byte[] checksum;
     private int unknownField;
+
+    /**
+     * Gets the CRC32 checksum of the file's contents as a number.
+     * 
+     * @return Checksum stored in the entry.
+     */
+    public int getCrc32() {
+        return ByteBuffer.wrap(checksum).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    /**
+     * Whether this entry is a slot not currently in use by any file.
+     * 
+     * @return True when the entry has no file name.
+     */
+    public boolean isUnused() {
+        return fileNameIndex < 0;
+    }
 }
@@ -0,0 +1,197 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The file entries of an archive, held as one primitive array per field rather than one {@link FileEntry} per file.
+ * 
+ * Each entry takes 40 bytes of heap however many entries there are, so the index of a large archive stays cheap to
+ * keep around. Entries are addressed by their position in the archive, and a {@link FileEntry} can still be built
+ * for any one of them with {@link #get(int)}.
+ */
+public class FileEntryTable {
+    private final int[] compressionTags;
+    private final int[] folderNameIndexes;
+    private final int[] fileNameIndexes;
+    private final int[] fileIds;
+    private final int[] rawSizes;
+    private final int[] compressedSizes;
+    private final long[] offsets;
+    private final int[] crc32s;
+    private final int[] unknownFields;
+
+    /**
+     * Instantiate new FileEntryTable with room for the given number of entries, all fields set to 0.
+     * 
+     * @param size Number of entries.
+     */
+    public FileEntryTable(int size) {
+        compressionTags = new int[size];
+        folderNameIndexes = new int[size];
+        fileNameIndexes = new int[size];
+        fileIds = new int[size];
+        rawSizes = new int[size];
+        compressedSizes = new int[size];
+        offsets = new long[size];
+        crc32s = new int[size];
+        unknownFields = new int[size];
+    }
+
+    /**
+     * Builds a table holding copies of the given entries, in the same order.
+     * 
+     * @param entries Entries to copy.
+     * @return New table.
+     */
+    public static FileEntryTable of(FileEntry... entries) {
+        FileEntryTable table = new FileEntryTable(entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            table.set(i, entries[i]);
+        }
+        return table;
+    }
+
+    /**
+     * Gets the number of entries.
+     * 
+     * @return Number of entries in the table.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Builds a {@link FileEntry} holding a copy of the given entry's fields. Changes to it are not reflected in the
+     * table.
+     * 
+     * @param index Index of the entry.
+     * @return New entry.
+     */
+    public FileEntry get(int index) {
+        FileEntry entry = new FileEntry();
+        entry.setCompressionTag(compressionTags[index]);
+        entry.setFolderNameIndex(folderNameIndexes[index]);
+        entry.setFileNameIndex(fileNameIndexes[index]);
+        entry.setFileId(fileIds[index]);
+        entry.setRawSize(rawSizes[index]);
+        entry.setCompressedSize(compressedSizes[index]);
+        entry.setOffset(offsets[index]);
+        entry.setChecksum(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(crc32s[index]).array());
+        entry.setUnknownField(unknownFields[index]);
+        return entry;
+    }
+
+    /**
+     * Copies every field of the given entry into the table.
+     * 
+     * @param index Index of the entry.
+     * @param entry Entry to copy.
+     */
+    public void set(int index, FileEntry entry) {
+        compressionTags[index] = entry.getCompressionTag();
+        folderNameIndexes[index] = entry.getFolderNameIndex();
+        fileNameIndexes[index] = entry.getFileNameIndex();
+        fileIds[index] = entry.getFileId();
+        rawSizes[index] = entry.getRawSize();
+        compressedSizes[index] = entry.getCompressedSize();
+        offsets[index] = entry.getOffset();
+        crc32s[index] = entry.getChecksum() == null ? 0 : entry.getCrc32();
+        unknownFields[index] = entry.getUnknownField();
+    }
+
+    /**
+     * Builds a {@link FileEntry} for every entry in the table.
+     * 
+     * @return New entries, in table order.
+     */
+    public FileEntry[] toArray() {
+        FileEntry[] entries = new FileEntry[size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = get(i);
+        }
+        return entries;
+    }
+
+    /**
+     * Whether the given entry is a slot not currently in use by any file.
+     * 
+     * @param index Index of the entry.
+     * @return True when the entry has no file name.
+     */
+    public boolean isUnused(int index) {
+        return fileNameIndexes[index] < 0;
+    }
+
+    public int getCompressionTag(int index) {
+        return compressionTags[index];
+    }
+
+    public void setCompressionTag(int index, int compressionTag) {
+        compressionTags[index] = compressionTag;
+    }
+
+    public int getFolderNameIndex(int index) {
+        return folderNameIndexes[index];
+    }
+
+    public void setFolderNameIndex(int index, int folderNameIndex) {
+        folderNameIndexes[index] = folderNameIndex;
+    }
+
+    public int getFileNameIndex(int index) {
+        return fileNameIndexes[index];
+    }
+
+    public void setFileNameIndex(int index, int fileNameIndex) {
+        fileNameIndexes[index] = fileNameIndex;
+    }
+
+    public int getFileId(int index) {
+        return fileIds[index];
+    }
+
+    public void setFileId(int index, int fileId) {
+        fileIds[index] = fileId;
+    }
+
+    public int getRawSize(int index) {
+        return rawSizes[index];
+    }
+
+    public void setRawSize(int index, int rawSize) {
+        rawSizes[index] = rawSize;
+    }
+
+    public int getCompressedSize(int index) {
+        return compressedSizes[index];
+    }
+
+    public void setCompressedSize(int index, int compressedSize) {
+        compressedSizes[index] = compressedSize;
+    }
+
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    public void setOffset(int index, long offset) {
+        offsets[index] = offset;
+    }
+
+    public int getCrc32(int index) {
+        return crc32s[index];
+    }
+
+    public void setCrc32(int index, int crc32) {
+        crc32s[index] = crc32;
+    }
+
+    public int getUnknownField(int index) {
+        return unknownFields[index];
+    }
+
+    public void setUnknownField(int index, int unknownField) {
+        unknownFields[index] = unknownField;
+    }
+}
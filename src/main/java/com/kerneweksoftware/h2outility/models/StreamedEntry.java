@@ -0,0 +1,32 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.nio.ByteBuffer;
+
+import lombok.Data;
+
+/**
+ * A file of an archive as published by {@link com.kerneweksoftware.h2outility.services.EntryPublisher}.
+ * 
+ * <p><b>entryIndex</b> - Index of the file's entry in {@link ArchiveIndex#getEntries()}.</p>
+ * <p><b>fileId</b> - ID of the file.</p>
+ * <p><b>path</b> - Path of the file within the archive.</p>
+ * <p><b>compressed</b> - Whether the file is stored compressed in the archive.</p>
+ * <p><b>rawSize</b> - Size of the file once decompressed.</p>
+ * <p><b>compressedSize</b> - Size of the file as stored in the archive.</p>
+ * <p><b>crc32</b> - Checksum stored in the archive for the file's contents.</p>
+ * <p><b>contents</b> - Contents of the file, or null when it failed to decompress. Files that are not compressed are a
+ * read-only view of the archive.</p>
+ * <p><b>error</b> - Reason the file failed to decompress. Otherwise null.</p>
+ */
+@Data
+public class StreamedEntry {
+    private int entryIndex;
+    private int fileId;
+    private String path;
+    private boolean compressed;
+    private int rawSize;
+    private int compressedSize;
+    private int crc32;
+    private ByteBuffer contents;
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.kerneweksoftware.h2outility.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Outcome of checking an archive's contents against its stored CRC32 checksums.
+ */
+@Data
+public class VerificationReport {
+    private int checkedFiles;
+    private long checkedBytes;
+    private List<ChecksumMismatch> mismatches = new ArrayList<>();
+
+    /**
+     * Whether every checked section matched its checksum.
+     * 
+     * @return True when there are no mismatches.
+     */
+    public boolean isValid() {
+        return mismatches.isEmpty();
+    }
+}
@@ -0,0 +1,102 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel over the contents of a single file within a H2O archive.
+ * 
+ * The contents are not read until the first read, so opening a channel only to find its size costs nothing. Files that
+ * are not compressed are read straight from the mapped archive, so seeking about them copies nothing.
+ */
+class H2oByteChannel implements SeekableByteChannel {
+
+    /**
+     * Reads the contents of the file on first use.
+     */
+    @FunctionalInterface
+    interface ContentLoader {
+        ByteBuffer load() throws IOException;
+    }
+
+    private final long size;
+    private final ContentLoader loader;
+    private ByteBuffer contents;
+    private long position;
+    private boolean open = true;
+
+    H2oByteChannel(long size, ContentLoader loader) {
+        this.size = size;
+        this.loader = loader;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        if (contents == null) {
+            contents = loader.load();
+        }
+        ByteBuffer source = contents.duplicate();
+        source.position((int) position);
+        int count = Math.min(source.remaining(), destination.remaining());
+        source.limit(source.position() + count);
+        destination.put(source);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position can not be negative");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        contents = null;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Basic attributes of a file or folder within a H2O archive.
+ * 
+ * The archive holds no times of its own, so every time is that of the archive file.
+ */
+class H2oFileAttributes implements BasicFileAttributes {
+
+    private final boolean directory;
+    private final long size;
+    private final FileTime time;
+    private final Object fileKey;
+
+    H2oFileAttributes(boolean directory, long size, FileTime time, Object fileKey) {
+        this.directory = directory;
+        this.size = size;
+        this.time = time;
+        this.fileKey = fileKey;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return time;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return fileKey;
+    }
+}
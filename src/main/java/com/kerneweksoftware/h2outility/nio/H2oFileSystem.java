@@ -0,0 +1,317 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.services.ArchiveInput;
+import com.kerneweksoftware.h2outility.services.EntryFilter;
+
+/**
+ * Read-only view of a H2O archive as a file system.
+ * 
+ * The tree of folders is built from the archive's folder names and parent indexes when the file system is opened.
+ * Lookups ignore case, as the games do, but paths keep the case they were given. File contents are only read and
+ * decompressed when a channel to them is first read from.
+ */
+public class H2oFileSystem extends FileSystem {
+
+    private final H2oFileSystemProvider provider;
+    private final URI archiveUri;
+    private final ArchiveInput input;
+    private final ArchiveIndex index;
+    private final FileTime time;
+    private final Node root = new Node("", -1);
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final H2oFileStore store = new H2oFileStore(this);
+    private volatile boolean open = true;
+
+    H2oFileSystem(H2oFileSystemProvider provider, URI archiveUri, ArchiveInput input, FileTime time)
+            throws IOException {
+        this.provider = provider;
+        this.archiveUri = archiveUri;
+        this.input = input;
+        this.time = time;
+        try {
+            this.index = input.readIndex();
+        } catch (IncorrectFileTypeException | DecompressionException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        buildTree();
+    }
+
+    @Override
+    public H2oFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            provider.removeFileSystem(archiveUri, this);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(new H2oPath(this, "/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of(store);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public H2oPath getPath(String first, String... more) {
+        StringBuilder sb = new StringBuilder(first);
+        for (String segment : more) {
+            if (!segment.isEmpty()) {
+                if (sb.length() > 0) {
+                    sb.append('/');
+                }
+                sb.append(segment);
+            }
+        }
+        return new H2oPath(this, sb.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException(String.format("No syntax given in %s", syntaxAndPattern));
+        }
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(EntryFilter.globToRegex(pattern), Pattern.CASE_INSENSITIVE);
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException(String.format("Syntax %s is not supported", syntax));
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Archives have no users");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Archives can not be watched");
+    }
+
+    @Override
+    public String toString() {
+        return archiveUri.toString();
+    }
+
+    /**
+     * Gets the URI of the given path within this archive, being the archive's URI and the path separated by a !.
+     */
+    URI toUri(String absolutePath) {
+        try {
+            return new URI(H2oFileSystemProvider.SCHEME, archiveUri.toString() + "!" + absolutePath, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the total size of the files held in the archive once decompressed.
+     */
+    long getRawSize() {
+        return index.getHeader().getRawSize();
+    }
+
+    /**
+     * Finds the file or folder at the given path.
+     */
+    Node lookup(H2oPath path) throws NoSuchFileException {
+        ensureOpen();
+        Node node = nodes.get(key(path.toAbsolutePath().normalize().toString()));
+        if (node == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return node;
+    }
+
+    H2oFileAttributes readAttributes(H2oPath path) throws NoSuchFileException {
+        Node node = lookup(path);
+        if (node.isDirectory()) {
+            return new H2oFileAttributes(true, 0, time, null);
+        }
+        FileEntryTable entries = index.getEntries();
+        int entryIndex = node.entryIndex;
+        return new H2oFileAttributes(false, entries.getRawSize(entryIndex), time, entries.getFileId(entryIndex));
+    }
+
+    List<String> list(H2oPath directory) throws IOException {
+        Node node = lookup(directory);
+        if (!node.isDirectory()) {
+            throw new NotDirectoryException(directory.toString());
+        }
+        return new ArrayList<>(node.children.keySet());
+    }
+
+    H2oByteChannel newByteChannel(H2oPath path) throws IOException {
+        Node node = lookup(path);
+        if (node.isDirectory()) {
+            throw new IOException(String.format("%s is a folder", path));
+        }
+        int entryIndex = node.entryIndex;
+        return new H2oByteChannel(index.getEntries().getRawSize(entryIndex), () -> {
+            ensureOpen();
+            try {
+                ByteBuffer contents = input.readFileContents(index.getEntries(), entryIndex);
+                return contents == null ? ByteBuffer.allocate(0) : contents;
+            } catch (DecompressionException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        });
+    }
+
+    private void ensureOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    private void buildTree() {
+        nodes.put("/", root);
+        List<String> folderNames = index.getFolderNames();
+        int[] parentIndexes = index.getFolderParentIndexes();
+        Node[] folders = new Node[folderNames.size()];
+        for (int i = 0; i < folders.length; i++) {
+            String name = folderNames.get(i);
+            int parentIndex = parentIndexes[i];
+            String parentName = parentIndex >= 0 && parentIndex < i ? folderNames.get(parentIndex) + "\\" : null;
+            if (parentName != null && name.startsWith(parentName)) {
+                folders[i] = addFolders(folders[parentIndex], name.substring(parentName.length()));
+            } else {
+                folders[i] = addFolders(root, name);
+            }
+        }
+
+        FileEntryTable entries = index.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.isUnused(i)) {
+                continue;
+            }
+            int folderIndex = entries.getFolderNameIndex(i);
+            String fileName = index.getFileNames().get(entries.getFileNameIndex(i));
+            int separator = fileName.lastIndexOf('\\');
+            Node folder = folderIndex < 0 ? root : folders[folderIndex];
+            if (separator >= 0) {
+                folder = addFolders(folder, fileName.substring(0, separator));
+                fileName = fileName.substring(separator + 1);
+            }
+            if (isPlainName(fileName)) {
+                folder.add(this, new Node(fileName, i));
+            }
+        }
+    }
+
+    private Node addFolders(Node parent, String archivePath) {
+        Node folder = parent;
+        for (String name : archivePath.split("\\\\+")) {
+            if (isPlainName(name)) {
+                folder = folder.add(this, new Node(name, -1));
+            }
+        }
+        return folder;
+    }
+
+    private static boolean isPlainName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") && name.indexOf('/') < 0;
+    }
+
+    private static String key(String absolutePath) {
+        return absolutePath.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A file or folder in the tree. Folders have an entry index of -1.
+     */
+    static class Node {
+        final String name;
+        final int entryIndex;
+        final Map<String, Node> children;
+        String path;
+
+        Node(String name, int entryIndex) {
+            this.name = name;
+            this.entryIndex = entryIndex;
+            this.children = entryIndex < 0 ? new LinkedHashMap<>() : null;
+            this.path = "/" + name;
+        }
+
+        boolean isDirectory() {
+            return children != null;
+        }
+
+        /**
+         * Adds a child unless one of the same name, ignoring case, is already there. The first of a name wins.
+         */
+        Node add(H2oFileSystem fileSystem, Node child) {
+            if (!isDirectory()) {
+                return this;
+            }
+            child.path = path.equals("/") ? "/" + child.name : path + "/" + child.name;
+            Node existing = fileSystem.nodes.putIfAbsent(key(child.path), child);
+            if (existing != null) {
+                return existing;
+            }
+            children.put(child.name, child);
+            return child;
+        }
+    }
+}
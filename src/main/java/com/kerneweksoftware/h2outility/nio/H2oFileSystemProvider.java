@@ -0,0 +1,334 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.kerneweksoftware.h2outility.services.ArchiveInput;
+
+/**
+ * Read-only file system provider for H2O archives, using the <code>h2o</code> URI scheme.
+ * 
+ * Registered as a service, so <code>FileSystems.newFileSystem(path)</code> opens any H2O archive. A file system can
+ * also be opened by URI, being <code>h2o:</code> followed by the URI of the archive file, and paths within it are
+ * addressed as that URI followed by <code>!</code> and the path, e.g. <code>h2o:file:///game/Data.H2O!/a/b.txt</code>.
+ */
+public class H2oFileSystemProvider extends FileSystemProvider {
+
+    public static final String SCHEME = "h2o";
+
+    private static final byte[] MAGIC_NUMBER = "LIQDLH2O".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] BASIC_ATTRIBUTES = {
+        "lastModifiedTime", "lastAccessTime", "creationTime", "size", "isRegularFile", "isDirectory",
+        "isSymbolicLink", "isOther", "fileKey"
+    };
+
+    private final Map<URI, H2oFileSystem> fileSystems = new ConcurrentHashMap<>();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public H2oFileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        URI archiveUri = toArchiveUri(uri);
+        Path archive = Paths.get(archiveUri).toRealPath();
+        URI key = archive.toUri();
+        synchronized (fileSystems) {
+            if (fileSystems.containsKey(key)) {
+                throw new FileSystemAlreadyExistsException(key.toString());
+            }
+            H2oFileSystem fileSystem = open(archive, key);
+            fileSystems.put(key, fileSystem);
+            return fileSystem;
+        }
+    }
+
+    /**
+     * Opens the archive at the given path as a file system, separate to any opened by URI.
+     * 
+     * @throws UnsupportedOperationException When the file is not a H2O archive, so other providers can be tried.
+     */
+    @Override
+    public H2oFileSystem newFileSystem(Path path, Map<String, ?> env) throws IOException {
+        if (!isArchive(path)) {
+            throw new UnsupportedOperationException(String.format("%s is not a H2O archive", path));
+        }
+        return open(path, path.toAbsolutePath().toUri());
+    }
+
+    @Override
+    public H2oFileSystem getFileSystem(URI uri) {
+        URI archiveUri = toArchiveUri(uri);
+        H2oFileSystem fileSystem = null;
+        try {
+            fileSystem = fileSystems.get(Paths.get(archiveUri).toRealPath().toUri());
+        } catch (IOException e) {
+            // Not an existing file, so can not be open
+        }
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public H2oPath getPath(URI uri) {
+        String path = uri.getSchemeSpecificPart();
+        int separator = path.indexOf("!/");
+        if (separator < 0) {
+            throw new IllegalArgumentException(String.format("URI %s has no path within the archive", uri));
+        }
+        return getFileSystem(uri).getPath(path.substring(separator + 1));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+            throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        return checkPath(path).getFileSystem().newByteChannel(checkPath(path));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter)
+            throws IOException {
+        H2oPath directory = checkPath(dir);
+        List<String> names = directory.getFileSystem().list(directory);
+        return new DirectoryStream<>() {
+            private boolean iterated;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) {
+                    throw new IllegalStateException("Directory stream can only be iterated once");
+                }
+                iterated = true;
+                return names.stream()
+                    .<Path>map(directory::resolve)
+                    .filter(child -> {
+                        try {
+                            return filter.accept(child);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .iterator();
+            }
+
+            @Override
+            public void close() {
+                // Nothing is held open
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        if (path.equals(path2)) {
+            return true;
+        }
+        if (!(path2 instanceof H2oPath) || path.getFileSystem() != path2.getFileSystem()) {
+            return false;
+        }
+        H2oFileSystem fileSystem = checkPath(path).getFileSystem();
+        return fileSystem.lookup(checkPath(path)) == fileSystem.lookup((H2oPath) path2);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        return false;
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        return checkPath(path).getFileSystem().getFileStores().iterator().next();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        checkPath(path).getFileSystem().lookup(checkPath(path));
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString(), null, "Archives are read-only");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        H2oPath h2oPath = checkPath(path);
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return h2oPath.getFileSystem().readAttributes(h2oPath);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options)
+            throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException(String.format("Attributes %s are not supported", type.getName()));
+        }
+        return (A) checkPath(path).getFileSystem().readAttributes(checkPath(path));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options)
+            throws IOException {
+        int colon = attributes.indexOf(':');
+        if (colon >= 0 && !attributes.substring(0, colon).equals("basic")) {
+            throw new UnsupportedOperationException(String.format("View %s is not supported", attributes));
+        }
+        BasicFileAttributes read = readAttributes(path, BasicFileAttributes.class);
+        List<String> names = Arrays.asList(attributes.substring(colon + 1).split(","));
+        if (names.contains("*")) {
+            names = Arrays.asList(BASIC_ATTRIBUTES);
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String name : names) {
+            values.put(name, readAttribute(read, name));
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    void removeFileSystem(URI archiveUri, H2oFileSystem fileSystem) {
+        fileSystems.remove(archiveUri, fileSystem);
+    }
+
+    private H2oFileSystem open(Path archive, URI archiveUri) throws IOException {
+        return new H2oFileSystem(this, archiveUri, new ArchiveInput(archive), Files.getLastModifiedTime(archive));
+    }
+
+    private static boolean isArchive(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (InputStream stream = Files.newInputStream(path)) {
+            return Arrays.equals(MAGIC_NUMBER, stream.readNBytes(MAGIC_NUMBER.length));
+        }
+    }
+
+    private static Object readAttribute(BasicFileAttributes attributes, String name) {
+        switch (name) {
+            case "lastModifiedTime":
+                return attributes.lastModifiedTime();
+            case "lastAccessTime":
+                return attributes.lastAccessTime();
+            case "creationTime":
+                return attributes.creationTime();
+            case "size":
+                return attributes.size();
+            case "isRegularFile":
+                return attributes.isRegularFile();
+            case "isDirectory":
+                return attributes.isDirectory();
+            case "isSymbolicLink":
+                return attributes.isSymbolicLink();
+            case "isOther":
+                return attributes.isOther();
+            case "fileKey":
+                return attributes.fileKey();
+            default:
+                throw new IllegalArgumentException(String.format("Attribute %s is not supported", name));
+        }
+    }
+
+    private static URI toArchiveUri(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("URI %s is not of the %s scheme", uri, SCHEME));
+        }
+        String archive = uri.getRawSchemeSpecificPart();
+        int separator = archive.indexOf("!/");
+        try {
+            return new URI(separator < 0 ? archive : archive.substring(0, separator));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(String.format("URI %s does not hold an archive URI", uri), e);
+        }
+    }
+
+    private static H2oPath checkPath(Path path) {
+        if (!(path instanceof H2oPath)) {
+            throw new ProviderMismatchException();
+        }
+        return (H2oPath) path;
+    }
+}
@@ -0,0 +1,239 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path to a file or folder within a H2O archive, separated by forward slashes.
+ * 
+ * Backslashes, as used by the archive itself, are accepted as separators when a path is created.
+ */
+public class H2oPath implements Path {
+
+    private final H2oFileSystem fileSystem;
+    private final String path;
+    private final String[] names;
+
+    H2oPath(H2oFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = normaliseSeparators(path);
+        String relative = this.path.startsWith("/") ? this.path.substring(1) : this.path;
+        this.names = relative.isEmpty() ? new String[0] : relative.split("/");
+    }
+
+    @Override
+    public H2oFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith("/");
+    }
+
+    @Override
+    public H2oPath getRoot() {
+        return isAbsolute() ? new H2oPath(fileSystem, "/") : null;
+    }
+
+    @Override
+    public H2oPath getFileName() {
+        if (path.isEmpty()) {
+            return this;
+        }
+        return names.length == 0 ? null : new H2oPath(fileSystem, names[names.length - 1]);
+    }
+
+    @Override
+    public H2oPath getParent() {
+        if (names.length == 0 || (names.length == 1 && !isAbsolute())) {
+            return null;
+        }
+        return new H2oPath(fileSystem, join(isAbsolute(), names, 0, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public H2oPath getName(int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public H2oPath subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException(String.format("No subpath %s to %s of %s", beginIndex, endIndex, path));
+        }
+        return new H2oPath(fileSystem, join(false, names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        H2oPath that = checkPath(other);
+        if (that.isAbsolute() != isAbsolute() || that.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < that.names.length; i++) {
+            if (!that.names[i].equals(names[i])) {
+                return false;
+            }
+        }
+        return !that.path.isEmpty() || path.isEmpty();
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        H2oPath that = checkPath(other);
+        if (that.isAbsolute()) {
+            return equals(that);
+        }
+        if (that.names.length > names.length) {
+            return false;
+        }
+        int offset = names.length - that.names.length;
+        for (int i = 0; i < that.names.length; i++) {
+            if (!that.names[i].equals(names[offset + i])) {
+                return false;
+            }
+        }
+        return !that.path.isEmpty() || path.isEmpty();
+    }
+
+    @Override
+    public H2oPath normalize() {
+        List<String> normalised = new ArrayList<>();
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (!normalised.isEmpty() && !normalised.get(normalised.size() - 1).equals("..")) {
+                    normalised.remove(normalised.size() - 1);
+                    continue;
+                } else if (isAbsolute()) {
+                    // Nothing above the root
+                    continue;
+                }
+            }
+            normalised.add(name);
+        }
+        return new H2oPath(fileSystem, join(isAbsolute(), normalised.toArray(new String[0]), 0, normalised.size()));
+    }
+
+    @Override
+    public H2oPath resolve(Path other) {
+        H2oPath that = checkPath(other);
+        if (that.isAbsolute()) {
+            return that;
+        }
+        if (that.path.isEmpty()) {
+            return this;
+        }
+        if (path.isEmpty()) {
+            return that;
+        }
+        return new H2oPath(fileSystem, path.endsWith("/") ? path + that.path : path + "/" + that.path);
+    }
+
+    @Override
+    public H2oPath relativize(Path other) {
+        H2oPath that = checkPath(other);
+        if (that.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("Paths must both be absolute or both be relative");
+        }
+        int common = 0;
+        while (common < names.length && common < that.names.length && names[common].equals(that.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(that.names).subList(common, that.names.length));
+        return new H2oPath(fileSystem, String.join("/", relative));
+    }
+
+    @Override
+    public URI toUri() {
+        return fileSystem.toUri(toAbsolutePath().normalize().path);
+    }
+
+    @Override
+    public H2oPath toAbsolutePath() {
+        return isAbsolute() ? this : new H2oPath(fileSystem, "/" + path);
+    }
+
+    @Override
+    public H2oPath toRealPath(LinkOption... options) throws IOException {
+        H2oPath absolute = toAbsolutePath().normalize();
+        fileSystem.lookup(absolute);
+        return absolute;
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Archives can not be watched");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(checkPath(other).path);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof H2oPath)) {
+            return false;
+        }
+        H2oPath that = (H2oPath) other;
+        return fileSystem == that.fileSystem && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private H2oPath checkPath(Path other) {
+        if (!(other instanceof H2oPath) || ((H2oPath) other).fileSystem != fileSystem) {
+            throw new ProviderMismatchException();
+        }
+        return (H2oPath) other;
+    }
+
+    private static String join(boolean absolute, String[] names, int beginIndex, int endIndex) {
+        String joined = String.join("/", Arrays.asList(names).subList(beginIndex, endIndex));
+        return absolute ? "/" + joined : joined;
+    }
+
+    private static String normaliseSeparators(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i) == '\\' ? '/' : path.charAt(i);
+            if (c != '/' || sb.length() == 0 || sb.charAt(sb.length() - 1) != '/') {
+                sb.append(c);
+            }
+        }
+        if (sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+}
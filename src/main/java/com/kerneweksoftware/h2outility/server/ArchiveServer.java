@@ -0,0 +1,488 @@
+package com.kerneweksoftware.h2outility.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.BatchSummary;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.services.ArchiveInput;
+import com.kerneweksoftware.h2outility.services.BatchExtractor;
+import com.kerneweksoftware.h2outility.services.EntryCache;
+import com.kerneweksoftware.h2outility.services.EntryFilter;
+import com.kerneweksoftware.h2outility.services.IndexCache;
+import com.kerneweksoftware.h2outility.services.ParallelExtractor;
+import com.kerneweksoftware.h2outility.services.PathIndex;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves archives over HTTP on the loopback address, so tools can query them without starting a JVM each time.
+ * 
+ * Archives are opened on first use and kept open, with their index and path lookup, until they change on disk.
+ * Decompressed files are kept in a shared {@link EntryCache}, while files stored without compression are sent
+ * straight from the mapped archive. Every request is handled on a thread of its own from a pool that grows as needed.
+ * Archives are given by their path on the local file system and responses are plain text, one record to a line.
+ * 
+ * Only requests naming a loopback host, and carrying no <code>Origin</code> header, are answered, so web pages open in
+ * a local browser can neither post to the server themselves nor reach it through a host name rebound to loopback.
+ * 
+ * <p><b>GET /list?archive=</b> - Every file, as path, raw size, compressed size and CRC32 separated by tabs. Takes
+ * <b>include</b> glob patterns to list only some files.</p>
+ * <p><b>GET /stat?archive=&amp;path=</b> - Entry of one file, as <code>name: value</code> lines.</p>
+ * <p><b>GET /read?archive=&amp;path=</b> - Contents of one file. Honours a single <code>Range: bytes=</code>
+ * header.</p>
+ * <p><b>POST /extract?archive=&amp;output=</b> - Starts extracting the archive beneath the output directory, taking
+ * <b>include</b> glob patterns to extract only some files. Answers with the job's ID.</p>
+ * <p><b>GET /job?id=</b> - Status of an extraction job, being running, done or failed. A finished job is forgotten
+ * once its status has been read, and otherwise once {@link #MAX_FINISHED_JOBS} later jobs have been started.</p>
+ */
+public class ArchiveServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7460;
+    public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+    public static final int MAX_FINISHED_JOBS = 1000;
+
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final Pattern LOOPBACK_HOST = Pattern.compile(
+        "(?i)(localhost|127(\\.\\d{1,3}){3}|\\[(::1|0*:0*:0*:0*:0*:0*:0*:0*1)\\])(:\\d+)?");
+
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ExecutorService jobRunner;
+    private final ParallelExtractor extractor;
+    private final EntryCache cache;
+    private final Map<Path, OpenArchive> archives = new ConcurrentHashMap<>();
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private volatile IndexCache indexCache;
+    private final Logger logger = LoggerFactory.getLogger(ArchiveServer.class);
+
+    /**
+     * Instantiate new ArchiveServer bound to the given port on the loopback address. Not started until
+     * {@link #start()}.
+     * 
+     * @param port Port to listen on, or 0 for any free port.
+     * @param extractor Extractor to decompress files with for extraction jobs. Not closed by the server.
+     * @param cache Cache to keep decompressed files in.
+     * @throws IOException When the port could not be bound.
+     */
+    public ArchiveServer(int port, ParallelExtractor extractor, EntryCache cache) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.requests = Executors.newCachedThreadPool(daemonThreads("h2o-request-"));
+        this.jobRunner = Executors.newCachedThreadPool(daemonThreads("h2o-job-"));
+        this.extractor = extractor;
+        this.cache = cache;
+
+        server.setExecutor(requests);
+        server.createContext("/list", exchange -> handle(exchange, "GET", this::list));
+        server.createContext("/stat", exchange -> handle(exchange, "GET", this::stat));
+        server.createContext("/read", exchange -> handle(exchange, "GET", this::read));
+        server.createContext("/extract", exchange -> handle(exchange, "POST", this::extract));
+        server.createContext("/job", exchange -> handle(exchange, "GET", this::job));
+    }
+
+    /**
+     * Sets a cache to keep archives' indexes in between runs of the server, see
+     * {@link ArchiveInput#setIndexCache(IndexCache)}.
+     * 
+     * @param indexCache Cache of indexes, or null for none.
+     */
+    public void setIndexCache(IndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Starts answering requests, on threads of the server's own.
+     */
+    public void start() {
+        server.start();
+        logger.info("Serving archives on http://{}:{}", getAddress().getHostString(), getAddress().getPort());
+    }
+
+    /**
+     * Gets the address the server is listening on.
+     * 
+     * @return Loopback address and port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops answering requests and drops every open archive. Running extraction jobs are left to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        requests.shutdown();
+        jobRunner.shutdown();
+        for (OpenArchive archive : archives.values()) {
+            cache.invalidate(archive.input);
+        }
+        archives.clear();
+    }
+
+    private void list(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException {
+        OpenArchive archive = open(query);
+        FileEntryTable entries = archive.index.getEntries();
+        BitSet selected = null;
+        if (query.containsKey("include")) {
+            EntryFilter filter = new EntryFilter();
+            query.get("include").forEach(filter::include);
+            selected = filter.select(archive.index);
+        }
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.isUnused(i) || (selected != null && !selected.get(i))) {
+                continue;
+            }
+            body.append(archive.index.getPath(i)).append('\t')
+                .append(Integer.toUnsignedLong(entries.getRawSize(i))).append('\t')
+                .append(Integer.toUnsignedLong(entries.getCompressedSize(i))).append('\t')
+                .append(String.format("%08x", entries.getCrc32(i))).append('\n');
+        }
+        send(exchange, 200, body.toString());
+    }
+
+    private void stat(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException {
+        OpenArchive archive = open(query);
+        int entryIndex = find(archive, query);
+        FileEntryTable entries = archive.index.getEntries();
+        String body = String.format("path: %s\nfileId: %s\nsize: %s\ncompressedSize: %s\ncompressed: %s\n"
+            + "crc32: %08x\noffset: %s\n", archive.index.getPath(entryIndex), entries.getFileId(entryIndex),
+            Integer.toUnsignedLong(entries.getRawSize(entryIndex)),
+            Integer.toUnsignedLong(entries.getCompressedSize(entryIndex)), entries.getCompressionTag(entryIndex) != 0,
+            entries.getCrc32(entryIndex), entries.getOffset(entryIndex));
+        send(exchange, 200, body);
+    }
+
+    private void read(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException {
+        OpenArchive archive = open(query);
+        int entryIndex = find(archive, query);
+        FileEntryTable entries = archive.index.getEntries();
+        ByteBuffer contents;
+        try {
+            if (entries.getCompressionTag(entryIndex) == 0) {
+                // A view of the mapped archive, so not worth a place in the cache
+                contents = archive.input.readFileContents(entries, entryIndex);
+            } else {
+                contents = cache.get(archive.input, entries.getFileId(entryIndex),
+                    () -> archive.input.readFileContents(entries, entryIndex));
+            }
+        } catch (DecompressionException e) {
+            throw new RequestException(500, e.getMessage());
+        }
+        if (contents == null) {
+            contents = ByteBuffer.allocate(0);
+        }
+
+        int size = contents.remaining();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        if (range == null) {
+            sendBuffer(exchange, 200, contents);
+            return;
+        }
+
+        long[] bounds = parseRange(range, size);
+        if (bounds == null) {
+            exchange.getResponseHeaders().set("Content-Range", String.format("bytes */%s", size));
+            throw new RequestException(416, String.format("Range %s is not within the file's %s bytes", range, size));
+        }
+        exchange.getResponseHeaders().set("Content-Range", String.format("bytes %s-%s/%s", bounds[0], bounds[1], size));
+        ByteBuffer part = contents.duplicate();
+        part.limit(part.position() + (int) bounds[1] + 1).position(part.position() + (int) bounds[0]);
+        sendBuffer(exchange, 206, part);
+    }
+
+    private void extract(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException {
+        Path archivePath = Paths.get(require(query, "archive"));
+        Path output = Paths.get(require(query, "output"));
+        if (!Files.isRegularFile(archivePath)) {
+            throw new RequestException(404, String.format("%s was not found", archivePath));
+        }
+        EntryFilter filter = new EntryFilter();
+        query.getOrDefault("include", List.of()).forEach(filter::include);
+
+        int id = nextJobId.getAndIncrement();
+        Job job = new Job();
+        jobs.put(id, job);
+        // Finished jobs nobody asked after would otherwise be kept for as long as the server runs
+        jobs.entrySet().removeIf(entry -> entry.getValue().done && entry.getKey() <= id - MAX_FINISHED_JOBS);
+        jobRunner.execute(() -> {
+            BatchExtractor batch = new BatchExtractor(extractor, 1);
+            batch.setIndexCache(indexCache);
+            batch.setFilter(filter.isEmpty() ? null : filter);
+            try {
+                job.summary = batch.extract(List.of(archivePath), output);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.error = "Interrupted";
+            } catch (RuntimeException e) {
+                logger.error("Extraction job {} failed", id, e);
+                job.error = e.toString();
+            } finally {
+                job.done = true;
+            }
+        });
+        send(exchange, 202, String.format("%s\n", id));
+    }
+
+    private void job(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException {
+        int id;
+        try {
+            id = Integer.parseInt(require(query, "id"));
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Job ID must be a number");
+        }
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new RequestException(404, "No such job");
+        }
+        if (!job.done) {
+            send(exchange, 200, "status: running\n");
+            return;
+        }
+        // Its final status is only ever given out once
+        jobs.remove(id);
+        if (job.error != null || job.summary == null || !job.summary.isSuccessful()) {
+            String error = job.summary == null ? job.error : String.join("; ", job.summary.getFailedArchives());
+            send(exchange, 200, String.format("status: failed\nerror: %s\n", error));
+        } else {
+            BatchSummary summary = job.summary;
+            send(exchange, 200, String.format("status: done\nfiles: %s\nbytes: %s\nskipped: %s\nfailed: %s\n",
+                summary.getFiles(), summary.getBytes(), summary.getSkippedFiles(), summary.getFailedFiles()));
+        }
+    }
+
+    private OpenArchive open(Map<String, List<String>> query) throws IOException, RequestException {
+        Path path = Paths.get(require(query, "archive")).toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new RequestException(404, String.format("%s was not found", path));
+        }
+
+        long modified = attributes.lastModifiedTime().toMillis();
+        OpenArchive archive = archives.get(path);
+        if (archive != null && archive.size == attributes.size() && archive.modified == modified) {
+            return archive;
+        }
+
+        // Two requests racing to open the same archive both open it, and the later one is kept
+        ArchiveInput input = new ArchiveInput(path);
+        input.setIndexCache(indexCache);
+        ArchiveIndex index;
+        try {
+            index = input.readIndex();
+        } catch (IncorrectFileTypeException | DecompressionException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+        OpenArchive opened = new OpenArchive(input, index, attributes.size(), modified);
+        OpenArchive previous = archives.put(path, opened);
+        if (previous != null) {
+            logger.info("Archive {} changed on disk, opened again", path);
+            cache.invalidate(previous.input);
+        }
+        return opened;
+    }
+
+    private static int find(OpenArchive archive, Map<String, List<String>> query) throws RequestException {
+        String path = require(query, "path");
+        long location = archive.paths.find(path);
+        if (location < 0) {
+            throw new RequestException(404, String.format("%s was not found in the archive", path));
+        }
+        return PathIndex.entryIndex(location);
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        try {
+            checkOrigin(exchange);
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                throw new RequestException(405, String.format("Use %s", method));
+            }
+            handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (RequestException e) {
+            send(exchange, e.status, String.format("%s\n", e.getMessage()));
+        } catch (PatternSyntaxException e) {
+            send(exchange, 400, String.format("Pattern is not valid: %s\n", e.getDescription()));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Request {} failed", exchange.getRequestURI(), e);
+            if (exchange.getResponseCode() < 0) {
+                send(exchange, 500, String.format("%s\n", e));
+            }
+        } finally {
+            exchange.close();
+            logger.debug("{} {} took {} us", method, exchange.getRequestURI(), (System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private static void checkOrigin(HttpExchange exchange) throws RequestException {
+        // Browsers send an Origin with every cross-site POST, and the rebound host name as the Host
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !LOOPBACK_HOST.matcher(host.trim()).matches()) {
+            throw new RequestException(403, "Only requests to a loopback host are answered");
+        }
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            throw new RequestException(403, "Requests from web pages are not answered");
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendBuffer(HttpExchange exchange, int status, ByteBuffer contents) throws IOException {
+        exchange.sendResponseHeaders(status, contents.hasRemaining() ? contents.remaining() : -1);
+        try (WritableByteChannel out = Channels.newChannel(exchange.getResponseBody())) {
+            ByteBuffer source = contents.duplicate();
+            while (source.hasRemaining()) {
+                out.write(source);
+            }
+        }
+    }
+
+    private static long[] parseRange(String range, int size) {
+        // Only a single range is supported, as a start and end, a start alone, or a length from the end
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                String last = spec.substring(dash + 1);
+                end = last.isEmpty() ? size - 1 : Math.min(size - 1, Long.parseLong(last));
+            }
+            return start <= end && start < size ? new long[] {start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return query;
+    }
+
+    private static String require(Map<String, List<String>> query, String name) throws RequestException {
+        List<String> values = query.get(name);
+        if (values == null || values.get(0).isEmpty()) {
+            throw new RequestException(400, String.format("Parameter %s is needed", name));
+        }
+        return values.get(0);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, List<String>> query) throws IOException, RequestException;
+    }
+
+    /**
+     * An archive kept open between requests, with what is needed to find its files.
+     */
+    private static class OpenArchive {
+        final ArchiveInput input;
+        final ArchiveIndex index;
+        final PathIndex paths;
+        final long size;
+        final long modified;
+
+        OpenArchive(ArchiveInput input, ArchiveIndex index, long size, long modified) {
+            this.input = input;
+            this.index = index;
+            this.paths = new PathIndex(List.of(index));
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * An extraction started by a request, checked on by later requests.
+     */
+    private static class Job {
+        volatile boolean done;
+        volatile BatchSummary summary;
+        volatile String error;
+    }
+
+    /**
+     * A request that cannot be answered, carrying the status to answer with instead.
+     */
+    private static class RequestException extends Exception {
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
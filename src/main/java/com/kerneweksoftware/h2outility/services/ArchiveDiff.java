@@ -0,0 +1,154 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.DiffReport;
+import com.kerneweksoftware.h2outility.models.DiffStatus;
+import com.kerneweksoftware.h2outility.models.EntryDifference;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+/**
+ * Compares an older and a newer version of an archive, file by file.
+ * 
+ * Only the indexes are read. Files are matched by path, regardless of case, and judged changed or not by their stored
+ * raw size and CRC32, so no file is decompressed unless contents are asked to be compared. The added and changed
+ * files can then be written out as a delta archive.
+ */
+public class ArchiveDiff {
+
+    private final ArchiveInput oldInput;
+    private final ArchiveInput newInput;
+    private final ArchiveIndex oldIndex;
+    private final ArchiveIndex newIndex;
+
+    /**
+     * Instantiate new ArchiveDiff, reading the index of both archives.
+     * 
+     * @param oldInput Older version of the archive.
+     * @param newInput Newer version of the archive.
+     * @throws IncorrectFileTypeException When either archive is not of the H2O format.
+     * @throws DecompressionException When either archive's name tables failed to decompress.
+     */
+    public ArchiveDiff(ArchiveInput oldInput, ArchiveInput newInput)
+            throws IncorrectFileTypeException, DecompressionException {
+        this.oldInput = oldInput;
+        this.newInput = newInput;
+        this.oldIndex = oldInput.readIndex();
+        this.newIndex = newInput.readIndex();
+    }
+
+    /**
+     * Compares the archives by their indexes alone.
+     * 
+     * @return Every file in either archive, those in the newer archive first in entry order, then those removed.
+     */
+    public DiffReport compare() {
+        DiffReport report = new DiffReport();
+        FileEntryTable oldEntries = oldIndex.getEntries();
+        FileEntryTable newEntries = newIndex.getEntries();
+        PathIndex oldPaths = new PathIndex(List.of(oldIndex));
+        boolean[] matched = new boolean[oldEntries.size()];
+
+        for (int i = 0; i < newEntries.size(); i++) {
+            if (newEntries.isUnused(i)) {
+                continue;
+            }
+            EntryDifference difference = new EntryDifference();
+            difference.setPath(newIndex.getPath(i));
+            difference.setNewEntryIndex(i);
+            difference.setNewRawSize(newEntries.getRawSize(i));
+            difference.setNewCrc32(newEntries.getCrc32(i));
+
+            long location = oldPaths.find(difference.getPath());
+            if (location < 0) {
+                difference.setStatus(DiffStatus.ADDED);
+            } else {
+                int oldEntryIndex = PathIndex.entryIndex(location);
+                if (matched[oldEntryIndex]) {
+                    // A second entry of the newer archive with the same path, of which only the first is readable
+                    continue;
+                }
+                matched[oldEntryIndex] = true;
+                difference.setOldEntryIndex(oldEntryIndex);
+                difference.setOldRawSize(oldEntries.getRawSize(oldEntryIndex));
+                difference.setOldCrc32(oldEntries.getCrc32(oldEntryIndex));
+                boolean same = difference.getOldRawSize() == difference.getNewRawSize()
+                    && difference.getOldCrc32() == difference.getNewCrc32();
+                difference.setStatus(same ? DiffStatus.UNCHANGED : DiffStatus.CHANGED);
+            }
+            report.getDifferences().add(difference);
+        }
+
+        for (int i = 0; i < oldEntries.size(); i++) {
+            // Of entries sharing a path only the first is readable, so later ones are not reported as removed
+            boolean readable = !oldEntries.isUnused(i) && PathIndex.entryIndex(oldPaths.find(oldIndex.getPath(i))) == i;
+            if (!matched[i] && readable) {
+                EntryDifference difference = new EntryDifference();
+                difference.setStatus(DiffStatus.REMOVED);
+                difference.setPath(oldIndex.getPath(i));
+                difference.setOldEntryIndex(i);
+                difference.setOldRawSize(oldEntries.getRawSize(i));
+                difference.setOldCrc32(oldEntries.getCrc32(i));
+                report.getDifferences().add(difference);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Compares the archives by their indexes, then compares the contents of every file in both.
+     * 
+     * Files whose indexes match are confirmed byte for byte, and are marked changed should they differ after all. For
+     * changed files the offset of the first byte to differ is found. Both files of each pair are decompressed.
+     * 
+     * @return Every file in either archive, as with {@link #compare()}.
+     * @throws DecompressionException When a file in either archive failed to decompress.
+     */
+    public DiffReport compareContents() throws DecompressionException {
+        DiffReport report = compare();
+        for (EntryDifference difference : report.getDifferences()) {
+            if (difference.getOldEntryIndex() < 0 || difference.getNewEntryIndex() < 0) {
+                continue;
+            }
+            ByteBuffer oldContents = read(oldInput, oldIndex, difference.getOldEntryIndex());
+            ByteBuffer newContents = read(newInput, newIndex, difference.getNewEntryIndex());
+            int mismatch = oldContents.mismatch(newContents);
+            difference.setFirstDifference(mismatch);
+            difference.setStatus(mismatch < 0 ? DiffStatus.UNCHANGED : DiffStatus.CHANGED);
+        }
+        return report;
+    }
+
+    /**
+     * Writes the files added or changed in the newer archive to a delta archive.
+     * 
+     * Files are taken from the newer archive, keeping their folders and names, so extracting the delta over the
+     * older version brings it up to date. Removed files cannot be expressed in an archive, so are left to the report.
+     * 
+     * @param report Result of {@link #compare()} or {@link #compareContents()}.
+     * @param output Writer of the delta archive.
+     * @param channel Channel to write the delta archive to, from position 0.
+     * @throws IOException When a file could not be read or the archive could not be written.
+     * @throws InterruptedException When interrupted while waiting for files to compress.
+     */
+    public void writeDelta(DiffReport report, ArchiveOutput output, FileChannel channel)
+            throws IOException, InterruptedException {
+        int[] entryIndexes = report.getDifferences().stream()
+            .filter(d -> d.getStatus() == DiffStatus.ADDED || d.getStatus() == DiffStatus.CHANGED)
+            .mapToInt(EntryDifference::getNewEntryIndex)
+            .toArray();
+        output.write(newInput, newIndex, entryIndexes, channel);
+    }
+
+    private static ByteBuffer read(ArchiveInput input, ArchiveIndex index, int entryIndex)
+            throws DecompressionException {
+        ByteBuffer contents = input.readFileContents(index.getEntries(), entryIndex);
+        return contents == null ? ByteBuffer.allocate(0) : contents;
+    }
+}
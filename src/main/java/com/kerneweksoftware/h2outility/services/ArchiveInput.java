@@ -1,18 +1,40 @@
 package com.kerneweksoftware.h2outility.services;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
 
 import com.github.gcms.blast.BlastInputStream;
 import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
 import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.metrics.ArchiveListener;
+import com.kerneweksoftware.h2outility.metrics.JfrListener;
+import com.kerneweksoftware.h2outility.metrics.Phase;
 import com.kerneweksoftware.h2outility.models.ArchiveHeader;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.ChecksumMismatch;
+import com.kerneweksoftware.h2outility.models.ChecksumSection;
 import com.kerneweksoftware.h2outility.models.CompressedDataHeader;
 import com.kerneweksoftware.h2outility.models.FileEntry;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.models.VerificationReport;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
@@ -22,6 +44,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Handles reading of a H2O archive from a ByteBuffer.
+ * 
+ * The buffer can either be on the heap or a read-only mapping of the archive file, see {@link #ArchiveInput(Path)}.
+ * Files are read by the absolute offsets in their entries without moving the buffer's position, so any number of
+ * threads may read files from one instance at once, in any order, and gaps in the data section are of no concern.
  */
 public class ArchiveInput {
 
@@ -32,6 +58,11 @@ public class ArchiveInput {
     private static final String MAGIC_NUMBER = "LIQDLH2O";
 
     private final ByteBuffer archive;
+    private final Path path;
+    private final FileChannel channel;
+    private volatile ArchiveListener listener = JfrListener.INSTANCE;
+    private volatile IndexCache indexCache;
+    private volatile EntryFilter filter;
     private final Logger logger = LoggerFactory.getLogger(ArchiveInput.class);
     
     /**
@@ -41,6 +72,8 @@ public class ArchiveInput {
      */
     public ArchiveInput(ByteBuffer archive) {
         this.archive = archive;
+        this.path = null;
+        this.channel = null;
     }
 
     /**
@@ -55,6 +88,70 @@ public class ArchiveInput {
         buffer.order(ByteOrder.LITTLE_ENDIAN);
 
         this.archive = buffer;
+        this.path = null;
+        this.channel = null;
+    }
+
+    /**
+     * Instantiate new ArchiveInput from the archive file at the given path.
+     * 
+     * The file is memory mapped read-only rather than read onto the heap. The mapping stays valid once the
+     * underlying channel has been closed, so no handle to the file is kept open. The file is only opened again for
+     * the length of {@link #extract(ParallelExtractor, EntrySink)}, so sinks can copy stored files straight from it.
+     * 
+     * @param path Path of the H2O archive.
+     * @throws IOException When the file could not be opened or mapped.
+     */
+    public ArchiveInput(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.archive = map(channel);
+        }
+        this.path = path;
+        this.channel = null;
+    }
+
+    /**
+     * Instantiate new ArchiveInput from an open file channel.
+     * 
+     * The whole channel is memory mapped read-only. The channel is not closed by this class.
+     * 
+     * @param channel Channel of the H2O archive, open for reading.
+     * @throws IOException When the channel could not be mapped.
+     */
+    public ArchiveInput(FileChannel channel) throws IOException {
+        this.archive = map(channel);
+        this.path = null;
+        this.channel = channel;
+    }
+
+    /**
+     * Adds a listener to be told of timings and counts as the archive is read. Flight Recorder events are always
+     * emitted, see {@link JfrListener}.
+     * 
+     * @param listener Listener to add, such as an {@link com.kerneweksoftware.h2outility.metrics.ArchiveMetrics}.
+     */
+    public void addListener(ArchiveListener listener) {
+        this.listener = ArchiveListener.of(this.listener, listener);
+    }
+
+    /**
+     * Sets a cache to keep the index in between runs, so {@link #readIndex()} need not parse the archive again while
+     * it is unchanged. Only used when the archive was opened from a path.
+     * 
+     * @param indexCache Cache to read the index from and write it to, or null for none.
+     */
+    public void setIndexCache(IndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Sets which files to read when reading, extracting or verifying the whole archive. Files not chosen are never
+     * located nor decompressed, and are left without contents by {@link #readContents()}.
+     * 
+     * @param filter Filter choosing the files, or null for every file.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
     }
 
     /**
@@ -65,23 +162,364 @@ public class ArchiveInput {
      * @throws DecompressionException When data in the archive failed to decompress.
      */
     public ArchivedData readContents() throws IncorrectFileTypeException, DecompressionException {
-        FileEntry[] fileEntries = processTopLevelInfo();
+        ArchiveIndex index = readIndex();
 
-        List<String> folderNames = getNames();
-        List<String> fileNames = getNames();
-        int[] folderParentIndexes = readFolderParentIndexes();
+        ArchivedFolder[] folders = buildFolders(index.getFolderNames(), index.getFolderParentIndexes());
+        ArchivedFile[] files = buildFiles(index.getEntries(), index.getFileNames());
+
+        long start = System.nanoTime();
+        readAndAssignFileData(index.getEntries(), select(index), files);
+        endPhase(Phase.DATA, start, index.getDataOffset(), archive.limit());
+
+        return buildArchivedData(folders, files);
+    }
+
+    /**
+     * Reads everything in the given archive except the file data.
+     * 
+     * Only the header, file entries, name tables and folder structure are read, so this is cheap regardless of
+     * how much data the archive holds. The data of individual files can then be read with
+     * {@link #readFileData(FileEntryTable, int)}. The index is read in order from the start of the archive, so
+     * concurrent calls take turns. With an index cache set, the cached index is used while the archive is unchanged
+     * and the cache is otherwise written anew, see {@link #setIndexCache(IndexCache)}.
+     * 
+     * @return {@link ArchiveIndex} of the archive.
+     * @throws IncorrectFileTypeException When the archive is not of the H2O format.
+     * @throws DecompressionException When the name tables failed to decompress.
+     */
+    public synchronized ArchiveIndex readIndex() throws IncorrectFileTypeException, DecompressionException {
+        IndexCache cache = path == null ? null : indexCache;
+        if (cache != null) {
+            ArchiveIndex cached = readCachedIndex(cache);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        archive.position(0);
+        ArchiveIndex index = new ArchiveIndex();
+        long start = System.nanoTime();
+        index.setHeader(readHeader());
+        start = endPhase(Phase.HEADER, start, 0, archive.position());
+
+        int from = archive.position();
+        index.setEntries(readFileEntries(index.getHeader().getFileCount()));
+        start = endPhase(Phase.ENTRIES, start, from, archive.position());
+        countUnused(index.getEntries());
+
+        index.setNamesOffset(archive.position());
+        index.setFolderNames(getNames());
+        index.setFileNames(getNames());
+        start = endPhase(Phase.NAMES, start, index.getNamesOffset(), archive.position());
+
+        from = archive.position();
+        index.setFolderParentIndexes(readFolderParentIndexes());
+        endPhase(Phase.FOLDERS, start, from, archive.position());
+        index.setDataOffset(archive.position());
+
+        if (cache != null) {
+            try {
+                cache.write(path, archive, index);
+            } catch (IOException e) {
+                logger.warn("Index of {} could not be cached: {}", path, e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads the contents of the given archive, decompressing files in parallel.
+     * 
+     * @param extractor Extractor to decompress the files with.
+     * @return {@link ArchivedData} containing the folders and files of the archive.
+     * @throws IncorrectFileTypeException When the archive is not of the H2O format.
+     * @throws DecompressionException When the name tables failed to decompress.
+     * @throws InterruptedException When interrupted while waiting for files to decompress.
+     */
+    public ArchivedData readContents(ParallelExtractor extractor)
+            throws IncorrectFileTypeException, DecompressionException, InterruptedException {
+        ArchiveIndex index = readIndex();
 
-        ArchivedFolder[] folders = buildFolders(folderNames, folderParentIndexes);
-        ArchivedFile[] files = buildFiles(fileEntries, fileNames);
+        ArchivedFolder[] folders = buildFolders(index.getFolderNames(), index.getFolderParentIndexes());
+        ArchivedFile[] files = buildFiles(index.getEntries(), index.getFileNames());
 
-        readAndAssignFileData(fileEntries, files);
+        long start = System.nanoTime();
+        try {
+            extractor.extract(this, index, select(index),
+                (entryIndex, contents) -> files[entryIndex].setContents(toArray(contents)));
+            endPhase(Phase.DATA, start, index.getDataOffset(), archive.limit());
+        } catch (IOException e) {
+            // Assigning contents never throws
+            throw new UncheckedIOException(e);
+        }
 
         return buildArchivedData(folders, files);
     }
 
-    private FileEntry[] processTopLevelInfo() throws IncorrectFileTypeException {
-        ArchiveHeader header = readHeader();
-        return readFileEntries(header.getFileCount());
+    /**
+     * Streams every file in the archive into the given sink as soon as it has been decompressed.
+     * 
+     * Nothing is kept once the sink has taken a file, so peak memory is bounded by the extractor's limit of bytes in
+     * flight, or the largest single file should that be bigger. When the archive was opened from a file, files stored
+     * without compression are first offered to the sink's
+     * {@link EntrySink#transfer(ArchiveIndex, int, FileChannel, long)}, so their data need never be copied through
+     * the heap. The sink is not closed.
+     * 
+     * @param extractor Extractor to decompress the files with.
+     * @param sink Destination of the files.
+     * @throws IncorrectFileTypeException When the archive is not of the H2O format.
+     * @throws DecompressionException When the name tables failed to decompress.
+     * @throws IOException When the sink failed to write a file.
+     * @throws InterruptedException When interrupted while waiting for files to decompress.
+     */
+    public void extract(ParallelExtractor extractor, EntrySink sink)
+            throws IncorrectFileTypeException, DecompressionException, IOException, InterruptedException {
+        ArchiveIndex index = readIndex();
+        sink.begin(index);
+        if (channel != null || path == null) {
+            extract(extractor, sink, index, channel);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+            extract(extractor, sink, index, source);
+        }
+    }
+
+    private void extract(ParallelExtractor extractor, EntrySink sink, ArchiveIndex index, FileChannel source)
+            throws IOException, InterruptedException {
+        FileEntryTable entries = index.getEntries();
+        long start = System.nanoTime();
+        extractor.extract(this, index, select(index), new ParallelExtractor.EntryConsumer() {
+            @Override
+            public void accept(int entryIndex, ByteBuffer contents) throws IOException {
+                int size = contents.remaining();
+                long writeStart = System.nanoTime();
+                if (source == null || entries.getCompressionTag(entryIndex) != 0
+                        || !sink.transfer(index, entryIndex, source, entries.getOffset(entryIndex))) {
+                    sink.write(index, entryIndex, contents);
+                }
+                listener.entryWritten(entries.getFileId(entryIndex), size, System.nanoTime() - writeStart);
+            }
+
+            @Override
+            public void failed(int entryIndex, DecompressionException e) {
+                sink.failed(index, entryIndex, e);
+            }
+
+            @Override
+            public boolean skip(int entryIndex) throws IOException {
+                return sink.skip(index, entryIndex);
+            }
+        });
+        endPhase(Phase.DATA, start, index.getDataOffset(), archive.limit());
+    }
+
+    /**
+     * Publishes the files of the archive as they are decompressed, see {@link EntryPublisher}.
+     * 
+     * Files are only decompressed once a subscriber has asked for them, so memory is bounded by its demand and the
+     * extractor's limit of bytes in flight rather than the size of the archive. With a filter set, only the chosen
+     * files are published.
+     * 
+     * @param extractor Extractor whose pool decompresses the files.
+     * @return Publisher of the files in entry order, which may be subscribed to any number of times.
+     * @throws IncorrectFileTypeException When the archive is not of the H2O format.
+     * @throws DecompressionException When the name tables failed to decompress.
+     */
+    public EntryPublisher publish(ParallelExtractor extractor)
+            throws IncorrectFileTypeException, DecompressionException {
+        ArchiveIndex index = readIndex();
+        return new EntryPublisher(this, index, select(index), extractor);
+    }
+
+    /**
+     * Checks the name tables and every file in the archive against their stored CRC32 checksums.
+     * 
+     * Files are checked in parallel and are not written anywhere. Files that are not compressed are checked straight
+     * from the archive without being copied. With a filter set, only the chosen files are checked.
+     * 
+     * @param extractor Extractor to decompress the files with.
+     * @return Report of any checksums not matching.
+     * @throws IncorrectFileTypeException When the archive is not of the H2O format.
+     * @throws DecompressionException When the name tables failed to decompress.
+     * @throws InterruptedException When interrupted while waiting for files to decompress.
+     */
+    public VerificationReport verify(ParallelExtractor extractor)
+            throws IncorrectFileTypeException, DecompressionException, InterruptedException {
+        ArchiveIndex index = readIndex();
+        VerificationReport report = new VerificationReport();
+        int fileNamesOffset = verifyNameTable(index.getNamesOffset(), ChecksumSection.FOLDER_NAMES, report);
+        verifyNameTable(fileNamesOffset, ChecksumSection.FILE_NAMES, report);
+
+        FileEntryTable entries = index.getEntries();
+        Queue<ChecksumMismatch> mismatches = new ConcurrentLinkedQueue<>();
+        AtomicInteger checkedFiles = new AtomicInteger();
+        LongAdder checkedBytes = new LongAdder();
+        long start = System.nanoTime();
+        try {
+            extractor.extract(this, index, select(index), new ParallelExtractor.EntryConsumer() {
+                @Override
+                public void accept(int entryIndex, ByteBuffer contents) {
+                    checkedFiles.incrementAndGet();
+                    checkedBytes.add(contents.remaining());
+                    CRC32 crc = new CRC32();
+                    crc.update(contents);
+                    int actual = (int) crc.getValue();
+                    if (actual != entries.getCrc32(entryIndex)) {
+                        mismatches.add(buildMismatch(index, entryIndex, actual, null));
+                    }
+                }
+
+                @Override
+                public void failed(int entryIndex, DecompressionException e) {
+                    checkedFiles.incrementAndGet();
+                    mismatches.add(buildMismatch(index, entryIndex, 0, e.getMessage()));
+                }
+            });
+            endPhase(Phase.DATA, start, index.getDataOffset(), archive.limit());
+        } catch (IOException e) {
+            // Checking contents never throws
+            throw new UncheckedIOException(e);
+        }
+
+        List<ChecksumMismatch> fileMismatches = new ArrayList<>(mismatches);
+        fileMismatches.sort(Comparator.comparingInt(ChecksumMismatch::getFileId));
+        report.getMismatches().addAll(fileMismatches);
+        report.setCheckedFiles(checkedFiles.get());
+        report.setCheckedBytes(checkedBytes.sum());
+        return report;
+    }
+
+    /**
+     * Reads and, if needed, decompresses the data of a single file.
+     * 
+     * Jumps straight to the entry's offset, so no other file's data is read. Safe to call from any number of threads
+     * at once.
+     * 
+     * @param entry Entry of the file, from {@link #readIndex()}.
+     * @return Contents of the file, or null if the entry is unused.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    public byte[] readFileData(FileEntry entry) throws DecompressionException {
+        return readFileData(FileEntryTable.of(entry), 0);
+    }
+
+    /**
+     * Reads and, if needed, decompresses the data of a single file, see {@link #readFileData(FileEntry)}.
+     * 
+     * @param entries Entries of the archive, from {@link #readIndex()}.
+     * @param entryIndex Index of the file's entry.
+     * @return Contents of the file, or null if the entry is unused.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    public byte[] readFileData(FileEntryTable entries, int entryIndex) throws DecompressionException {
+        ByteBuffer contents = readFileContents(entries, entryIndex);
+        return contents == null ? null : toArray(contents);
+    }
+
+    /**
+     * Reads and, if needed, decompresses the data of a single file into a buffer.
+     * 
+     * Files that are not compressed are returned as a read-only view of the archive rather than copied. Safe to call
+     * from any number of threads at once.
+     * 
+     * @param entries Entries of the archive, from {@link #readIndex()}.
+     * @param entryIndex Index of the file's entry.
+     * @return Contents of the file, or null if the entry is unused.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    public ByteBuffer readFileContents(FileEntryTable entries, int entryIndex) throws DecompressionException {
+        if (!hasFileData(entries, entryIndex)) {
+            return null;
+        }
+        return decodeFileData(entries, entryIndex, locateFileData(entries, entryIndex));
+    }
+
+    /**
+     * Whether the given entry has any data stored in the archive.
+     * 
+     * @param entries Entries of the archive.
+     * @param entryIndex Index of the file's entry.
+     * @return False for unused entries.
+     */
+    static boolean hasFileData(FileEntryTable entries, int entryIndex) {
+        return !entries.isUnused(entryIndex)
+            && (entries.getCompressionTag(entryIndex) == 0 || entries.getOffset(entryIndex) != 0);
+    }
+
+    /**
+     * Slices the data of the given entry out of the archive without reading it.
+     * 
+     * For compressed files the slice starts with the 12 byte compression header. Only reads the archive at absolute
+     * indexes, so may be called from any number of threads at once.
+     * 
+     * @param entries Entries of the archive.
+     * @param entryIndex Index of the file's entry, which must have data.
+     * @return Buffer holding only the entry's data.
+     * @throws DecompressionException When the entry's data lies outside of the archive.
+     */
+    ByteBuffer locateFileData(FileEntryTable entries, int entryIndex) throws DecompressionException {
+        long offset = entries.getOffset(entryIndex);
+        long length = Integer.toUnsignedLong(entries.getRawSize(entryIndex));
+        if (entries.getCompressionTag(entryIndex) != 0 && offset >= 0 && offset + 12 <= archive.limit()) {
+            length = 12 + Integer.toUnsignedLong(archive.getInt((int) offset));
+        }
+        if (offset < 0 || offset + length > archive.limit()) {
+            String msg = String.format("Data for file %s at offset %s of %s bytes lies outside of the archive",
+                entries.getFileId(entryIndex), offset, length);
+            logger.error(msg);
+            throw new DecompressionException(msg);
+        }
+        ByteBuffer data = archive.slice((int) offset, (int) length);
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        return data;
+    }
+
+    /**
+     * Decompresses, if needed, data sliced by {@link #locateFileData(FileEntryTable, int)}.
+     * 
+     * Only touches the given slice, so may be called from any number of threads at once. Files that are not
+     * compressed are returned as a read-only view of the slice rather than copied.
+     * 
+     * @param entries Entries of the archive.
+     * @param entryIndex Index of the file's entry.
+     * @param data Slice of the entry's data.
+     * @return Contents of the file.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    ByteBuffer decodeFileData(FileEntryTable entries, int entryIndex, ByteBuffer data) throws DecompressionException {
+        int fileId = entries.getFileId(entryIndex);
+        if (entries.getCompressionTag(entryIndex) == 0) {
+            listener.entryDecoded(fileId, data.remaining(), data.remaining(), 0);
+            return data.asReadOnlyBuffer();
+        }
+
+        int compressedSize = data.getInt();
+        int rawSize = data.getInt();
+        data.getInt();
+        ByteBuffer compressedData = data.slice(data.position(), compressedSize);
+        long start = System.nanoTime();
+        try {
+            byte[] decompressedBytes = decompress(compressedData, rawSize);
+            if (decompressedBytes.length != rawSize) {
+                String msg = String.format(
+                    "Data for file %s decompressed to %s bytes, but header raw size is %s",
+                    fileId,
+                    decompressedBytes.length,
+                    rawSize
+                );
+                logger.error(msg);
+                listener.entryFailed(fileId, msg);
+                throw new DecompressionException(msg);
+            }
+            listener.entryDecoded(fileId, compressedSize, rawSize, System.nanoTime() - start);
+            return ByteBuffer.wrap(decompressedBytes);
+        } catch (IOException e) {
+            String msg = String.format("Data for file %s failed to decompress with reason %s", fileId, e.getMessage());
+            logger.error(msg);
+            listener.entryFailed(fileId, msg);
+            throw new DecompressionException(msg);
+        }
     }
 
     private ArchiveHeader readHeader() throws IncorrectFileTypeException {
@@ -101,44 +539,38 @@ public class ArchiveInput {
         return header;
     }
 
-    private FileEntry[] readFileEntries(int fileCount) {
-        FileEntry[] fileEntries = new FileEntry[fileCount];
+    private FileEntryTable readFileEntries(int fileCount) {
+        FileEntryTable fileEntries = new FileEntryTable(fileCount);
         for (int i = 0; i < fileCount; i++) {
-            FileEntry fileEntry = new FileEntry();
-            fileEntry.setCompressionTag(archive.getInt() & UNSIGNED_INT_MASK);
-            fileEntry.setFolderNameIndex(archive.getInt());
-            fileEntry.setFileNameIndex(archive.getInt());
-            fileEntry.setFileId(archive.getInt());
-            fileEntry.setRawSize(archive.getInt() & UNSIGNED_INT_MASK);
-            fileEntry.setCompressedSize(archive.getInt() & UNSIGNED_INT_MASK);
-            fileEntry.setOffset(archive.getLong() & UNSIGNED_LONG_MASK);
-            byte[] checksum = new byte[4];
-            archive.get(checksum, 0, 4);
-            fileEntry.setChecksum(checksum);
-            fileEntry.setUnknownField(archive.getInt());
-
-            fileEntries[i] = fileEntry;
+            fileEntries.setCompressionTag(i, archive.getInt() & UNSIGNED_INT_MASK);
+            fileEntries.setFolderNameIndex(i, archive.getInt());
+            fileEntries.setFileNameIndex(i, archive.getInt());
+            fileEntries.setFileId(i, archive.getInt());
+            fileEntries.setRawSize(i, archive.getInt());
+            fileEntries.setCompressedSize(i, archive.getInt());
+            fileEntries.setOffset(i, archive.getLong() & UNSIGNED_LONG_MASK);
+            fileEntries.setCrc32(i, archive.getInt());
+            fileEntries.setUnknownField(i, archive.getInt());
         }
         return fileEntries;
     }
 
     protected List<String> getNames() throws DecompressionException {
-        CompressedDataHeader header = new CompressedDataHeader();
-        header.setCompressedSize(archive.getInt());
-        header.setRawSize(archive.getInt());
-        header.setChecksum(archive.getInt());
+        CompressedDataHeader header = readCompressedDataHeader();
 
         List<String> names = new ArrayList<>();
         if (header.getCompressedSize() == header.getRawSize()) {
             int count = archive.getInt();
             int size = archive.getInt();
 
-            names = getStrings(archive, count);
+            ByteBuffer table = archive.slice(archive.position(), size - 8);
+            names = getStrings(table, count);
+            archive.position(archive.position() + table.position());
         } else {
-            byte[] compressed = new byte[header.getCompressedSize()];
-            archive.get(compressed, 0, header.getCompressedSize());
+            ByteBuffer compressed = archive.slice(archive.position(), header.getCompressedSize());
+            archive.position(archive.position() + header.getCompressedSize());
             try {
-                byte[] decompressedBytes = decompress(compressed);
+                byte[] decompressedBytes = decompress(compressed, header.getRawSize());
 
                 if (decompressedBytes.length != header.getRawSize()) {
                     String msg = String.format(
@@ -165,6 +597,52 @@ public class ArchiveInput {
         return names;
     }
 
+    private int verifyNameTable(int offset, ChecksumSection section, VerificationReport report) {
+        int compressedSize = archive.getInt(offset);
+        int rawSize = archive.getInt(offset + 4);
+        int expected = archive.getInt(offset + 8);
+        ByteBuffer data = archive.slice(offset + 12, compressedSize);
+
+        ChecksumMismatch mismatch = new ChecksumMismatch();
+        mismatch.setSection(section);
+        mismatch.setFileId(-1);
+        mismatch.setExpected(expected);
+        CRC32 crc = new CRC32();
+        if (compressedSize == rawSize) {
+            crc.update(data);
+        } else {
+            try {
+                crc.update(decompress(data, rawSize));
+            } catch (IOException e) {
+                mismatch.setError(e.getMessage());
+            }
+        }
+        mismatch.setActual((int) crc.getValue());
+        if (mismatch.getError() != null || mismatch.getActual() != expected) {
+            report.getMismatches().add(mismatch);
+        }
+        return offset + 12 + compressedSize;
+    }
+
+    private static ChecksumMismatch buildMismatch(ArchiveIndex index, int entryIndex, int actual, String error) {
+        ChecksumMismatch mismatch = new ChecksumMismatch();
+        mismatch.setSection(ChecksumSection.FILE);
+        mismatch.setFileId(index.getEntries().getFileId(entryIndex));
+        mismatch.setPath(index.getPath(entryIndex));
+        mismatch.setExpected(index.getEntries().getCrc32(entryIndex));
+        mismatch.setActual(actual);
+        mismatch.setError(error);
+        return mismatch;
+    }
+
+    private CompressedDataHeader readCompressedDataHeader() {
+        CompressedDataHeader header = new CompressedDataHeader();
+        header.setCompressedSize(archive.getInt());
+        header.setRawSize(archive.getInt());
+        header.setChecksum(archive.getInt());
+        return header;
+    }
+
     private ArchivedFolder[] buildFolders(List<String> folderNames, int[] folderParentIndexes) {
         ArchivedFolder[] folders = new ArchivedFolder[folderNames.size()];
         for (int i = 0; i < folderNames.size(); i++) {
@@ -176,24 +654,69 @@ public class ArchiveInput {
         return folders;
     }
 
-    private ArchivedFile[] buildFiles(FileEntry[] fileEntries, List<String> fileNames) {
-        ArchivedFile[] files = new ArchivedFile[fileEntries.length];
-        for (int i = 0; i < fileEntries.length; i++) {
+    private ArchivedFile[] buildFiles(FileEntryTable fileEntries, List<String> fileNames) {
+        ArchivedFile[] files = new ArchivedFile[fileEntries.size()];
+        for (int i = 0; i < fileEntries.size(); i++) {
             ArchivedFile newFile = new ArchivedFile();
-            newFile.setId(fileEntries[i].getFileId());
-            int fileNameIndex = fileEntries[i].getFileNameIndex();
+            newFile.setId(fileEntries.getFileId(i));
+            int fileNameIndex = fileEntries.getFileNameIndex(i);
             if (fileNameIndex >= 0) {
                 newFile.setName(fileNames.get(fileNameIndex));
             } else {
                 newFile.setName("UNUSED");
-                logger.info("File with ID {} is unused, setting name to UNUSED", newFile.getId());
             }
-            newFile.setFolderIndex(fileEntries[i].getFolderNameIndex());
+            newFile.setFolderIndex(fileEntries.getFolderNameIndex(i));
             files[i] = newFile;
         }
         return files;
     }
 
+    private BitSet select(ArchiveIndex index) {
+        EntryFilter current = filter;
+        if (current == null) {
+            return null;
+        }
+        BitSet selected = current.select(index);
+        logger.info("Selected {} of {} files to read", selected.cardinality(), index.getEntries().size());
+        return selected;
+    }
+
+    private ArchiveIndex readCachedIndex(IndexCache cache) {
+        long start = System.nanoTime();
+        ArchiveIndex index;
+        try {
+            index = cache.read(path, archive);
+        } catch (IOException e) {
+            logger.warn("Cached index of {} could not be read: {}", path, e.getMessage());
+            return null;
+        }
+        if (index != null) {
+            // Everything up to the data was had from the cache, so counts as read in one go
+            endPhase(Phase.HEADER, start, 0, index.getDataOffset());
+            countUnused(index.getEntries());
+        }
+        return index;
+    }
+
+    private long endPhase(Phase phase, long start, int from, int to) {
+        long end = System.nanoTime();
+        listener.phaseCompleted(phase, end - start, to - from);
+        return end;
+    }
+
+    private void countUnused(FileEntryTable entries) {
+        int unused = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (!hasFileData(entries, i)) {
+                unused++;
+            }
+        }
+        if (unused > 0) {
+            logger.info("{} of {} entries are unused, so have no data to read", unused, entries.size());
+            listener.entriesUnused(unused);
+        }
+    }
+
     private int[] readFolderParentIndexes() {
         int count = archive.getInt();
         int[] folders = new int[count];
@@ -203,41 +726,15 @@ public class ArchiveInput {
         return folders;
     }
 
-    private void readAndAssignFileData(FileEntry[] fileEntries, ArchivedFile[] files) {
-        for (int i = 0; i < fileEntries.length; i++) {
-            if (fileEntries[i].getCompressionTag() == 0) {
-                byte[] data = new byte[fileEntries[i].getRawSize()];
-                archive.get(data, 0, fileEntries[i].getRawSize());
-                files[i].setContents(data);
-            } else {
-                if (fileEntries[i].getOffset() != 0) {
-                    CompressedDataHeader header = new CompressedDataHeader();
-                    header.setCompressedSize(archive.getInt());
-                    header.setRawSize(archive.getInt());
-                    header.setChecksum(archive.getInt());
-
-                    byte[] compressedData = new byte[header.getCompressedSize()];
-                    archive.get(compressedData, 0, header.getCompressedSize());
-                    try {
-                        byte[] decompressedBytes = decompress(compressedData);
-                        if (decompressedBytes.length == header.getRawSize()) {
-                            files[i].setContents(decompressedBytes);
-                        } else {
-                            logger.error(
-                                "Data for file {} possibly failed to decompress. Decompressed byte length is {}, but header raw size is {}",
-                                fileEntries[i].getFileId(),
-                                decompressedBytes.length,
-                                header.getRawSize()
-                            );
-                            continue;
-                        }
-                    } catch (IOException e) {
-                        logger.error("Data for file {} failed to decompress", fileEntries[i].getFileId());
-                        continue;
-                    }
-                } else {
-                    logger.info("File with ID {} is unused, so no data to read", files[i].getId());
-                }
+    private void readAndAssignFileData(FileEntryTable fileEntries, BitSet selected, ArchivedFile[] files) {
+        for (int i = 0; i < fileEntries.size(); i++) {
+            if ((selected != null && !selected.get(i)) || !hasFileData(fileEntries, i)) {
+                continue;
+            }
+            try {
+                files[i].setContents(toArray(decodeFileData(fileEntries, i, locateFileData(fileEntries, i))));
+            } catch (DecompressionException e) {
+                // Already logged, move on to the next file
             }
         }
     }
@@ -266,51 +763,106 @@ public class ArchiveInput {
     }
 
     private String getString(int to) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = archive.position(); i < to; i++) {
-            sb.append((char) archive.get());
-        }
-        return sb.toString();
+        int length = to - archive.position();
+        byte[] bytes = new byte[length];
+        archive.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
     }
 
     private String getString() {
-        StringBuilder sb = new StringBuilder();
-        boolean hasReachedTerminator = false;
-        while (!hasReachedTerminator) {
-            byte currentByte = archive.get();
-            if (currentByte == COMMENT_TERMINATOR) {
-                hasReachedTerminator = true;
-            } else {
-                sb.append((char) currentByte);
-            }
+        int start = archive.position();
+        int end = start;
+        while (archive.get(end) != COMMENT_TERMINATOR) {
+            end++;
         }
-        return sb.toString();
+        String string = getString(end);
+        archive.position(end + 1);
+        return string;
     }
 
+    /**
+     * Reads a table of UTF-16LE strings, each ended by a 0x0000 delimiter.
+     * 
+     * The table is scanned for delimiters as raw bytes and each string is built in one step, rather than char by
+     * char. A buffer without an accessible array, such as the mapped archive, is copied once so should be limited to
+     * the table. The buffer is left positioned after the last delimiter read.
+     * 
+     * @param buffer Buffer positioned at the start of the table.
+     * @param count Number of strings in the table.
+     * @return Strings in the order they are stored.
+     */
     protected List<String> getStrings(ByteBuffer buffer, int count) {
-        List<String> strings = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            StringBuilder sb = new StringBuilder();
-            boolean isDelimiter = false;
-            while (!isDelimiter) {
-                char character = (char) buffer.getShort();
-                if (character == STRING_ARRAY_DELIMITER) {
-                    strings.add(sb.toString());
-                    isDelimiter = true;
-                } else {
-                    sb.append(character);
-                }
+        byte[] bytes;
+        int start;
+        int end;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            start = buffer.arrayOffset() + buffer.position();
+            end = buffer.arrayOffset() + buffer.limit();
+        } else {
+            bytes = new byte[buffer.remaining()];
+            buffer.get(buffer.position(), bytes);
+            start = 0;
+            end = bytes.length;
+        }
+
+        List<String> strings = new ArrayList<>(count);
+        int stringStart = start;
+        for (int i = start; strings.size() < count && i + 1 < end; i += 2) {
+            if (bytes[i] == STRING_ARRAY_DELIMITER && bytes[i + 1] == STRING_ARRAY_DELIMITER) {
+                strings.add(new String(bytes, stringStart, i - stringStart, StandardCharsets.UTF_16LE));
+                stringStart = i + 2;
             }
         }
+        if (strings.size() < count) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + stringStart - start);
         return strings;
     }
 
-    protected byte[] decompress(byte[] compressedData) throws IOException {
-        ByteArrayInputStream compressedStream = new ByteArrayInputStream(compressedData);
-        BlastInputStream blastStream = new BlastInputStream(compressedStream);
+    /**
+     * Decompresses data straight from a buffer, such as a slice of the mapped archive.
+     * 
+     * The data is decoded by {@link DclDecoder} into an array of the expected raw size. Should that fail for any reason
+     * but the data being too long, decoding is retried with dbc-reader. If the data decompresses to fewer bytes, the
+     * returned array is truncated to the decompressed length so callers can detect the mismatch. A raw size that the
+     * data could never decompress to is refused before anything is allocated.
+     * 
+     * @param compressedData Buffer positioned at the start of the compressed data, limited to its end.
+     * @param rawSize Size of the data once decompressed in bytes.
+     * @return Decompressed data.
+     * @throws IOException When the data failed to decompress, decompressed to more than the raw size, or the raw size
+     *                     is out of bounds.
+     */
+    protected byte[] decompress(ByteBuffer compressedData, int rawSize) throws IOException {
+        if (rawSize < 0 || rawSize > (long) compressedData.remaining() * DclDecoder.MAX_EXPANSION) {
+            throw new IOException(String.format("Raw size %s is out of bounds for %s bytes of compressed data",
+                Integer.toUnsignedLong(rawSize), compressedData.remaining()));
+        }
+        byte[] result = new byte[rawSize];
         try {
-            byte[] result = blastStream.readAllBytes();
-            return result;
+            int written = DclDecoder.decode(compressedData, result);
+            return written == rawSize ? result : Arrays.copyOf(result, written);
+        } catch (DclDecoder.OverrunException e) {
+            // The same stream would only run past the end again, so not worth decoding twice
+            throw new IOException(e.getMessage());
+        } catch (DecompressionException e) {
+            logger.warn("Built in decoder failed with reason {}, retrying with dbc-reader", e.getMessage());
+            return decompressWithBlast(compressedData, rawSize);
+        }
+    }
+
+    byte[] decompressWithBlast(ByteBuffer compressedData, int rawSize) throws IOException {
+        BlastInputStream blastStream = new BlastInputStream(new ByteBufferInputStream(compressedData.duplicate()));
+        try {
+            byte[] result = new byte[rawSize];
+            int read = blastStream.readNBytes(result, 0, rawSize);
+            // Reading one byte more tells a stream that ends exactly at the raw size from one that runs on
+            if (read == rawSize && blastStream.read() >= 0) {
+                throw new IOException(String.format("Data decompresses to more than the expected %s bytes", rawSize));
+            }
+            return read == rawSize ? result : Arrays.copyOf(result, read);
         } catch (IOException e) {
             logger.error("Decompression failed with reason {}", e.getMessage());
             throw e;
@@ -318,4 +870,27 @@ public class ArchiveInput {
             blastStream.close();
         }
     }
+
+    /**
+     * Gets the contents of a buffer as an array, only copying when the buffer does not wrap an array exactly.
+     */
+    static byte[] toArray(ByteBuffer contents) {
+        if (contents.hasArray() && contents.arrayOffset() == 0 && contents.position() == 0
+                && contents.remaining() == contents.array().length) {
+            return contents.array();
+        }
+        byte[] array = new byte[contents.remaining()];
+        contents.duplicate().get(array);
+        return array;
+    }
+
+    private static ByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Archive of %s bytes is too large to map", size));
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
 }
@@ -0,0 +1,471 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles writing of a H2O archive to a FileChannel.
+ * 
+ * Files are compressed across a pool of threads and written to the channel in order as soon as they are ready, so
+ * the archive is never assembled in memory. The data section is written first, leaving room for the header, file
+ * entries, name tables and folder structure, which are filled in once every offset and checksum is known. As with
+ * {@link ParallelExtractor}, the raw size of every file being worked on counts against a limit of bytes in flight.
+ */
+public class ArchiveOutput implements AutoCloseable {
+
+    private static final String MAGIC_NUMBER = "LIQDLH2O";
+    private static final float VERSION_FLOAT = 6.0f;
+    private static final int VERSION_INT = 6;
+    private static final int COMMENT_TERMINATOR = 0x1A;
+    private static final int FILE_ENTRY_SIZE = 40;
+    private static final int COMPRESSED_DATA_HEADER_SIZE = 12;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxPermits;
+    private final ThreadLocal<DclEncoder> encoders = ThreadLocal.withInitial(DclEncoder::new);
+    private final Logger logger = LoggerFactory.getLogger(ArchiveOutput.class);
+
+    private String comments = "";
+
+    /**
+     * Supplies the contents of a file to be archived. Called from a pool thread.
+     */
+    @FunctionalInterface
+    public interface ContentSource {
+
+        /**
+         * Opens the contents of the file.
+         * 
+         * @return Contents of the file, from its position to its limit.
+         * @throws IOException When the contents could not be read.
+         */
+        ByteBuffer open() throws IOException;
+    }
+
+    /**
+     * Instantiate new ArchiveOutput with its own {@link ForkJoinPool}.
+     * 
+     * @param parallelism Number of threads to compress with.
+     * @param maxInFlightBytes Limit of raw bytes held at once.
+     */
+    public ArchiveOutput(int parallelism, long maxInFlightBytes) {
+        this(new ForkJoinPool(parallelism), true, maxInFlightBytes);
+    }
+
+    /**
+     * Instantiate new ArchiveOutput on an existing executor, which is left running on {@link #close()}.
+     * 
+     * @param executor Executor to compress with.
+     * @param maxInFlightBytes Limit of raw bytes held at once.
+     */
+    public ArchiveOutput(ExecutorService executor, long maxInFlightBytes) {
+        this(executor, false, maxInFlightBytes);
+    }
+
+    private ArchiveOutput(ExecutorService executor, boolean ownsExecutor, long maxInFlightBytes) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxPermits = (int) Math.max(1, Math.min(maxInFlightBytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Sets the user comments stored in the header of written archives. Empty by default.
+     * 
+     * @param comments Comments, which must not contain the 0x1A terminator.
+     */
+    public void setComments(String comments) {
+        this.comments = comments;
+    }
+
+    /**
+     * Writes an archive of the given folders and files, keeping each file's position by ID.
+     * 
+     * @param data Folders and files to archive. Unused files are written as unused entries.
+     * @param channel Channel to write the archive to, from position 0.
+     * @throws IOException When the archive could not be written.
+     * @throws InterruptedException When interrupted while waiting for files to compress.
+     */
+    public void write(ArchivedData data, FileChannel channel) throws IOException, InterruptedException {
+        List<String> folderNames = new ArrayList<>();
+        int[] parentIndexes = new int[data.getFolders().length];
+        List<ArchivedFile> files = new ArrayList<>(data.getTopLevelFiles());
+        for (int i = 0; i < data.getFolders().length; i++) {
+            ArchivedFolder folder = data.getFolders()[i];
+            folderNames.add(folder.getName());
+            parentIndexes[i] = folder.getParentIndex();
+            files.addAll(folder.getFiles());
+        }
+        List<ArchivedFile> unusedFiles = data.getUnusedFiles() == null ? List.of() : data.getUnusedFiles();
+        files.addAll(unusedFiles);
+        files.sort(Comparator.comparingInt(ArchivedFile::getId));
+
+        List<PackedFile> packedFiles = new ArrayList<>();
+        for (ArchivedFile file : files) {
+            if (file.getContents() == null) {
+                packedFiles.add(new PackedFile(-1, null, null, 0));
+            } else {
+                packedFiles.add(new PackedFile(file.getFolderIndex(), file.getName(),
+                    () -> ByteBuffer.wrap(file.getContents()), file.getContents().length));
+            }
+        }
+        write(folderNames, parentIndexes, packedFiles, channel);
+    }
+
+    /**
+     * Writes an archive of everything within the given directory.
+     * 
+     * Every sub directory becomes a folder, named by its path relative to the given directory. Files are memory
+     * mapped rather than read onto the heap.
+     * 
+     * @param directory Directory to archive.
+     * @param channel Channel to write the archive to, from position 0.
+     * @throws IOException When the directory could not be read or the archive could not be written.
+     * @throws InterruptedException When interrupted while waiting for files to compress.
+     */
+    public void write(Path directory, FileChannel channel) throws IOException, InterruptedException {
+        List<Path> folders;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            List<Path> all = walk.filter(path -> !path.equals(directory)).sorted().collect(Collectors.toList());
+            folders = all.stream().filter(Files::isDirectory).collect(Collectors.toList());
+            files = all.stream().filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        Map<Path, Integer> folderIndexes = new HashMap<>();
+        List<String> folderNames = new ArrayList<>();
+        int[] parentIndexes = new int[folders.size()];
+        for (int i = 0; i < folders.size(); i++) {
+            Path folder = folders.get(i);
+            folderIndexes.put(folder, i);
+            folderNames.add(toArchivePath(directory.relativize(folder)));
+            parentIndexes[i] = folderIndexes.getOrDefault(folder.getParent(), -1);
+        }
+
+        List<PackedFile> packedFiles = new ArrayList<>();
+        for (Path file : files) {
+            int folderIndex = folderIndexes.getOrDefault(file.getParent(), -1);
+            packedFiles.add(new PackedFile(folderIndex, file.getFileName().toString(), () -> {
+                try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                }
+            }, Files.size(file)));
+        }
+        write(folderNames, parentIndexes, packedFiles, channel);
+    }
+
+    /**
+     * Writes an archive of chosen files from another archive, keeping their folders and names.
+     * 
+     * Every folder of the other archive is kept, so folder indexes carry over unchanged. The chosen files are read,
+     * decompressed if needed, and compressed again as they are written.
+     * 
+     * @param input Archive to take the files from.
+     * @param index Index of that archive, from {@link ArchiveInput#readIndex()}.
+     * @param entryIndexes Indexes of the entries of the files to write, in the order to write them.
+     * @param channel Channel to write the archive to, from position 0.
+     * @throws IOException When a file could not be read or the archive could not be written.
+     * @throws InterruptedException When interrupted while waiting for files to compress.
+     */
+    public void write(ArchiveInput input, ArchiveIndex index, int[] entryIndexes, FileChannel channel)
+            throws IOException, InterruptedException {
+        FileEntryTable entries = index.getEntries();
+        List<PackedFile> packedFiles = new ArrayList<>();
+        for (int entryIndex : entryIndexes) {
+            ContentSource source = () -> {
+                try {
+                    ByteBuffer contents = input.readFileContents(entries, entryIndex);
+                    return contents == null ? ByteBuffer.allocate(0) : contents;
+                } catch (DecompressionException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            };
+            packedFiles.add(new PackedFile(entries.getFolderNameIndex(entryIndex), index.getFileName(entryIndex),
+                source, Integer.toUnsignedLong(entries.getRawSize(entryIndex))));
+        }
+        write(index.getFolderNames(), index.getFolderParentIndexes(), packedFiles, channel);
+    }
+
+    /**
+     * Shuts down the pool if it was created by this instance.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void write(List<String> folderNames, int[] parentIndexes, List<PackedFile> files, FileChannel channel)
+            throws IOException, InterruptedException {
+        List<String> fileNames = new ArrayList<>();
+        for (PackedFile file : files) {
+            if (file.name != null) {
+                file.nameIndex = fileNames.size();
+                fileNames.add(file.name);
+            }
+        }
+
+        byte[] commentBytes = comments.getBytes(StandardCharsets.ISO_8859_1);
+        int headerSize = MAGIC_NUMBER.length() + 4 + commentBytes.length + 1 + 4 + 4 + 8 + 8;
+        ByteBuffer folderTable = buildNameTable(folderNames);
+        ByteBuffer fileTable = buildNameTable(fileNames);
+        ByteBuffer structure = ByteBuffer.allocate(4 + 4 * parentIndexes.length).order(ByteOrder.LITTLE_ENDIAN);
+        structure.putInt(parentIndexes.length);
+        for (int parentIndex : parentIndexes) {
+            structure.putInt(parentIndex);
+        }
+        structure.flip();
+        long dataOffset = headerSize + (long) FILE_ENTRY_SIZE * files.size() + folderTable.remaining()
+            + fileTable.remaining() + structure.remaining();
+
+        long end = writeData(files, channel, dataOffset);
+
+        FileEntryTable table = buildEntryTable(files);
+        long rawTotal = 0;
+        long compressedTotal = 0;
+        for (int i = 0; i < table.size(); i++) {
+            rawTotal += table.getRawSize(i);
+            compressedTotal += table.getCompressedSize(i);
+        }
+        ByteBuffer entries = buildEntries(table);
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC_NUMBER.getBytes(StandardCharsets.US_ASCII));
+        header.putFloat(VERSION_FLOAT);
+        header.put(commentBytes);
+        header.put((byte) COMMENT_TERMINATOR);
+        header.putInt(VERSION_INT);
+        header.putInt(files.size());
+        header.putLong(compressedTotal);
+        header.putLong(rawTotal);
+        header.flip();
+
+        long position = 0;
+        for (ByteBuffer section : new ByteBuffer[] {header, entries, folderTable, fileTable, structure}) {
+            position = writeFully(channel, section, position);
+        }
+        channel.truncate(end);
+    }
+
+    private static FileEntryTable buildEntryTable(List<PackedFile> files) {
+        FileEntryTable table = new FileEntryTable(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            PackedFile file = files.get(i);
+            table.setCompressionTag(i, file.name == null || file.compressed ? 1 : 0);
+            table.setFolderNameIndex(i, file.name == null ? -1 : file.folderIndex);
+            table.setFileNameIndex(i, file.name == null ? -1 : file.nameIndex);
+            table.setFileId(i, i);
+            table.setRawSize(i, file.rawSize);
+            table.setCompressedSize(i, file.compressedSize);
+            table.setOffset(i, file.offset);
+            table.setCrc32(i, file.checksum);
+        }
+        return table;
+    }
+
+    private static ByteBuffer buildEntries(FileEntryTable table) {
+        ByteBuffer entries = ByteBuffer.allocate(FILE_ENTRY_SIZE * table.size()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < table.size(); i++) {
+            entries.putInt(table.getCompressionTag(i));
+            entries.putInt(table.getFolderNameIndex(i));
+            entries.putInt(table.getFileNameIndex(i));
+            entries.putInt(table.getFileId(i));
+            entries.putInt(table.getRawSize(i));
+            entries.putInt(table.getCompressedSize(i));
+            entries.putLong(table.getOffset(i));
+            entries.putInt(table.getCrc32(i));
+            entries.putInt(table.getUnknownField(i));
+        }
+        entries.flip();
+        return entries;
+    }
+
+    private long writeData(List<PackedFile> files, FileChannel channel, long offset)
+            throws IOException, InterruptedException {
+        Semaphore inFlight = new Semaphore(maxPermits);
+        ArrayDeque<PackedFile> pending = new ArrayDeque<>();
+        long position = offset;
+        try {
+            for (PackedFile file : files) {
+                if (file.source == null) {
+                    continue;
+                }
+                file.permits = (int) Math.max(1, Math.min(file.size, maxPermits));
+                // Only this thread releases permits, by writing out files, so wait by writing out the oldest
+                while (!inFlight.tryAcquire(file.permits)) {
+                    position = writeNext(pending, channel, position, inFlight);
+                }
+                file.encoded = CompletableFuture.supplyAsync(() -> encode(file), executor);
+                pending.add(file);
+                while (!pending.isEmpty() && pending.peek().encoded.isDone()) {
+                    position = writeNext(pending, channel, position, inFlight);
+                }
+            }
+            while (!pending.isEmpty()) {
+                position = writeNext(pending, channel, position, inFlight);
+            }
+        } finally {
+            for (PackedFile file : pending) {
+                file.encoded.cancel(false);
+            }
+        }
+        return position;
+    }
+
+    private long writeNext(ArrayDeque<PackedFile> pending, FileChannel channel, long position, Semaphore inFlight)
+            throws IOException, InterruptedException {
+        PackedFile file = pending.poll();
+        ByteBuffer[] data;
+        try {
+            data = file.encoded.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            String msg = String.format("File %s failed to archive with reason %s", file.name, cause.getMessage());
+            logger.error(msg);
+            throw cause instanceof IOException ? (IOException) cause : new IOException(msg, cause);
+        }
+
+        file.offset = position;
+        for (ByteBuffer buffer : data) {
+            position = writeFully(channel, buffer, position);
+        }
+        inFlight.release(file.permits);
+        return position;
+    }
+
+    private ByteBuffer[] encode(PackedFile file) {
+        ByteBuffer raw;
+        try {
+            raw = file.source.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw.duplicate());
+        file.checksum = (int) crc.getValue();
+        file.rawSize = raw.remaining();
+
+        byte[] compressed = raw.remaining() == 0 ? new byte[0] : encoders.get().encode(raw);
+        if (compressed.length == 0 || compressed.length >= raw.remaining()) {
+            file.compressedSize = file.rawSize;
+            return new ByteBuffer[] {raw};
+        }
+
+        file.compressed = true;
+        file.compressedSize = compressed.length;
+        ByteBuffer header = ByteBuffer.allocate(COMPRESSED_DATA_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(compressed.length);
+        header.putInt(file.rawSize);
+        header.putInt(file.checksum);
+        header.flip();
+        return new ByteBuffer[] {header, ByteBuffer.wrap(compressed)};
+    }
+
+    /**
+     * Builds a name table, compressed if that makes it smaller.
+     */
+    private ByteBuffer buildNameTable(List<String> names) {
+        int stringsSize = 0;
+        for (String name : names) {
+            stringsSize += (name.length() + 1) * 2;
+        }
+        ByteBuffer raw = ByteBuffer.allocate(8 + stringsSize).order(ByteOrder.LITTLE_ENDIAN);
+        raw.putInt(names.size());
+        raw.putInt(raw.capacity());
+        for (String name : names) {
+            raw.put(name.getBytes(StandardCharsets.UTF_16LE));
+            raw.putShort((short) 0);
+        }
+        raw.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(raw.duplicate());
+        byte[] compressed = encoders.get().encode(raw);
+        boolean useCompressed = compressed.length < raw.remaining();
+        int size = useCompressed ? compressed.length : raw.remaining();
+
+        ByteBuffer table = ByteBuffer.allocate(COMPRESSED_DATA_HEADER_SIZE + size).order(ByteOrder.LITTLE_ENDIAN);
+        table.putInt(size);
+        table.putInt(raw.remaining());
+        table.putInt((int) crc.getValue());
+        if (useCompressed) {
+            table.put(compressed);
+        } else {
+            table.put(raw);
+        }
+        table.flip();
+        return table;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    private static String toArchivePath(Path relative) {
+        List<String> segments = new ArrayList<>();
+        for (Path segment : relative) {
+            segments.add(segment.toString());
+        }
+        return String.join("\\", segments);
+    }
+
+    /**
+     * A file on its way into the archive. Sizes, checksum and offset are filled in as it is compressed and written.
+     */
+    private static class PackedFile {
+        final int folderIndex;
+        final String name;
+        final ContentSource source;
+        final long size;
+        int nameIndex = -1;
+        int permits;
+        CompletableFuture<ByteBuffer[]> encoded;
+        boolean compressed;
+        int rawSize;
+        int compressedSize;
+        int checksum;
+        long offset;
+
+        PackedFile(int folderIndex, String name, ContentSource source, long size) {
+            this.folderIndex = folderIndex;
+            this.name = name;
+            this.source = source;
+            this.size = size;
+        }
+    }
+}
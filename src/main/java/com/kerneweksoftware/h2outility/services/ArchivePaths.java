@@ -0,0 +1,110 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Maps the backslash separated folder and file names of an archive onto the local file system.
+ */
+final class ArchivePaths {
+
+    private ArchivePaths() {
+    }
+
+    /**
+     * Resolves the directory of every folder in an archive.
+     * 
+     * Folder names hold the full path of the folder. Where a folder's parent index points at a folder whose name
+     * prefixes its own, the folder is resolved beneath its parent's directory, otherwise from the root.
+     * 
+     * @param root Directory the archive is being extracted into, absolute and normalised.
+     * @param folderNames Names of the archive's folders.
+     * @param parentIndexes Parent index of each folder, -1 for none.
+     * @return Directory of each folder, in the same order as the names.
+     * @throws IOException When a folder would resolve outside of the root.
+     */
+    static Path[] resolveFolders(Path root, List<String> folderNames, int[] parentIndexes) throws IOException {
+        Path[] folderPaths = new Path[folderNames.size()];
+        for (int i = 0; i < folderPaths.length; i++) {
+            String name = folderNames.get(i);
+            int parentIndex = parentIndexes[i];
+            if (parentIndex >= 0 && parentIndex < i) {
+                String parentName = folderNames.get(parentIndex) + "\\";
+                if (name.startsWith(parentName)) {
+                    folderPaths[i] = resolveWithin(root, folderPaths[parentIndex], name.substring(parentName.length()));
+                }
+            }
+            if (folderPaths[i] == null) {
+                folderPaths[i] = resolveWithin(root, root, name);
+            }
+        }
+        return folderPaths;
+    }
+
+    /**
+     * Resolves a backslash separated archive path against a directory, refusing any that would escape the root.
+     * 
+     * @param root Directory the archive is being extracted into, absolute and normalised.
+     * @param directory Directory to resolve against, within the root.
+     * @param archivePath Path as stored in the archive.
+     * @return Resolved path.
+     * @throws IOException When the path would resolve outside of the root.
+     */
+    static Path resolveWithin(Path root, Path directory, String archivePath) throws IOException {
+        Path resolved = directory;
+        for (String segment : archivePath.split("\\\\+")) {
+            if (!segment.isEmpty()) {
+                resolved = resolved.resolve(segment);
+            }
+        }
+        resolved = resolved.normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IOException(String.format("Archive path %s resolves outside of %s", archivePath, root));
+        }
+        return resolved;
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a file, replacing anything already there.
+     * 
+     * @param file File to write.
+     * @param contents Contents of the file.
+     * @throws IOException When the file could not be written.
+     */
+    static void writeFile(Path file, ByteBuffer contents) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    /**
+     * Copies a region of one file to another, replacing anything already there, without reading it onto the heap.
+     * 
+     * @param file File to write.
+     * @param source Channel to copy from. Only read positionally, so may be shared between threads.
+     * @param position Offset of the region within the source.
+     * @param count Length of the region in bytes.
+     * @throws IOException When the file could not be written, or the source ended before the region did.
+     */
+    static void transferFile(Path file, FileChannel source, long position, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long transferred = 0;
+            while (transferred < count) {
+                long copied = source.transferTo(position + transferred, count - transferred, channel);
+                if (copied <= 0) {
+                    throw new IOException(String.format("Archive ended %s bytes into a region of %s bytes at %s",
+                        transferred, count, position));
+                }
+                transferred += copied;
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.metrics.ArchiveListener;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.BatchSummary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts many archives in one go, decompressing every archive's files on one shared {@link ParallelExtractor}.
+ * 
+ * A few archives are read at once so that while one is finishing its last files, the next is already keeping the
+ * extractor busy. Archives are started largest first, so a huge archive is never left running on its own at the end
+ * while the other cores sit idle. Each archive is written into a folder of its own name beneath the output directory,
+ * or, where archives of the same name were found in different folders, into their folders relative to where their
+ * paths first part, e.g. <code>A/Data</code> and <code>B/Data</code>.
+ */
+public class BatchExtractor {
+
+    public static final int DEFAULT_ARCHIVES_AT_ONCE = 3;
+
+    private final ParallelExtractor extractor;
+    private final int archivesAtOnce;
+    private boolean incremental;
+    private ArchiveListener listener = ArchiveListener.NONE;
+    private IndexCache indexCache;
+    private EntryFilter filter;
+    private final Logger logger = LoggerFactory.getLogger(BatchExtractor.class);
+
+    /**
+     * Instantiate new BatchExtractor reading {@link #DEFAULT_ARCHIVES_AT_ONCE} archives at once.
+     * 
+     * @param extractor Extractor to decompress every archive's files with.
+     */
+    public BatchExtractor(ParallelExtractor extractor) {
+        this(extractor, DEFAULT_ARCHIVES_AT_ONCE);
+    }
+
+    /**
+     * Instantiate new BatchExtractor.
+     * 
+     * @param extractor Extractor to decompress every archive's files with.
+     * @param archivesAtOnce Number of archives to read at once. The extractor's limit of bytes in flight applies to
+     *                       each, so peak memory grows with this.
+     */
+    public BatchExtractor(ParallelExtractor extractor, int archivesAtOnce) {
+        this.extractor = extractor;
+        this.archivesAtOnce = archivesAtOnce;
+    }
+
+    /**
+     * Sets whether files already extracted with the same contents are skipped, see
+     * {@link DirectorySink#DirectorySink(Path, boolean)}.
+     * 
+     * @param incremental True to only write new and changed files.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets a listener to be told of timings and counts from every archive. Called from several threads at once.
+     * 
+     * @param listener Listener, such as an {@link com.kerneweksoftware.h2outility.metrics.ArchiveMetrics}.
+     */
+    public void setListener(ArchiveListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets a cache to keep every archive's index in between runs, see {@link ArchiveInput#setIndexCache(IndexCache)}.
+     * 
+     * @param indexCache Cache of indexes, or null for none.
+     */
+    public void setIndexCache(IndexCache indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    /**
+     * Sets which files of every archive to extract, see {@link ArchiveInput#setFilter(EntryFilter)}.
+     * 
+     * @param filter Filter choosing the files, or null for every file.
+     */
+    public void setFilter(EntryFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Finds every archive given by a list of files, directories and glob patterns.
+     * 
+     * Directories are searched, including beneath sub directories, for files ending .H2O in any case. Patterns use
+     * the glob syntax of {@link FileSystem#getPathMatcher(String)}, e.g. <code>games/&#42;&#42;/Data*.H2O</code>.
+     * 
+     * @param arguments Files, directories and patterns.
+     * @return Paths of the archives found, without duplicates.
+     * @throws IOException When a directory could not be searched.
+     */
+    public static List<Path> findArchives(Collection<String> arguments) throws IOException {
+        Set<Path> archives = new LinkedHashSet<>();
+        for (String argument : arguments) {
+            int wildcard = indexOfWildcard(argument);
+            if (wildcard >= 0) {
+                int separator = Math.max(argument.lastIndexOf('/', wildcard), argument.lastIndexOf('\\', wildcard));
+                Path base = separator < 0 ? Paths.get("") : Paths.get(argument.substring(0, separator + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + argument);
+                archives.addAll(walk(base, matcher));
+            } else if (Files.isDirectory(Paths.get(argument))) {
+                archives.addAll(walk(Paths.get(argument), BatchExtractor::isArchiveName));
+            } else {
+                archives.add(Paths.get(argument));
+            }
+        }
+        return new ArrayList<>(archives);
+    }
+
+    /**
+     * Extracts every given archive into a folder of its own name beneath the output directory.
+     * 
+     * Archives sharing a name are told apart by the folders they were found in, so no two archives ever write into
+     * the same folder, nor share a manifest. An archive that fails is recorded in the summary and the rest carry on.
+     * 
+     * @param archives Paths of the archives.
+     * @param outputDirectory Directory to extract the archives beneath.
+     * @return Totals across every archive.
+     * @throws InterruptedException When interrupted while waiting for archives to extract.
+     */
+    public BatchSummary extract(List<Path> archives, Path outputDirectory) throws InterruptedException {
+        BatchSummary summary = new BatchSummary();
+        LongAdder files = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        LongAdder failedFiles = new LongAdder();
+        LongAdder skippedFiles = new LongAdder();
+        long start = System.nanoTime();
+
+        List<Path> ordered = archives.stream()
+            .map(archive -> archive.toAbsolutePath().normalize())
+            .distinct()
+            .sorted(Comparator.comparingLong(BatchExtractor::sizeOf).reversed())
+            .collect(Collectors.toList());
+        Map<Path, Path> roots = outputFolders(ordered, outputDirectory);
+        ExecutorService feeders = Executors.newFixedThreadPool(Math.max(1, Math.min(archivesAtOnce, ordered.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path archive : ordered) {
+                futures.add(feeders.submit(() -> {
+                    extractOne(archive, roots.get(archive), files, bytes, failedFiles, skippedFiles);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    String msg = String.format("%s: %s", ordered.get(i), e.getCause().getMessage());
+                    logger.error(msg);
+                    summary.getFailedArchives().add(msg);
+                }
+            }
+        } finally {
+            feeders.shutdownNow();
+        }
+
+        summary.setArchives(ordered.size());
+        summary.setFiles(files.sum());
+        summary.setBytes(bytes.sum());
+        summary.setFailedFiles(failedFiles.sum());
+        summary.setSkippedFiles(skippedFiles.sum());
+        summary.setElapsedNanos(System.nanoTime() - start);
+        return summary;
+    }
+
+    private void extractOne(Path archive, Path root, LongAdder files, LongAdder bytes,
+            LongAdder failedFiles, LongAdder skippedFiles)
+            throws IOException, IncorrectFileTypeException, DecompressionException, InterruptedException {
+        logger.info("Extracting {} into {}", archive, root);
+
+        ArchiveInput input = new ArchiveInput(archive);
+        input.addListener(listener);
+        input.setIndexCache(indexCache);
+        input.setFilter(filter);
+        try (DirectorySink directory = new DirectorySink(root, incremental)) {
+            input.extract(extractor, new EntrySink() {
+                @Override
+                public void begin(ArchiveIndex index) throws IOException {
+                    directory.begin(index);
+                }
+
+                @Override
+                public boolean skip(ArchiveIndex index, int entryIndex) throws IOException {
+                    if (directory.skip(index, entryIndex)) {
+                        skippedFiles.increment();
+                        return true;
+                    }
+                    return false;
+                }
+
+                @Override
+                public void write(ArchiveIndex index, int entryIndex, ByteBuffer contents) throws IOException {
+                    int size = contents.remaining();
+                    directory.write(index, entryIndex, contents);
+                    files.increment();
+                    bytes.add(size);
+                }
+
+                @Override
+                public boolean transfer(ArchiveIndex index, int entryIndex, FileChannel archive, long offset)
+                        throws IOException {
+                    directory.transfer(index, entryIndex, archive, offset);
+                    files.increment();
+                    bytes.add(Integer.toUnsignedLong(index.getEntries().getRawSize(entryIndex)));
+                    return true;
+                }
+
+                @Override
+                public void failed(ArchiveIndex index, int entryIndex, DecompressionException e) {
+                    failedFiles.increment();
+                }
+            });
+        }
+    }
+
+    private static Map<Path, Path> outputFolders(List<Path> archives, Path outputDirectory) {
+        // Grouped regardless of case, as folders differing only in case are one and the same on Windows
+        Map<String, List<Path>> byName = archives.stream()
+            .collect(Collectors.groupingBy(archive -> stem(archive).toLowerCase(Locale.ROOT)));
+
+        Map<Path, Path> roots = new HashMap<>();
+        Set<String> taken = new HashSet<>();
+        for (Path archive : archives) {
+            List<Path> sameName = byName.get(stem(archive).toLowerCase(Locale.ROOT));
+            String folder = stem(archive);
+            if (sameName.size() > 1) {
+                Path base = sameName.get(0).getParent();
+                for (Path other : sameName) {
+                    while (base != null && !other.startsWith(base)) {
+                        base = base.getParent();
+                    }
+                }
+                // Archives on different drives share no folder, so keep everything beneath the drive
+                Path parent = archive.getParent();
+                Path relative = (base == null ? parent.getRoot() : base).relativize(parent).resolve(folder);
+                folder = relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+            }
+            // Only paths differing in case alone can still clash, which are numbered instead
+            String unique = folder;
+            for (int i = 2; !taken.add(unique.toLowerCase(Locale.ROOT)); i++) {
+                unique = folder + "-" + i;
+            }
+            roots.put(archive, outputDirectory.resolve(unique));
+        }
+        return roots;
+    }
+
+    private static String stem(Path archive) {
+        String name = archive.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    private static List<Path> walk(Path base, PathMatcher filter) throws IOException {
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile).filter(filter::matches).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isArchiveName(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".h2o");
+    }
+
+    private static int indexOfWildcard(String argument) {
+        for (int i = 0; i < argument.length(); i++) {
+            if ("*?[{".indexOf(argument.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long sizeOf(Path archive) {
+        try {
+            return Files.size(archive);
+        } catch (IOException e) {
+            // Left for extraction to report
+            return 0;
+        }
+    }
+}
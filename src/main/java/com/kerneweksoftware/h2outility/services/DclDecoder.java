@@ -0,0 +1,241 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.nio.ByteBuffer;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+/**
+ * Decompresses data imploded with PKWARE DCL, as found in H2O archives.
+ * 
+ * Decodes straight from a buffer into an output array sized to the expected raw size, so no intermediate streams or
+ * growing buffers are involved. As the whole output is held in that array it doubles as the sliding window, and the
+ * fixed Huffman codes of the format are built into lookup tables once and shared by every call. Holds no state of its
+ * own, so may be used from any number of threads at once.
+ * 
+ * Based on the description of the format in Mark Adler's blast.c.
+ */
+public final class DclDecoder {
+
+    private static final int END_OF_STREAM = 519;
+
+    /**
+     * Most bytes one byte of DCL data can decompress to. The longest match, of 518 bytes, takes no fewer than 22 bits.
+     */
+    static final int MAX_EXPANSION = 189;
+
+    private static final byte[] LITERAL_LENGTHS = {
+        11, 124, 8, 7, 28, 7, (byte) 188, 13, 76, 4, 10, 8, 12, 10, 12, 10, 8, 23, 8,
+        9, 7, 6, 7, 8, 7, 6, 55, 8, 23, 24, 12, 11, 7, 9, 11, 12, 6, 7, 22, 5,
+        7, 24, 6, 11, 9, 6, 7, 22, 7, 11, 38, 7, 9, 8, 25, 11, 8, 11, 9, 12,
+        8, 12, 5, 38, 5, 38, 5, 11, 7, 5, 6, 21, 6, 10, 53, 8, 7, 24, 10, 27,
+        44, (byte) 253, (byte) 253, (byte) 253, (byte) 252, (byte) 252, (byte) 252, 13, 12, 45, 12, 45, 12, 61, 12, 45,
+        44, (byte) 173
+    };
+    private static final byte[] LENGTH_LENGTHS = {2, 35, 36, 53, 38, 23};
+    private static final byte[] DISTANCE_LENGTHS = {2, 20, 53, (byte) 230, (byte) 247, (byte) 151, (byte) 248};
+
+    static final int[] LENGTH_BASE = {3, 2, 4, 5, 6, 7, 8, 9, 10, 12, 16, 24, 40, 72, 136, 264};
+    static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    static final HuffmanCode LITERAL_CODE = new HuffmanCode(LITERAL_LENGTHS, 256);
+    static final HuffmanCode LENGTH_CODE = new HuffmanCode(LENGTH_LENGTHS, 16);
+    static final HuffmanCode DISTANCE_CODE = new HuffmanCode(DISTANCE_LENGTHS, 64);
+
+    private DclDecoder() {
+    }
+
+    /**
+     * Decompresses the remaining bytes of the given buffer into the output array.
+     * 
+     * Decoding runs to the end of stream marker, which must be present, and fails as soon as the data would decompress
+     * to more than fits the output array. The buffer's position is left untouched.
+     * 
+     * @param input Buffer positioned at the start of the compressed data, including the two byte DCL header.
+     * @param output Array to decompress into, sized to the expected raw size.
+     * @return Number of bytes written to the output array, which is fewer than its length should the data decompress
+     *         to less than expected.
+     * @throws OverrunException When the data decompresses to more than fits the output array.
+     * @throws DecompressionException When the data is not valid DCL imploded data.
+     */
+    public static int decode(ByteBuffer input, byte[] output) throws DecompressionException {
+        int position = input.position();
+        int limit = input.limit();
+        if (limit - position < 2) {
+            throw new DecompressionException("DCL data is missing its header");
+        }
+        int literalMode = input.get(position++) & 0xFF;
+        int dictionaryBits = input.get(position++) & 0xFF;
+        if (literalMode > 1) {
+            throw new DecompressionException(String.format("DCL literal mode %s is not valid", literalMode));
+        }
+        if (dictionaryBits < 4 || dictionaryBits > 6) {
+            throw new DecompressionException(String.format("DCL dictionary size %s is not valid", dictionaryBits));
+        }
+
+        int bitBuffer = 0;
+        int bitCount = 0;
+        int written = 0;
+        while (true) {
+            while (bitCount <= 16 && position < limit) {
+                bitBuffer |= (input.get(position++) & 0xFF) << bitCount;
+                bitCount += 8;
+            }
+            if (bitCount == 0) {
+                throw new DecompressionException("DCL data ended before the end of stream marker");
+            }
+
+            boolean isMatch = (bitBuffer & 1) != 0;
+            bitBuffer >>>= 1;
+            bitCount--;
+
+            if (isMatch) {
+                int entry = LENGTH_CODE.lookup(bitBuffer, bitCount);
+                bitBuffer >>>= entry & 0xF;
+                bitCount -= entry & 0xF;
+                int symbol = entry >>> 4;
+
+                int extraBits = LENGTH_EXTRA[symbol];
+                if (bitCount < extraBits) {
+                    throw new DecompressionException("DCL data ended in the middle of a length");
+                }
+                int length = LENGTH_BASE[symbol] + (bitBuffer & ((1 << extraBits) - 1));
+                bitBuffer >>>= extraBits;
+                bitCount -= extraBits;
+                if (length == END_OF_STREAM) {
+                    break;
+                }
+
+                while (bitCount <= 16 && position < limit) {
+                    bitBuffer |= (input.get(position++) & 0xFF) << bitCount;
+                    bitCount += 8;
+                }
+                entry = DISTANCE_CODE.lookup(bitBuffer, bitCount);
+                bitBuffer >>>= entry & 0xF;
+                bitCount -= entry & 0xF;
+
+                int lowBits = length == 2 ? 2 : dictionaryBits;
+                if (bitCount < lowBits) {
+                    throw new DecompressionException("DCL data ended in the middle of a distance");
+                }
+                int distance = ((entry >>> 4) << lowBits) + (bitBuffer & ((1 << lowBits) - 1)) + 1;
+                bitBuffer >>>= lowBits;
+                bitCount -= lowBits;
+
+                if (distance > written) {
+                    throw new DecompressionException(
+                        String.format("DCL distance %s reaches back past the start of the data", distance));
+                }
+                if (length > output.length - written) {
+                    throw new OverrunException(output.length);
+                }
+                int from = written - distance;
+                if (distance >= length) {
+                    System.arraycopy(output, from, output, written, length);
+                    written += length;
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        output[written++] = output[from + i];
+                    }
+                }
+            } else if (written == output.length) {
+                throw new OverrunException(output.length);
+            } else if (literalMode == 0) {
+                if (bitCount < 8) {
+                    throw new DecompressionException("DCL data ended in the middle of a literal");
+                }
+                output[written++] = (byte) bitBuffer;
+                bitBuffer >>>= 8;
+                bitCount -= 8;
+            } else {
+                int entry = LITERAL_CODE.lookup(bitBuffer, bitCount);
+                bitBuffer >>>= entry & 0xF;
+                bitCount -= entry & 0xF;
+                output[written++] = (byte) (entry >>> 4);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Signals that DCL data decompresses to more than its expected size, which no other decoder of the format can
+     * make right.
+     */
+    static final class OverrunException extends DecompressionException {
+
+        OverrunException(int expectedSize) {
+            super(String.format("DCL data decompresses to more than the expected %s bytes", expectedSize));
+        }
+    }
+
+    /**
+     * One of the fixed Huffman codes of the DCL format.
+     * 
+     * Codes are read a bit at a time from the lowest bit up, with every bit inverted. The lookup table is indexed by
+     * the next {@link #maxLength} bits of input, each entry holding the symbol shifted left by four and the length
+     * of its code in the low four bits.
+     */
+    static final class HuffmanCode {
+        final int maxLength;
+        final int[] table;
+        final int[] codes;
+        final int[] lengths;
+
+        HuffmanCode(byte[] compactLengths, int symbolCount) {
+            lengths = new int[symbolCount];
+            int symbol = 0;
+            for (byte compact : compactLengths) {
+                int repeat = ((compact & 0xFF) >>> 4) + 1;
+                int length = compact & 0xF;
+                for (int i = 0; i < repeat; i++) {
+                    lengths[symbol++] = length;
+                }
+            }
+
+            int longest = 0;
+            for (int length : lengths) {
+                longest = Math.max(longest, length);
+            }
+            maxLength = longest;
+
+            // Canonical codes, assigned in order of length then symbol
+            codes = new int[symbolCount];
+            int code = 0;
+            for (int length = 1; length <= maxLength; length++) {
+                for (int i = 0; i < symbolCount; i++) {
+                    if (lengths[i] == length) {
+                        codes[i] = reverseInverted(code++, length);
+                    }
+                }
+                code <<= 1;
+            }
+
+            table = new int[1 << maxLength];
+            for (int i = 0; i < symbolCount; i++) {
+                int length = lengths[i];
+                if (length == 0) {
+                    continue;
+                }
+                for (int index = codes[i]; index < table.length; index += 1 << length) {
+                    table[index] = (i << 4) | length;
+                }
+            }
+        }
+
+        int lookup(int bitBuffer, int bitCount) throws DecompressionException {
+            int entry = table[bitBuffer & (table.length - 1)];
+            int length = entry & 0xF;
+            if (length == 0 || length > bitCount) {
+                throw new DecompressionException("DCL data ended in the middle of a code");
+            }
+            return entry;
+        }
+
+        private static int reverseInverted(int code, int length) {
+            int reversed = 0;
+            for (int i = 0; i < length; i++) {
+                reversed = (reversed << 1) | (((code >>> i) & 1) ^ 1);
+            }
+            return reversed;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compresses data with PKWARE DCL implode, the counterpart of {@link DclDecoder}.
+ * 
+ * Literals are stored uncoded, which is what H2O archives use, and matches are found with a hash chain over the
+ * sliding window. The window, hash tables and output buffer are kept between calls, so an instance should be reused
+ * but only from one thread at a time.
+ */
+public class DclEncoder {
+
+    /** Dictionary size used by H2O archives, a 1024 byte window. */
+    public static final int DEFAULT_DICTIONARY_BITS = 4;
+
+    private static final int MIN_MATCH = 3;
+    private static final int MAX_MATCH = 518;
+    private static final int END_OF_STREAM = 519;
+    private static final int HASH_BITS = 12;
+    private static final int MAX_CHAIN = 32;
+    private static final int[] LENGTH_SYMBOLS = buildLengthSymbols();
+
+    private final int dictionaryBits;
+    private final int windowSize;
+    private final int[] head = new int[1 << HASH_BITS];
+    private final int[] previous;
+
+    private byte[] output = new byte[0];
+    private int written;
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * Instantiate new DclEncoder using the dictionary size of H2O archives.
+     */
+    public DclEncoder() {
+        this(DEFAULT_DICTIONARY_BITS);
+    }
+
+    /**
+     * Instantiate new DclEncoder.
+     * 
+     * @param dictionaryBits Size of the sliding window, from 4 for 1024 bytes up to 6 for 4096 bytes.
+     */
+    public DclEncoder(int dictionaryBits) {
+        if (dictionaryBits < 4 || dictionaryBits > 6) {
+            throw new IllegalArgumentException(String.format("DCL dictionary size %s is not valid", dictionaryBits));
+        }
+        this.dictionaryBits = dictionaryBits;
+        this.windowSize = 64 << dictionaryBits;
+        this.previous = new int[windowSize];
+    }
+
+    /**
+     * Compresses the remaining bytes of the given buffer. The buffer's position is left untouched.
+     * 
+     * @param input Data to compress.
+     * @return Compressed data, starting with the two byte DCL header and ending with the end of stream marker.
+     */
+    public byte[] encode(ByteBuffer input) {
+        int start = input.position();
+        int end = input.limit();
+        int length = end - start;
+        if (output.length < length + length / 8 + 16) {
+            output = new byte[length + length / 8 + 16];
+        }
+        written = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+        Arrays.fill(head, -1);
+
+        output[written++] = 0;
+        output[written++] = (byte) dictionaryBits;
+
+        int position = start;
+        while (position < end) {
+            int bestLength = 0;
+            int bestDistance = 0;
+            if (end - position >= MIN_MATCH) {
+                int hash = hash(input, position);
+                int candidate = head[hash];
+                int maxLength = Math.min(MAX_MATCH, end - position);
+                for (int chain = 0; chain < MAX_CHAIN && candidate >= 0 && position - candidate <= windowSize; chain++) {
+                    int matched = 0;
+                    while (matched < maxLength && input.get(candidate + matched) == input.get(position + matched)) {
+                        matched++;
+                    }
+                    if (matched > bestLength) {
+                        bestLength = matched;
+                        bestDistance = position - candidate;
+                        if (matched == maxLength) {
+                            break;
+                        }
+                    }
+                    int next = previous[candidate & (windowSize - 1)];
+                    candidate = next < candidate ? next : -1;
+                }
+            }
+
+            if (bestLength >= MIN_MATCH) {
+                writeMatch(bestLength, bestDistance);
+                for (int i = 0; i < bestLength; i++) {
+                    insert(input, position++, end);
+                }
+            } else {
+                writeBits(0, 1);
+                writeBits(input.get(position) & 0xFF, 8);
+                insert(input, position++, end);
+            }
+        }
+
+        writeLength(END_OF_STREAM);
+        if (bitCount > 0) {
+            output[written++] = (byte) bitBuffer;
+        }
+        return Arrays.copyOf(output, written);
+    }
+
+    private void insert(ByteBuffer input, int position, int end) {
+        if (end - position >= MIN_MATCH) {
+            int hash = hash(input, position);
+            previous[position & (windowSize - 1)] = head[hash];
+            head[hash] = position;
+        }
+    }
+
+    private static int hash(ByteBuffer input, int position) {
+        int value = ((input.get(position) & 0xFF) << 16) | ((input.get(position + 1) & 0xFF) << 8)
+            | (input.get(position + 2) & 0xFF);
+        return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+
+    private void writeMatch(int length, int distance) {
+        writeLength(length);
+        int lowBits = length == 2 ? 2 : dictionaryBits;
+        int high = (distance - 1) >>> lowBits;
+        writeBits(DclDecoder.DISTANCE_CODE.codes[high], DclDecoder.DISTANCE_CODE.lengths[high]);
+        writeBits((distance - 1) & ((1 << lowBits) - 1), lowBits);
+    }
+
+    private void writeLength(int length) {
+        int symbol = LENGTH_SYMBOLS[length];
+        writeBits(1, 1);
+        writeBits(DclDecoder.LENGTH_CODE.codes[symbol], DclDecoder.LENGTH_CODE.lengths[symbol]);
+        writeBits(length - DclDecoder.LENGTH_BASE[symbol], DclDecoder.LENGTH_EXTRA[symbol]);
+    }
+
+    private void writeBits(int value, int count) {
+        bitBuffer |= value << bitCount;
+        bitCount += count;
+        while (bitCount >= 8) {
+            if (written == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            output[written++] = (byte) bitBuffer;
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private static int[] buildLengthSymbols() {
+        int[] symbols = new int[END_OF_STREAM + 1];
+        for (int symbol = 0; symbol < DclDecoder.LENGTH_BASE.length; symbol++) {
+            int base = DclDecoder.LENGTH_BASE[symbol];
+            for (int extra = 0; extra < 1 << DclDecoder.LENGTH_EXTRA[symbol]; extra++) {
+                symbols[base + extra] = symbol;
+            }
+        }
+        return symbols;
+    }
+}
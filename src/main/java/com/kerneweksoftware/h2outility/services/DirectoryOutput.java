@@ -1,21 +1,52 @@
 package com.kerneweksoftware.h2outility.services;
 
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
 
+/**
+ * Writes the folders and files of an {@link ArchivedData} out to a directory.
+ * 
+ * Folders are all created before any file is written, after which files are written across a pool of I/O threads.
+ */
 public class DirectoryOutput {
     
     private final ArchivedData archive;
+    private final Path root;
+    private final int threads;
 
+    /**
+     * Instantiate new DirectoryOutput writing into a directory named after the archive, in the working directory.
+     * 
+     * @param archive Archive to write out.
+     */
     public DirectoryOutput(ArchivedData archive) {
+        this(archive, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Instantiate new DirectoryOutput.
+     * 
+     * @param archive Archive to write out.
+     * @param root Directory to write into, or null for a directory named after the archive.
+     * @param threads Number of threads to write files with.
+     */
+    public DirectoryOutput(ArchivedData archive, Path root, int threads) {
         this.archive = archive;
+        this.root = root;
+        this.threads = threads;
     }
 
     /**
@@ -24,27 +55,57 @@ public class DirectoryOutput {
      * @throws IOException When an issue is encountered during writing of the files.
      */
     public void write() throws IOException {
-        File parentDirectory = new File(archive.getName());
-        if (!parentDirectory.exists()) {
-            parentDirectory.mkdir();
-        }
-        writeFiles(archive.getTopLevelFiles(), parentDirectory.getAbsolutePath());
+        Path parentDirectory = (root == null ? Paths.get(archive.getName()) : root).toAbsolutePath().normalize();
+        Files.createDirectories(parentDirectory);
 
-        for (ArchivedFolder folder : archive.getFolders()) {
-            File newFolder = new File(parentDirectory.getAbsolutePath() + "\\" + folder.getName());
-            newFolder.mkdir();
+        ArchivedFolder[] folders = archive.getFolders();
+        List<String> folderNames = new ArrayList<>();
+        int[] parentIndexes = new int[folders.length];
+        for (int i = 0; i < folders.length; i++) {
+            folderNames.add(folders[i].getName());
+            parentIndexes[i] = folders[i].getParentIndex();
+        }
+        Path[] folderPaths = ArchivePaths.resolveFolders(parentDirectory, folderNames, parentIndexes);
+        for (Path folderPath : folderPaths) {
+            Files.createDirectories(folderPath);
+        }
 
-            writeFiles(folder.getFiles(), parentDirectory.getAbsolutePath() + "\\" + folder.getName());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> writes = new ArrayList<>();
+            writeFiles(executor, writes, archive.getTopLevelFiles(), parentDirectory, parentDirectory);
+            for (int i = 0; i < folders.length; i++) {
+                writeFiles(executor, writes, folders[i].getFiles(), parentDirectory, folderPaths[i]);
+            }
+            awaitWrites(writes);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private void writeFiles(List<ArchivedFile> files, String parentDirectories) throws IOException {
+    private void writeFiles(ExecutorService executor, List<Future<Void>> writes, List<ArchivedFile> files,
+            Path parentDirectory, Path folder) throws IOException {
         for (ArchivedFile file : files) {
-            DataOutputStream output = new DataOutputStream(new FileOutputStream(parentDirectories + "\\" + file.getName()));
+            Path path = ArchivePaths.resolveWithin(parentDirectory, folder, file.getName());
+            writes.add(executor.submit(() -> {
+                ArchivePaths.writeFile(path, ByteBuffer.wrap(file.getContents()));
+                return null;
+            }));
+        }
+    }
+
+    private void awaitWrites(List<Future<Void>> writes) throws IOException {
+        for (Future<Void> write : writes) {
             try {
-                output.write(file.getContents());
-            } finally {
-                output.close();
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing files", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
             }
         }
     }
@@ -0,0 +1,139 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+/**
+ * Streams files out of an archive into a directory, keeping the archive's folder structure.
+ * 
+ * In incremental mode a manifest of the files written is kept next to the directory, and files already on disk with
+ * the CRC32 and size stored for their entry are skipped without being decompressed, so extracting a patched archive
+ * over an earlier extraction only writes what changed.
+ */
+public class DirectorySink implements EntrySink {
+
+    private final Path root;
+    private final boolean incremental;
+    private ArchiveIndex index;
+    private Path[] folderPaths;
+    private ExtractionManifest manifest;
+
+    /**
+     * Instantiate new DirectorySink writing every file.
+     * 
+     * @param root Directory to write the archive's folders and files into. Created if it does not exist.
+     */
+    public DirectorySink(Path root) {
+        this(root, false);
+    }
+
+    /**
+     * Instantiate new DirectorySink.
+     * 
+     * @param root Directory to write the archive's folders and files into. Created if it does not exist.
+     * @param incremental Whether to skip files already on disk with the same contents, see {@link #getManifestPath()}.
+     */
+    public DirectorySink(Path root, boolean incremental) {
+        this.root = root.toAbsolutePath().normalize();
+        this.incremental = incremental;
+    }
+
+    /**
+     * Gets the file recording what an incremental extraction wrote, beside the root directory.
+     * 
+     * @return Path of the manifest.
+     */
+    public Path getManifestPath() {
+        return root.resolveSibling(root.getFileName() + ".manifest");
+    }
+
+    /**
+     * Creates the root directory and every folder in the archive, so files can then be written in any order.
+     */
+    @Override
+    public void begin(ArchiveIndex index) throws IOException {
+        Files.createDirectories(root);
+        this.index = index;
+        folderPaths = ArchivePaths.resolveFolders(root, index.getFolderNames(), index.getFolderParentIndexes());
+        for (Path folderPath : folderPaths) {
+            Files.createDirectories(folderPath);
+        }
+        if (incremental) {
+            manifest = ExtractionManifest.load(getManifestPath());
+        }
+    }
+
+    @Override
+    public boolean skip(ArchiveIndex index, int entryIndex) throws IOException {
+        if (manifest == null) {
+            return false;
+        }
+        FileEntryTable entries = index.getEntries();
+        Path file = resolve(index, entryIndex);
+        return manifest.isUnchanged(file, key(file), entries.getCrc32(entryIndex), entries.getRawSize(entryIndex));
+    }
+
+    @Override
+    public void write(ArchiveIndex index, int entryIndex, ByteBuffer contents) throws IOException {
+        Path file = resolve(index, entryIndex);
+        ArchivePaths.writeFile(file, contents);
+        if (manifest != null) {
+            FileEntryTable entries = index.getEntries();
+            manifest.record(file, key(file), entries.getCrc32(entryIndex), entries.getRawSize(entryIndex));
+        }
+    }
+
+    /**
+     * Copies a file stored without compression straight from the archive to disk.
+     */
+    @Override
+    public boolean transfer(ArchiveIndex index, int entryIndex, FileChannel archive, long offset) throws IOException {
+        Path file = resolve(index, entryIndex);
+        FileEntryTable entries = index.getEntries();
+        ArchivePaths.transferFile(file, archive, offset, Integer.toUnsignedLong(entries.getRawSize(entryIndex)));
+        if (manifest != null) {
+            manifest.record(file, key(file), entries.getCrc32(entryIndex), entries.getRawSize(entryIndex));
+        }
+        return true;
+    }
+
+    /**
+     * Writes the manifest of an incremental extraction.
+     * 
+     * Files of the archive that were not extracted this time, such as those left out by a filter, keep their earlier
+     * records, so a later extraction of every file still finds them unchanged without reading them.
+     */
+    @Override
+    public void close() throws IOException {
+        if (manifest != null) {
+            FileEntryTable entries = index.getEntries();
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.isUnused(i)) {
+                    continue;
+                }
+                try {
+                    manifest.keep(key(resolve(index, i)));
+                } catch (IOException e) {
+                    // A path outside of the root is never written, so has no record to keep
+                }
+            }
+            manifest.save(getManifestPath());
+        }
+    }
+
+    private Path resolve(ArchiveIndex index, int entryIndex) throws IOException {
+        int folderIndex = index.getEntries().getFolderNameIndex(entryIndex);
+        Path folder = folderIndex < 0 ? root : folderPaths[folderIndex];
+        return ArchivePaths.resolveWithin(root, folder, index.getFileName(entryIndex));
+    }
+
+    private String key(Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,221 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+/**
+ * Keeps the contents of recently read files so reading them again does not decompress them again.
+ * 
+ * Bounded by the total bytes of contents held rather than the number of files. Files are spread over a number of
+ * stripes by key, each with its own lock and an equal share of the bytes, and within a stripe the least recently used
+ * files are evicted first. Readers of different stripes never wait on each other. Two readers missing on the same
+ * file at once may both load it, with the later of the two kept.
+ */
+public class EntryCache {
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * Loads the contents of a file that is not in the cache.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * Reads and, if needed, decompresses the file.
+         * 
+         * @return Contents of the file, or null if it has none.
+         * @throws DecompressionException When the file's data failed to decompress.
+         */
+        ByteBuffer load() throws DecompressionException;
+    }
+
+    private final Stripe[] stripes;
+    private final long maxStripeBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Instantiate new EntryCache holding up to the given number of bytes, over {@link #DEFAULT_STRIPES} stripes.
+     * 
+     * @param maxBytes Most bytes of contents to hold at once.
+     */
+    public EntryCache(long maxBytes) {
+        this(maxBytes, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Instantiate new EntryCache holding up to the given number of bytes.
+     * 
+     * @param maxBytes Most bytes of contents to hold at once.
+     * @param stripes Number of independently locked parts. A file bigger than the bytes divided by this is never
+     *                held.
+     */
+    public EntryCache(long maxBytes, int stripes) {
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.maxStripeBytes = maxBytes / stripes;
+    }
+
+    /**
+     * Gets the contents of a file, loading and keeping them should they not already be held.
+     * 
+     * @param archive Archive the file is in. Compared by identity, so the same instance must be given each time.
+     * @param fileId ID of the file within the archive.
+     * @param loader Reader of the file's contents on a miss.
+     * @return Read-only view of the file's contents, or null if the loader gave none.
+     * @throws DecompressionException When the loader failed to decompress the file.
+     */
+    public ByteBuffer get(Object archive, int fileId, Loader loader) throws DecompressionException {
+        Key key = new Key(archive, fileId);
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+
+        stripe.lock.lock();
+        try {
+            ByteBuffer contents = stripe.entries.get(key);
+            if (contents != null) {
+                hits.increment();
+                return contents.duplicate();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        misses.increment();
+        ByteBuffer loaded = loader.load();
+        if (loaded == null) {
+            return null;
+        }
+        ByteBuffer contents = loaded.asReadOnlyBuffer();
+        if (contents.remaining() <= maxStripeBytes) {
+            stripe.lock.lock();
+            try {
+                ByteBuffer previous = stripe.entries.put(key, contents);
+                stripe.bytes += contents.remaining() - (previous == null ? 0 : previous.remaining());
+                evict(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return contents.duplicate();
+    }
+
+    /**
+     * Drops every file of the given archive, such as when it has been closed or rewritten.
+     * 
+     * @param archive Archive the files are in.
+     */
+    public void invalidate(Object archive) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<Map.Entry<Key, ByteBuffer>> iterator = stripe.entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Key, ByteBuffer> entry = iterator.next();
+                    if (entry.getKey().archive == archive) {
+                        stripe.bytes -= entry.getValue().remaining();
+                        iterator.remove();
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of reads served from the cache.
+     * 
+     * @return Number of hits since creation.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of reads that had to load the file.
+     * 
+     * @return Number of misses since creation.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of files dropped to make room for others.
+     * 
+     * @return Number of evictions since creation.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the total bytes of contents currently held.
+     * 
+     * @return Bytes held across every stripe.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                bytes += stripe.bytes;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private void evict(Stripe stripe) {
+        Iterator<ByteBuffer> iterator = stripe.entries.values().iterator();
+        while (stripe.bytes > maxStripeBytes && iterator.hasNext()) {
+            stripe.bytes -= iterator.next().remaining();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * One independently locked part of the cache. Entries are kept in access order, least recent first.
+     */
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<Key, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes;
+    }
+
+    private static class Key {
+        final Object archive;
+        final int fileId;
+
+        Key(Object archive, int fileId) {
+            this.archive = archive;
+            this.fileId = fileId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return archive == key.archive && fileId == key.fileId;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * System.identityHashCode(archive) + fileId;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+/**
+ * Chooses which files of an archive to read, from its index alone.
+ * 
+ * Paths are matched with forward slashes separating folders, e.g. <code>Data/Units/Knight.tga</code>. A file is chosen
+ * when it matches any include pattern, or there are none, and no exclude pattern. It must also have one of the given
+ * extensions, be within the given size range and lie beneath one of the given folders, for each of those that is
+ * set. Globs match the whole path regardless of case, while regular expressions need only match part of it.
+ * 
+ * Given to {@link ArchiveInput#setFilter(EntryFilter)}, files not chosen are never located nor decompressed.
+ */
+public class EntryFilter {
+
+    private final List<Pattern> includes = new ArrayList<>();
+    private final List<Pattern> excludes = new ArrayList<>();
+    private final Set<String> extensions = new HashSet<>();
+    private final List<String> folders = new ArrayList<>();
+    private long minSize;
+    private long maxSize = Long.MAX_VALUE;
+
+    /**
+     * Chooses files whose path matches the glob pattern.
+     * 
+     * @param glob Glob pattern, see {@link #globToRegex(String)}.
+     * @return This filter.
+     */
+    public EntryFilter include(String glob) {
+        includes.add(compileGlob(glob));
+        return this;
+    }
+
+    /**
+     * Chooses files whose path contains a match of the regular expression.
+     * 
+     * @param regex Regular expression.
+     * @return This filter.
+     */
+    public EntryFilter includeRegex(String regex) {
+        includes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Leaves out files whose path matches the glob pattern, even if included.
+     * 
+     * @param glob Glob pattern, see {@link #globToRegex(String)}.
+     * @return This filter.
+     */
+    public EntryFilter exclude(String glob) {
+        excludes.add(compileGlob(glob));
+        return this;
+    }
+
+    /**
+     * Leaves out files whose path contains a match of the regular expression, even if included.
+     * 
+     * @param regex Regular expression.
+     * @return This filter.
+     */
+    public EntryFilter excludeRegex(String regex) {
+        excludes.add(Pattern.compile(regex));
+        return this;
+    }
+
+    /**
+     * Chooses only files with one of the given extensions.
+     * 
+     * @param extensions Extensions with or without the dot, in any case, e.g. <code>tga</code>.
+     * @return This filter.
+     */
+    public EntryFilter extension(String... extensions) {
+        for (String extension : extensions) {
+            String trimmed = extension.trim();
+            this.extensions.add((trimmed.startsWith(".") ? trimmed.substring(1) : trimmed).toLowerCase(Locale.ROOT));
+        }
+        return this;
+    }
+
+    /**
+     * Chooses only files of a raw size within the given range.
+     * 
+     * @param minSize Smallest size in bytes.
+     * @param maxSize Largest size in bytes.
+     * @return This filter.
+     */
+    public EntryFilter sizeRange(long minSize, long maxSize) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Chooses only files in the given folder, or in any folder beneath it by way of the folders' parent indexes.
+     * 
+     * @param folder Full name of the folder, with either slashes or backslashes, in any case.
+     * @return This filter.
+     */
+    public EntryFilter folder(String folder) {
+        folders.add(normalise(folder));
+        return this;
+    }
+
+    /**
+     * Whether no condition has been set, so every file would be chosen.
+     * 
+     * @return True when the filter chooses every file.
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty() && extensions.isEmpty() && folders.isEmpty() && minSize <= 0
+            && maxSize == Long.MAX_VALUE;
+    }
+
+    /**
+     * Picks out the chosen files of an archive.
+     * 
+     * @param index Index of the archive, from {@link ArchiveInput#readIndex()}.
+     * @return Indexes of the entries of the chosen files. Unused entries are never chosen.
+     */
+    public BitSet select(ArchiveIndex index) {
+        FileEntryTable entries = index.getEntries();
+        boolean[] chosenFolders = folders.isEmpty() ? null : selectFolders(index);
+        BitSet selected = new BitSet(entries.size());
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.isUnused(i)) {
+                continue;
+            }
+            int folderIndex = entries.getFolderNameIndex(i);
+            if (chosenFolders != null && (folderIndex < 0 || !chosenFolders[folderIndex])) {
+                continue;
+            }
+            long rawSize = Integer.toUnsignedLong(entries.getRawSize(i));
+            if (rawSize < minSize || rawSize > maxSize) {
+                continue;
+            }
+            String fileName = index.getFileName(i);
+            if (!extensions.isEmpty() && !extensions.contains(extensionOf(fileName))) {
+                continue;
+            }
+
+            path.setLength(0);
+            if (folderIndex >= 0) {
+                path.append(index.getFolderNames().get(folderIndex)).append('/');
+            }
+            path.append(fileName);
+            for (int c = 0; c < path.length(); c++) {
+                if (path.charAt(c) == '\\') {
+                    path.setCharAt(c, '/');
+                }
+            }
+            if ((includes.isEmpty() || matchesAny(includes, path)) && !matchesAny(excludes, path)) {
+                selected.set(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Converts a glob pattern to a regular expression, matching paths separated by forward slashes.
+     * 
+     * Supports <code>*</code> within a folder, <code>**</code> across folders, <code>?</code>, <code>[...]</code>
+     * sets, <code>{a,b}</code> alternatives and backslash escapes, as with
+     * {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+     * 
+     * @param glob Glob pattern.
+     * @return Equivalent regular expression.
+     */
+    public static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '{':
+                    regex.append("(?:");
+                    inGroup = true;
+                    break;
+                case '}':
+                    regex.append(')');
+                    inGroup = false;
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                case '[':
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, end);
+                        regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                        i = end;
+                    }
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    private boolean[] selectFolders(ArchiveIndex index) {
+        List<String> folderNames = index.getFolderNames();
+        int[] parentIndexes = index.getFolderParentIndexes();
+        boolean[] isRoot = new boolean[folderNames.size()];
+        for (int i = 0; i < isRoot.length; i++) {
+            isRoot[i] = folders.contains(normalise(folderNames.get(i)));
+        }
+        boolean[] chosen = new boolean[isRoot.length];
+        for (int i = 0; i < chosen.length; i++) {
+            // Walk up through the parents, no further than there are folders in case they loop
+            int folderIndex = i;
+            for (int depth = 0; folderIndex >= 0 && folderIndex < chosen.length && depth < chosen.length; depth++) {
+                if (isRoot[folderIndex]) {
+                    chosen[i] = true;
+                    break;
+                }
+                folderIndex = parentIndexes[folderIndex];
+            }
+        }
+        return chosen;
+    }
+
+    private static boolean matchesAny(List<Pattern> patterns, CharSequence path) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(path).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern compileGlob(String glob) {
+        // Anchored, so a glob must match the whole path
+        return Pattern.compile("^" + globToRegex(glob) + "$", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String normalise(String folder) {
+        String name = folder.replace('/', '\\').toLowerCase(Locale.ROOT);
+        while (name.endsWith("\\")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+}
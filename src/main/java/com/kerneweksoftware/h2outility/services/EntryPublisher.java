@@ -0,0 +1,229 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.models.StreamedEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the files of an archive one at a time, decompressing them only as far ahead as the subscriber has asked.
+ * 
+ * Every subscriber is given a subscription of its own, starting from the first file. Files are decompressed on the
+ * extractor's pool, no more of them at once than the subscriber has requested and not yet been given, and within the
+ * extractor's limit of bytes in flight, so a slow subscriber holds back decompression rather than files piling up in
+ * memory. Files are delivered in entry order. A file failing to decompress is delivered with its error set, and does
+ * not end the stream.
+ */
+public class EntryPublisher implements Flow.Publisher<StreamedEntry> {
+
+    private final ArchiveInput input;
+    private final ArchiveIndex index;
+    private final BitSet selected;
+    private final Executor executor;
+    private final long maxInFlightBytes;
+    private final Logger logger = LoggerFactory.getLogger(EntryPublisher.class);
+
+    /**
+     * Instantiate new EntryPublisher, see {@link ArchiveInput#publish(ParallelExtractor)}.
+     * 
+     * @param input Archive to read the files from.
+     * @param index Index of the archive.
+     * @param selected Indexes of the entries to publish, or null for every file.
+     * @param extractor Extractor whose pool and limit of bytes in flight to decompress with.
+     */
+    EntryPublisher(ArchiveInput input, ArchiveIndex index, BitSet selected, ParallelExtractor extractor) {
+        this.input = input;
+        this.index = index;
+        this.selected = selected;
+        this.executor = extractor.getExecutor();
+        this.maxInFlightBytes = extractor.getMaxInFlightBytes();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super StreamedEntry> subscriber) {
+        Objects.requireNonNull(subscriber);
+        EntrySubscription subscription = new EntrySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // An archive without files completes without anything being requested
+        subscription.drain();
+    }
+
+    /**
+     * A file handed to the pool, kept in entry order until it is its turn to be delivered.
+     */
+    private static class Slot {
+        private final StreamedEntry entry;
+        private volatile boolean ready;
+
+        Slot(StreamedEntry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Walks the archive for one subscriber.
+     * 
+     * Requests, cancellation and finished files all call {@link #drain()}, and whichever thread gets there first does
+     * the work for the others, so the subscriber is only ever called from one thread at a time.
+     */
+    private class EntrySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super StreamedEntry> subscriber;
+        private final FileEntryTable entries = index.getEntries();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        // Only touched while draining
+        private final ArrayDeque<Slot> pending = new ArrayDeque<>();
+        private long inFlightBytes;
+        private int next;
+        private boolean done;
+
+        EntrySubscription(Flow.Subscriber<? super StreamedEntry> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Number of files requested must be positive, but was " + n);
+            } else {
+                requested.getAndUpdate(r -> r + n < 0 ? Long.MAX_VALUE : r + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        void drain() {
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    step();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            if (cancelled || failure != null) {
+                done = true;
+                pending.clear();
+                if (!cancelled) {
+                    subscriber.onError(failure);
+                }
+                return;
+            }
+
+            while (!pending.isEmpty() && pending.peek().ready) {
+                Slot slot = pending.poll();
+                inFlightBytes -= Integer.toUnsignedLong(slot.entry.getRawSize());
+                requested.decrementAndGet();
+                try {
+                    subscriber.onNext(slot.entry);
+                } catch (RuntimeException e) {
+                    logger.error("Subscriber failed to take file {}, cancelling", slot.entry.getFileId(), e);
+                    cancelled = true;
+                }
+                if (cancelled) {
+                    done = true;
+                    pending.clear();
+                    return;
+                }
+            }
+
+            // Every file handed to the pool has been requested, so no more are decompressed than asked for
+            skipUnpublished();
+            while (next < entries.size() && pending.size() < requested.get()
+                    && (pending.isEmpty() || inFlightBytes < maxInFlightBytes)) {
+                int entryIndex = next++;
+                skipUnpublished();
+                Slot slot = new Slot(buildEntry(entryIndex));
+                pending.add(slot);
+                inFlightBytes += Integer.toUnsignedLong(entries.getRawSize(entryIndex));
+                decode(slot);
+            }
+
+            if (pending.isEmpty() && next >= entries.size()) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+
+        private void skipUnpublished() {
+            // Moved past files not published up front, so running out of files is seen before any are requested
+            while (next < entries.size()
+                    && (selected != null && !selected.get(next) || !ArchiveInput.hasFileData(entries, next))) {
+                next++;
+            }
+        }
+
+        private void decode(Slot slot) {
+            int entryIndex = slot.entry.getEntryIndex();
+            ByteBuffer data;
+            try {
+                data = input.locateFileData(entries, entryIndex);
+            } catch (DecompressionException e) {
+                // Already logged by the input, delivered in its turn with the error
+                finish(slot, null, e);
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        finish(slot, input.decodeFileData(entries, entryIndex, data), null);
+                    } catch (DecompressionException e) {
+                        finish(slot, null, e);
+                    } catch (RuntimeException e) {
+                        logger.error("Data for file {} failed to extract", slot.entry.getFileId(), e);
+                        failure = e;
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                failure = e;
+                drain();
+            }
+        }
+
+        private void finish(Slot slot, ByteBuffer contents, DecompressionException e) {
+            slot.entry.setContents(contents);
+            slot.entry.setError(e == null ? null : e.getMessage());
+            slot.ready = true;
+            drain();
+        }
+
+        private StreamedEntry buildEntry(int entryIndex) {
+            StreamedEntry entry = new StreamedEntry();
+            entry.setEntryIndex(entryIndex);
+            entry.setFileId(entries.getFileId(entryIndex));
+            entry.setPath(index.getPath(entryIndex));
+            entry.setCompressed(entries.getCompressionTag(entryIndex) != 0);
+            entry.setRawSize(entries.getRawSize(entryIndex));
+            entry.setCompressedSize(entries.getCompressedSize(entryIndex));
+            entry.setCrc32(entries.getCrc32(entryIndex));
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+
+/**
+ * Destination for files streamed out of an archive by {@link ArchiveInput#extract(ParallelExtractor, EntrySink)}.
+ * 
+ * Each file is handed over as soon as it has been decompressed and is not held onto afterwards, so a sink should
+ * write it out or otherwise be done with it before returning. Only {@link #write(ArchiveIndex, int, ByteBuffer)} needs
+ * implementing, so a lambda can be used as a callback.
+ */
+@FunctionalInterface
+public interface EntrySink extends Closeable {
+
+    /**
+     * Called once before any files are written.
+     * 
+     * @param index Index of the archive being extracted.
+     * @throws IOException When the sink could not be prepared.
+     */
+    default void begin(ArchiveIndex index) throws IOException {
+    }
+
+    /**
+     * Writes the contents of one file. May be called from several threads at once.
+     * 
+     * @param index Index of the archive being extracted.
+     * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+     * @param contents Contents of the file, from its position to its limit.
+     * @throws IOException When the file could not be written. Stops the extraction.
+     */
+    void write(ArchiveIndex index, int entryIndex, ByteBuffer contents) throws IOException;
+
+    /**
+     * Offered before {@link #write(ArchiveIndex, int, ByteBuffer)} for a file stored without compression, when the
+     * archive was opened from a file. The file's contents are the raw size of its entry in bytes from the given
+     * offset of the archive, so can be copied from channel to channel, such as with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, without passing through the
+     * heap. May be called from several threads at once, so only positional reads of the channel may be used.
+     * 
+     * @param index Index of the archive being extracted.
+     * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+     * @param archive Channel of the archive, open for reading. Must not be closed.
+     * @param offset Offset of the file's contents within the archive.
+     * @return True if the file was written, false to be given its contents through
+     *         {@link #write(ArchiveIndex, int, ByteBuffer)} instead.
+     * @throws IOException When the file could not be written. Stops the extraction.
+     */
+    default boolean transfer(ArchiveIndex index, int entryIndex, FileChannel archive, long offset)
+            throws IOException {
+        return false;
+    }
+
+    /**
+     * Called instead of {@link #write(ArchiveIndex, int, ByteBuffer)} for a file whose data failed to decompress. The
+     * extraction carries on with the next file. May be called from several threads at once.
+     * 
+     * @param index Index of the archive being extracted.
+     * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+     * @param e Reason the file failed.
+     */
+    default void failed(ArchiveIndex index, int entryIndex, DecompressionException e) {
+    }
+
+    /**
+     * Called before a file is decompressed, so files the sink already holds need not be decompressed again. May be
+     * called from several threads at once.
+     * 
+     * @param index Index of the archive being extracted.
+     * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+     * @return True to leave the file out, in which case it is neither written nor failed.
+     * @throws IOException When it could not be decided. Stops the extraction.
+     */
+    default boolean skip(ArchiveIndex index, int entryIndex) throws IOException {
+        return false;
+    }
+
+    /**
+     * Called once every file has been written.
+     * 
+     * @throws IOException When the sink could not be finished.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,176 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Record of the files written by an earlier extraction, used to tell which files on disk already match the archive.
+ * 
+ * Each line holds a file's CRC32 and raw size as stored in the archive, the time the file was last modified once
+ * written, and its path relative to the output directory. A file whose size and modified time still match its record
+ * is taken as unchanged without being read. Failing that, a file of the right size is read and its CRC32 compared, so
+ * output extracted before there was a manifest, or touched since, is only rewritten should its contents differ.
+ */
+final class ExtractionManifest {
+
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, Record> previous;
+    private final Map<String, Record> current = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionManifest.class);
+
+    private ExtractionManifest(Map<String, Record> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the manifest left by an earlier extraction.
+     * 
+     * @param file Manifest file.
+     * @return Manifest holding the earlier records, which are empty should there be no manifest yet.
+     * @throws IOException When the manifest could not be read.
+     */
+    static ExtractionManifest load(Path file) throws IOException {
+        Map<String, Record> records = new ConcurrentHashMap<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return new ExtractionManifest(records);
+        }
+        for (String line : lines) {
+            String[] fields = line.split("\t", 4);
+            try {
+                records.put(fields[3], new Record(Integer.parseUnsignedInt(fields[0], 16), Integer.parseInt(fields[1]),
+                    Long.parseLong(fields[2])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                logger.warn("Ignoring malformed manifest {}, every file will be checked against its contents", file);
+                records.clear();
+                break;
+            }
+        }
+        return new ExtractionManifest(records);
+    }
+
+    /**
+     * Checks whether a file on disk already holds the contents of an entry, recording it as written if so.
+     * 
+     * @param file File the entry would be written to.
+     * @param key Path of the file relative to the output directory.
+     * @param crc32 CRC32 of the entry's contents, as stored in the archive.
+     * @param rawSize Size of the entry's contents.
+     * @return True when the file need not be written.
+     * @throws IOException When the file could not be read.
+     */
+    boolean isUnchanged(Path file, String key, int crc32, int rawSize) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile() || attributes.size() != Integer.toUnsignedLong(rawSize)) {
+            return false;
+        }
+
+        long modified = attributes.lastModifiedTime().toMillis();
+        Record record = previous.get(key);
+        boolean unchanged = (record != null && record.crc32 == crc32 && record.rawSize == rawSize
+            && record.modified == modified) || crc32Of(file, attributes.size()) == crc32;
+        if (unchanged) {
+            current.put(key, new Record(crc32, rawSize, modified));
+        }
+        return unchanged;
+    }
+
+    /**
+     * Records an entry as having just been written to a file.
+     * 
+     * @param file File the entry was written to.
+     * @param key Path of the file relative to the output directory.
+     * @param crc32 CRC32 of the entry's contents, as stored in the archive.
+     * @param rawSize Size of the entry's contents.
+     * @throws IOException When the file's modified time could not be read.
+     */
+    void record(Path file, String key, int crc32, int rawSize) throws IOException {
+        current.put(key, new Record(crc32, rawSize, Files.getLastModifiedTime(file).toMillis()));
+    }
+
+    /**
+     * Carries the earlier record of a file over to this extraction, should the file have been neither checked nor
+     * written this time, such as when left out by a filter.
+     * 
+     * @param key Path of the file relative to the output directory.
+     */
+    void keep(String key) {
+        Record record = previous.get(key);
+        if (record != null) {
+            current.putIfAbsent(key, record);
+        }
+    }
+
+    /**
+     * Writes the records of this extraction, replacing the earlier manifest. Files no longer in the archive are
+     * dropped from it.
+     * 
+     * @param file Manifest file.
+     * @throws IOException When the manifest could not be written.
+     */
+    void save(Path file) throws IOException {
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Record> entry : new TreeMap<>(current).entrySet()) {
+                    Record record = entry.getValue();
+                    writer.write(String.format("%08x\t%d\t%d\t%s", record.crc32, record.rawSize, record.modified,
+                        entry.getKey()));
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static int crc32Of(Path file, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(size, MAX_BUFFER_SIZE)));
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private static class Record {
+        final int crc32;
+        final int rawSize;
+        final long modified;
+
+        Record(int crc32, int rawSize, long modified) {
+            this.crc32 = crc32;
+            this.rawSize = rawSize;
+            this.modified = modified;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+import com.kerneweksoftware.h2outility.models.ArchiveHeader;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the parsed index of each archive in a file of its own, so opening an unchanged archive again skips parsing.
+ * 
+ * The cache file holds the entry table, the folder structure, both name tables as plain UTF-16 and the hash of every
+ * entry's path as {@link PathIndex} makes them. It is memory mapped when read, and names are only turned into strings
+ * once asked for, so the name tables are never decompressed and no strings are built up front. A cache file is only
+ * used while the archive's size, modified time and the CRC32 of its header and entry table all match those recorded
+ * in it, and is otherwise written anew.
+ */
+public class IndexCache {
+
+    private static final String MAGIC_NUMBER = "H2OINDEX";
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".idx";
+    private static final int ENTRY_SIZE = 44;
+
+    private final Path directory;
+    private final Logger logger = LoggerFactory.getLogger(IndexCache.class);
+
+    /**
+     * Instantiate new IndexCache keeping each archive's index beside it, as the archive's file name followed by
+     * <code>.idx</code>.
+     */
+    public IndexCache() {
+        this.directory = null;
+    }
+
+    /**
+     * Instantiate new IndexCache keeping every archive's index in the given directory, such as when the archives are
+     * on a read-only drive.
+     * 
+     * @param directory Directory to keep the cache files in. Created when first written to.
+     */
+    public IndexCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the file the index of the given archive is kept in.
+     * 
+     * @param archivePath Path of the archive.
+     * @return Path of the cache file, which may not exist yet.
+     */
+    public Path getCachePath(Path archivePath) {
+        if (directory == null) {
+            return archivePath.resolveSibling(archivePath.getFileName() + EXTENSION);
+        }
+        // The name alone may clash between folders, so tell them apart by the whole path
+        CRC32 crc = new CRC32();
+        crc.update(archivePath.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(String.format("%s-%08x%s", archivePath.getFileName(), crc.getValue(), EXTENSION));
+    }
+
+    /**
+     * Reads the cached index of an archive.
+     * 
+     * @param archivePath Path of the archive.
+     * @param archive Contents of the archive, used to check that the cached index still matches.
+     * @return Cached index, or null when there is none or the archive has changed since.
+     * @throws IOException When the cache file could not be read.
+     */
+    public ArchiveIndex read(Path archivePath, ByteBuffer archive) throws IOException {
+        Path cachePath = getCachePath(archivePath);
+        ByteBuffer cache;
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            cache = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        try {
+            if (!getString(cache, StandardCharsets.US_ASCII).equals(MAGIC_NUMBER) || cache.getInt() != VERSION) {
+                logger.info("Index cache {} is of another version, reading the archive instead", cachePath);
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(archivePath, BasicFileAttributes.class);
+            long size = cache.getLong();
+            long modified = cache.getLong();
+            int crc32 = cache.getInt();
+            String path = getString(cache, StandardCharsets.UTF_8);
+            int namesOffset = cache.getInt();
+            if (size != attributes.size() || modified != attributes.lastModifiedTime().toMillis()
+                    || !path.equals(archivePath.toAbsolutePath().normalize().toString())
+                    || namesOffset > archive.limit() || crc32 != crc32Of(archive, namesOffset)) {
+                logger.info("Archive {} has changed since its index was cached", archivePath);
+                return null;
+            }
+            return readIndex(cache, namesOffset);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.warn("Index cache {} is malformed, reading the archive instead", cachePath);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index of an archive to its cache file, replacing any earlier one.
+     * 
+     * @param archivePath Path of the archive.
+     * @param archive Contents of the archive, of which the header and entry table are checksummed.
+     * @param index Index read from the archive.
+     * @throws IOException When the cache file could not be written.
+     */
+    public void write(Path archivePath, ByteBuffer archive, ArchiveIndex index) throws IOException {
+        Path cachePath = getCachePath(archivePath);
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(archivePath, BasicFileAttributes.class);
+        FileEntryTable entries = index.getEntries();
+        ArchiveHeader header = index.getHeader();
+
+        // Each writer has a file of its own, so threads or processes caching the same archive at once never share one
+        Path temporary = Files.createTempFile(cachePath.toAbsolutePath().getParent(), cachePath.getFileName() + ".",
+            ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary),
+                    64 * 1024))) {
+                putString(out, MAGIC_NUMBER, StandardCharsets.US_ASCII);
+                out.writeInt(VERSION);
+                out.writeLong(attributes.size());
+                out.writeLong(attributes.lastModifiedTime().toMillis());
+                out.writeInt(crc32Of(archive, index.getNamesOffset()));
+                putString(out, archivePath.toAbsolutePath().normalize().toString(), StandardCharsets.UTF_8);
+                out.writeInt(index.getNamesOffset());
+                out.writeInt(index.getDataOffset());
+
+                putString(out, header.getMagicNumber(), StandardCharsets.ISO_8859_1);
+                out.writeFloat(header.getVersion1());
+                putString(out, header.getComments(), StandardCharsets.ISO_8859_1);
+                out.writeInt(header.getVersion2());
+                out.writeInt(header.getFileCount());
+                out.writeLong(header.getCompressedSize());
+                out.writeLong(header.getRawSize());
+
+                int size = entries.size();
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(entries.getCompressionTag(i));
+                    out.writeInt(entries.getFolderNameIndex(i));
+                    out.writeInt(entries.getFileNameIndex(i));
+                    out.writeInt(entries.getFileId(i));
+                    out.writeInt(entries.getRawSize(i));
+                    out.writeInt(entries.getCompressedSize(i));
+                    out.writeLong(entries.getOffset(i));
+                    out.writeInt(entries.getCrc32(i));
+                    out.writeInt(entries.getUnknownField(i));
+                    out.writeInt(entries.isUnused(i) ? 0 : PathIndex.hash(index, i));
+                }
+
+                int[] folderParentIndexes = index.getFolderParentIndexes();
+                out.writeInt(folderParentIndexes.length);
+                for (int parentIndex : folderParentIndexes) {
+                    out.writeInt(parentIndex);
+                }
+                putNames(out, index.getFolderNames());
+                putNames(out, index.getFileNames());
+            }
+            // Readers only ever map a whole cache file, either the one replaced or the new one
+            Files.move(temporary, cachePath, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static ArchiveIndex readIndex(ByteBuffer cache, int namesOffset) {
+        ArchiveIndex index = new ArchiveIndex();
+        index.setNamesOffset(namesOffset);
+        index.setDataOffset(cache.getInt());
+
+        ArchiveHeader header = new ArchiveHeader();
+        header.setMagicNumber(getString(cache, StandardCharsets.ISO_8859_1));
+        header.setVersion1(cache.getFloat());
+        header.setComments(getString(cache, StandardCharsets.ISO_8859_1));
+        header.setVersion2(cache.getInt());
+        header.setFileCount(cache.getInt());
+        header.setCompressedSize(cache.getLong());
+        header.setRawSize(cache.getLong());
+        index.setHeader(header);
+
+        int size = checkCount(cache, ENTRY_SIZE);
+        FileEntryTable entries = new FileEntryTable(size);
+        int[] pathHashes = new int[size];
+        for (int i = 0; i < size; i++) {
+            entries.setCompressionTag(i, cache.getInt());
+            entries.setFolderNameIndex(i, cache.getInt());
+            entries.setFileNameIndex(i, cache.getInt());
+            entries.setFileId(i, cache.getInt());
+            entries.setRawSize(i, cache.getInt());
+            entries.setCompressedSize(i, cache.getInt());
+            entries.setOffset(i, cache.getLong());
+            entries.setCrc32(i, cache.getInt());
+            entries.setUnknownField(i, cache.getInt());
+            pathHashes[i] = cache.getInt();
+        }
+        index.setEntries(entries);
+        index.setPathHashes(pathHashes);
+
+        int[] folderParentIndexes = new int[checkCount(cache, 4)];
+        for (int i = 0; i < folderParentIndexes.length; i++) {
+            folderParentIndexes[i] = cache.getInt();
+        }
+        index.setFolderParentIndexes(folderParentIndexes);
+        index.setFolderNames(getNames(cache));
+        index.setFileNames(getNames(cache));
+        return index;
+    }
+
+    private static void putNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        int end = 0;
+        out.writeInt(end);
+        for (String name : names) {
+            end += name.length();
+            out.writeInt(end);
+        }
+        for (String name : names) {
+            out.writeChars(name);
+        }
+    }
+
+    private static List<String> getNames(ByteBuffer cache) {
+        int count = checkCount(cache, 4);
+        ByteBuffer ends = cache.slice(cache.position(), (count + 1) * 4);
+        cache.position(cache.position() + ends.limit());
+        int length = ends.getInt(count * 4);
+        CharBuffer chars = cache.slice(cache.position(), length * 2).asCharBuffer();
+        cache.position(cache.position() + length * 2);
+        return new MappedNames(ends, chars, count);
+    }
+
+    private static int checkCount(ByteBuffer cache, int bytesEach) {
+        // A count read from a damaged file could otherwise ask for arrays far larger than the file
+        int count = cache.getInt();
+        if (count < 0 || (long) count * bytesEach > cache.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void putString(DataOutputStream out, String value, Charset charset) throws IOException {
+        byte[] bytes = value.getBytes(charset);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer cache, Charset charset) {
+        int length = cache.getInt();
+        if (length < 0 || length > cache.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        cache.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    private static int crc32Of(ByteBuffer archive, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(archive.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Names read from a mapped cache file, each only made into a string the first time it is asked for.
+     */
+    private static class MappedNames extends AbstractList<String> implements RandomAccess {
+        private final ByteBuffer ends;
+        private final CharBuffer chars;
+        private final String[] names;
+
+        MappedNames(ByteBuffer ends, CharBuffer chars, int count) {
+            this.ends = ends;
+            this.chars = chars;
+            this.names = new String[count];
+        }
+
+        @Override
+        public String get(int index) {
+            String name = names[index];
+            if (name == null) {
+                // Strings are immutable, so threads racing here at worst build the same name twice
+                name = chars.subSequence(ends.getInt(index * 4), ends.getInt(index * 4 + 4)).toString();
+                names[index] = name;
+            }
+            return name;
+        }
+
+        @Override
+        public int size() {
+            return names.length;
+        }
+    }
+}
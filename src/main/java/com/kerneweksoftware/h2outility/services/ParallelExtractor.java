@@ -0,0 +1,221 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and decompresses the files of an archive across a pool of threads.
+ * 
+ * Entries are located by their offsets on the calling thread, then decompressed on the pool. The raw size of every
+ * entry being worked on counts against a limit of bytes in flight, so only so much decompressed data is held before
+ * it has been handed to the {@link EntryConsumer}. Calling threads wait for room under the limit before moving on to
+ * the next entry. A consumer may {@link EntryConsumer#skip(int) skip} files, which are then never decompressed.
+ */
+public class ParallelExtractor implements AutoCloseable {
+
+    /** Default limit of decompressed bytes in flight at once. */
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxPermits;
+    private final Logger logger = LoggerFactory.getLogger(ParallelExtractor.class);
+
+    /**
+     * Receives the contents of each file once decompressed.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Called from a pool thread with the contents of one file. May be called from several threads at once.
+         * 
+         * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+         * @param contents Contents of the file. Files that are not compressed are a read-only view of the archive.
+         * @throws IOException When the contents could not be handled. Stops the extraction.
+         */
+        void accept(int entryIndex, ByteBuffer contents) throws IOException;
+
+        /**
+         * Called from a pool thread when a file failed to decompress. The failure has already been logged.
+         * 
+         * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+         * @param e Reason the file failed to decompress.
+         */
+        default void failed(int entryIndex, DecompressionException e) {
+        }
+
+        /**
+         * Called from a pool thread before a file is decompressed, so a file that is not wanted costs nothing to
+         * leave out. May be called from several threads at once.
+         * 
+         * @param entryIndex Index of the file's entry in {@link ArchiveIndex#getEntries()}.
+         * @return True to leave the file out, in which case neither {@link #accept(int, ByteBuffer)} nor
+         *         {@link #failed(int, DecompressionException)} are called for it.
+         * @throws IOException When it could not be decided. Stops the extraction.
+         */
+        default boolean skip(int entryIndex) throws IOException {
+            return false;
+        }
+    }
+
+    /**
+     * Instantiate new ParallelExtractor with its own {@link ForkJoinPool}.
+     * 
+     * @param parallelism Number of threads to decompress with.
+     * @param maxInFlightBytes Limit of decompressed bytes held at once.
+     */
+    public ParallelExtractor(int parallelism, long maxInFlightBytes) {
+        this(new ForkJoinPool(parallelism), true, maxInFlightBytes);
+    }
+
+    /**
+     * Instantiate new ParallelExtractor on an existing executor, which is left running on {@link #close()}.
+     * 
+     * @param executor Executor to decompress with.
+     * @param maxInFlightBytes Limit of decompressed bytes held at once.
+     */
+    public ParallelExtractor(ExecutorService executor, long maxInFlightBytes) {
+        this(executor, false, maxInFlightBytes);
+    }
+
+    private ParallelExtractor(ExecutorService executor, boolean ownsExecutor, long maxInFlightBytes) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxPermits = (int) Math.max(1, Math.min(maxInFlightBytes, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Decompresses every file in the archive, handing each to the consumer as soon as it is ready.
+     * 
+     * Files failing to decompress are logged and skipped, as are unused entries. Returns once every file has been
+     * handed to the consumer.
+     * 
+     * @param input Archive to read the files from.
+     * @param index Index of the archive, from {@link ArchiveInput#readIndex()}.
+     * @param consumer Receiver of each file's contents.
+     * @throws IOException When the consumer failed to handle a file.
+     * @throws InterruptedException When interrupted while waiting for files to decompress.
+     */
+    public void extract(ArchiveInput input, ArchiveIndex index, EntryConsumer consumer)
+            throws IOException, InterruptedException {
+        extract(input, index, null, consumer);
+    }
+
+    /**
+     * Decompresses the chosen files in the archive, handing each to the consumer as soon as it is ready.
+     * 
+     * Files not chosen are passed over before their data is located, so cost nothing beyond the check. Otherwise
+     * as {@link #extract(ArchiveInput, ArchiveIndex, EntryConsumer)}.
+     * 
+     * @param input Archive to read the files from.
+     * @param index Index of the archive, from {@link ArchiveInput#readIndex()}.
+     * @param selected Indexes of the entries to decompress, such as from {@link EntryFilter#select(ArchiveIndex)},
+     *                 or null for every file.
+     * @param consumer Receiver of each file's contents.
+     * @throws IOException When the consumer failed to handle a file.
+     * @throws InterruptedException When interrupted while waiting for files to decompress.
+     */
+    public void extract(ArchiveInput input, ArchiveIndex index, BitSet selected, EntryConsumer consumer)
+            throws IOException, InterruptedException {
+        Semaphore inFlight = new Semaphore(maxPermits);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        FileEntryTable entries = index.getEntries();
+        try {
+            for (int i = 0; i < entries.size() && failure.get() == null; i++) {
+                if (selected != null && !selected.get(i)) {
+                    continue;
+                }
+                if (!ArchiveInput.hasFileData(entries, i)) {
+                    // Counted once when the index was read rather than logged here
+                    continue;
+                }
+
+                ByteBuffer data;
+                try {
+                    data = input.locateFileData(entries, i);
+                } catch (DecompressionException e) {
+                    // Already logged by the input, move on to the next file
+                    consumer.failed(i, e);
+                    continue;
+                }
+                int permits = Math.max(1, Math.min(entries.getRawSize(i), maxPermits));
+                inFlight.acquire(permits);
+                int entryIndex = i;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            if (consumer.skip(entryIndex)) {
+                                return;
+                            }
+                            ByteBuffer contents = null;
+                            DecompressionException error = null;
+                            try {
+                                contents = input.decodeFileData(entries, entryIndex, data);
+                            } catch (DecompressionException e) {
+                                error = e;
+                            }
+                            // Told outside of the catch, so a consumer failing on either is recorded below
+                            if (error == null) {
+                                consumer.accept(entryIndex, contents);
+                            } else {
+                                // Already logged by the input, move on to the next file
+                                consumer.failed(entryIndex, error);
+                            }
+                        } catch (IOException e) {
+                            failure.compareAndSet(null, e);
+                        } catch (RuntimeException e) {
+                            logger.error("Data for file {} failed to extract", entries.getFileId(entryIndex), e);
+                            failure.compareAndSet(null, new IOException(e));
+                        } finally {
+                            inFlight.release(permits);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release(permits);
+                    throw e;
+                }
+            }
+        } finally {
+            // Every running task holds permits until it finishes, so taking them all waits for the lot
+            inFlight.acquireUninterruptibly(maxPermits);
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    long getMaxInFlightBytes() {
+        return maxPermits;
+    }
+
+    /**
+     * Shuts down the pool if it was created by this extractor.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
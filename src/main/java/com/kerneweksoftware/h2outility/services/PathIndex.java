@@ -0,0 +1,192 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+/**
+ * Hash index from the full path of a file to its entry, across any number of archives.
+ * 
+ * Paths match regardless of case and of whether forward or back slashes separate them. Lookups hash and compare the
+ * given path in place against the archives' own name tables, so no strings are built to find a file. Where two
+ * archives hold the same path, the archive added first wins.
+ */
+public final class PathIndex {
+
+    private static final int EMPTY = -1;
+
+    private final ArchiveIndex[] archives;
+    private final int[] hashes;
+    private final int[] archiveIndexes;
+    private final int[] entryIndexes;
+    private final int mask;
+    private int size;
+
+    /**
+     * Instantiate new PathIndex over the given archives, highest priority first.
+     * 
+     * @param archives Indexes of the archives, from {@link ArchiveInput#readIndex()}.
+     */
+    public PathIndex(List<ArchiveIndex> archives) {
+        this.archives = archives.toArray(new ArchiveIndex[0]);
+
+        long entryCount = 0;
+        for (ArchiveIndex archive : this.archives) {
+            entryCount += archive.getEntries().size();
+        }
+        int capacity = Integer.highestOneBit((int) Math.max(2, Math.min(entryCount * 2, 1 << 30)) - 1) << 1;
+        hashes = new int[capacity];
+        archiveIndexes = new int[capacity];
+        entryIndexes = new int[capacity];
+        Arrays.fill(archiveIndexes, EMPTY);
+        mask = capacity - 1;
+
+        for (int a = 0; a < this.archives.length; a++) {
+            FileEntryTable entries = this.archives[a].getEntries();
+            for (int e = 0; e < entries.size(); e++) {
+                if (!entries.isUnused(e)) {
+                    add(a, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of distinct paths held.
+     * 
+     * @return Number of paths.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the file at the given path.
+     * 
+     * @param path Full path of the file, being its folder name and file name separated by a slash.
+     * @return Position of the archive in the list given to the constructor in the upper 32 bits and the index of the
+     *         file's entry in the lower 32 bits, or -1 if no archive holds the path.
+     */
+    public long find(CharSequence path) {
+        int hash = hash(path);
+        for (int slot = hash & mask; archiveIndexes[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && matches(path, archives[archiveIndexes[slot]], entryIndexes[slot])) {
+                return ((long) archiveIndexes[slot] << 32) | entryIndexes[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the archive a result of {@link #find(CharSequence)} refers to.
+     * 
+     * @param location Result of a successful find.
+     * @return Position of the archive in the list given to the constructor.
+     */
+    public static int archiveIndex(long location) {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * Gets the entry a result of {@link #find(CharSequence)} refers to.
+     * 
+     * @param location Result of a successful find.
+     * @return Index of the file's entry within its archive.
+     */
+    public static int entryIndex(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Hashes the path of the file at the given entry, as a lookup of that path would.
+     * 
+     * @param archive Index of the archive.
+     * @param entryIndex Index of a used entry.
+     * @return Hash of the entry's path.
+     */
+    static int hash(ArchiveIndex archive, int entryIndex) {
+        FileEntryTable entries = archive.getEntries();
+        int folderIndex = entries.getFolderNameIndex(entryIndex);
+        int hash = 0;
+        if (folderIndex >= 0) {
+            hash = hash(hash, archive.getFolderNames().get(folderIndex));
+            hash = 31 * hash + '\\';
+        }
+        return finish(hash(hash, archive.getFileNames().get(entries.getFileNameIndex(entryIndex))));
+    }
+
+    private void add(int archiveIndex, int entryIndex) {
+        ArchiveIndex archive = archives[archiveIndex];
+        int[] pathHashes = archive.getPathHashes();
+        int hash = pathHashes != null ? pathHashes[entryIndex] : hash(archive, entryIndex);
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (archiveIndexes[slot] == EMPTY) {
+                hashes[slot] = hash;
+                archiveIndexes[slot] = archiveIndex;
+                entryIndexes[slot] = entryIndex;
+                size++;
+                return;
+            }
+            if (hashes[slot] == hash
+                    && matches(archive.getPath(entryIndex), archives[archiveIndexes[slot]], entryIndexes[slot])) {
+                // An earlier archive, or an earlier entry of the same archive, already holds this path
+                return;
+            }
+        }
+    }
+
+    private static boolean matches(CharSequence path, ArchiveIndex archive, int entryIndex) {
+        FileEntryTable entries = archive.getEntries();
+        int folderIndex = entries.getFolderNameIndex(entryIndex);
+        String fileName = archive.getFileNames().get(entries.getFileNameIndex(entryIndex));
+        int position = 0;
+        if (folderIndex >= 0) {
+            String folderName = archive.getFolderNames().get(folderIndex);
+            if (path.length() <= folderName.length() || !regionMatches(path, 0, folderName)
+                    || normalise(path.charAt(folderName.length())) != '\\') {
+                return false;
+            }
+            position = folderName.length() + 1;
+        }
+        return path.length() - position == fileName.length() && regionMatches(path, position, fileName);
+    }
+
+    private static boolean regionMatches(CharSequence path, int offset, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (normalise(path.charAt(offset + i)) != normalise(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence path) {
+        return finish(hash(0, path));
+    }
+
+    private static int hash(int hash, CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            hash = 31 * hash + normalise(chars.charAt(i));
+        }
+        return hash;
+    }
+
+    private static int finish(int hash) {
+        // Spread the higher bits down, as only the lower bits pick a slot
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char normalise(char c) {
+        if (c < 0x80) {
+            if (c >= 'A' && c <= 'Z') {
+                return (char) (c + ('a' - 'A'));
+            }
+            return c == '/' ? '\\' : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
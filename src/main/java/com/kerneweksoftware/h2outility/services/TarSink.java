@@ -0,0 +1,164 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+
+/**
+ * Streams files out of an archive as a POSIX tar stream, such as to standard output for another tool to read.
+ * 
+ * Tar has no index, so each file is written whole as soon as it arrives, taking turns with the other threads. Paths
+ * too long for the ustar header are carried in a pax extended header.
+ */
+public class TarSink implements EntrySink {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+
+    private final OutputStream out;
+    private final long modified;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] scratch = new byte[64 * 1024];
+
+    /**
+     * Instantiate new TarSink.
+     * 
+     * @param out Stream to write the tar stream to. Closed along with the sink.
+     */
+    public TarSink(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.modified = System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Adds an entry for every folder, so empty folders are kept.
+     */
+    @Override
+    public void begin(ArchiveIndex index) throws IOException {
+        lock.lock();
+        try {
+            for (String folderName : index.getFolderNames()) {
+                writeHeader(tarName(folderName) + "/", 0, '5');
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(ArchiveIndex index, int entryIndex, ByteBuffer contents) throws IOException {
+        String name = tarName(index.getPath(entryIndex));
+        int size = contents.remaining();
+        lock.lock();
+        try {
+            writeHeader(name, size, '0');
+            ByteBuffer source = contents.duplicate();
+            while (source.hasRemaining()) {
+                int length = Math.min(scratch.length, source.remaining());
+                source.get(scratch, 0, length);
+                out.write(scratch, 0, length);
+            }
+            pad(size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the two empty blocks ending the stream and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            out.write(new byte[BLOCK_SIZE * 2]);
+            out.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeHeader(String name, long size, char type) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        String headerName = name;
+        if (nameBytes.length > NAME_LENGTH) {
+            byte[] record = paxRecord("path", name);
+            headerName = paxName(nameBytes);
+            out.write(header(headerName, record.length, 'x'));
+            out.write(record);
+            pad(record.length);
+        }
+        out.write(header(headerName, size, type));
+    }
+
+    private byte[] header(String name, long size, char type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+        octal(header, 100, 8, type == '5' ? 0755 : 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, modified);
+        header[156] = (byte) type;
+        ascii(header, 257, "ustar\0");
+        ascii(header, 263, "00");
+
+        // The checksum is taken with its own field as spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    private static byte[] paxRecord(String key, String value) {
+        // Each record starts with its own length in decimal, which counts the digits of the length itself
+        int length = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int digits = Integer.toString(length).length();
+        if (Integer.toString(length + digits).length() > digits) {
+            digits++;
+        }
+        return String.format("%d %s=%s\n", length + digits, key, value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String paxName(byte[] nameBytes) {
+        // Readers without pax support still see a recognisable, if cut short, name
+        return new String(nameBytes, 0, NAME_LENGTH - 1, StandardCharsets.US_ASCII).replaceAll("[^\\x20-\\x7E]", "_");
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            header[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        header[offset + width] = 0;
+    }
+
+    private static void ascii(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static String tarName(String archivePath) {
+        return archivePath.replace('\\', '/');
+    }
+}
@@ -0,0 +1,142 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Presents a set of archives as one tree of files, as the games do when loading them.
+ * 
+ * Archives are given highest priority first, so a file in an earlier archive overrides a file at the same path in
+ * any later one. Only the indexes are read up front, each file is decompressed when it is asked for.
+ */
+public class VirtualFileSystem {
+
+    private final List<ArchiveInput> inputs;
+    private final List<ArchiveIndex> indexes;
+    private final PathIndex paths;
+    private EntryCache cache;
+    private final Logger logger = LoggerFactory.getLogger(VirtualFileSystem.class);
+
+    /**
+     * Instantiate new VirtualFileSystem over the archive files at the given paths.
+     * 
+     * @param archives Paths of the H2O archives, highest priority first.
+     * @throws IOException When an archive could not be opened.
+     * @throws IncorrectFileTypeException When an archive is not of the H2O format.
+     * @throws DecompressionException When the name tables of an archive failed to decompress.
+     */
+    public VirtualFileSystem(Path... archives)
+            throws IOException, IncorrectFileTypeException, DecompressionException {
+        this(openAll(archives));
+    }
+
+    /**
+     * Instantiate new VirtualFileSystem over already opened archives.
+     * 
+     * @param inputs Archives, highest priority first.
+     * @throws IncorrectFileTypeException When an archive is not of the H2O format.
+     * @throws DecompressionException When the name tables of an archive failed to decompress.
+     */
+    public VirtualFileSystem(List<? extends ArchiveInput> inputs)
+            throws IncorrectFileTypeException, DecompressionException {
+        this.inputs = new ArrayList<>(inputs);
+        this.indexes = new ArrayList<>();
+        for (ArchiveInput input : this.inputs) {
+            indexes.add(input.readIndex());
+        }
+        this.paths = new PathIndex(indexes);
+        logger.info("Indexed {} files across {} archives", paths.size(), inputs.size());
+    }
+
+    /**
+     * Gets the number of distinct files across every archive.
+     * 
+     * @return Number of files.
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * Whether any archive holds a file at the given path.
+     * 
+     * @param path Full path of the file, being its folder name and file name separated by a slash.
+     * @return True when the file exists.
+     */
+    public boolean exists(CharSequence path) {
+        return paths.find(path) >= 0;
+    }
+
+    /**
+     * Sets a cache to keep read files in, so reading a file again does not decompress it again.
+     * 
+     * @param cache Cache to use, which may be shared with other readers, or null for none.
+     */
+    public void setCache(EntryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Reads and, if needed, decompresses the file at the given path from the highest priority archive holding it.
+     * 
+     * @param path Full path of the file, being its folder name and file name separated by a slash.
+     * @return Contents of the file.
+     * @throws NoSuchFileException When no archive holds the path.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    public byte[] readAllBytes(CharSequence path) throws NoSuchFileException, DecompressionException {
+        return ArchiveInput.toArray(read(path));
+    }
+
+    /**
+     * Opens the file at the given path for reading, see {@link #readAllBytes(CharSequence)}.
+     * 
+     * @param path Full path of the file, being its folder name and file name separated by a slash.
+     * @return Stream of the file's contents.
+     * @throws NoSuchFileException When no archive holds the path.
+     * @throws DecompressionException When the file's data failed to decompress.
+     */
+    public InputStream open(CharSequence path) throws NoSuchFileException, DecompressionException {
+        return new ByteBufferInputStream(read(path));
+    }
+
+    private ByteBuffer read(CharSequence path) throws NoSuchFileException, DecompressionException {
+        long location = paths.find(path);
+        if (location < 0) {
+            throw new NoSuchFileException(path.toString());
+        }
+        ArchiveInput input = inputs.get(PathIndex.archiveIndex(location));
+        FileEntryTable entries = indexes.get(PathIndex.archiveIndex(location)).getEntries();
+        int entryIndex = PathIndex.entryIndex(location);
+        EntryCache.Loader loader = () -> {
+            ByteBuffer contents = input.readFileContents(entries, entryIndex);
+            return contents == null ? ByteBuffer.allocate(0) : contents;
+        };
+        if (cache == null || entries.getCompressionTag(entryIndex) == 0) {
+            // A view of the mapped archive, so not worth a place in the cache
+            return loader.load();
+        }
+        return cache.get(input, entries.getFileId(entryIndex), loader);
+    }
+
+    private static List<ArchiveInput> openAll(Path[] archives) throws IOException {
+        List<ArchiveInput> inputs = new ArrayList<>();
+        for (Path archive : archives) {
+            inputs.add(new ArchiveInput(archive));
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,273 @@
+package com.kerneweksoftware.h2outility.services;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+
+/**
+ * Streams files out of an archive into a ZIP file, without writing anything else to disk.
+ * 
+ * Files are deflated on the threads handing them over, so compression runs across the extractor's whole pool, and
+ * only the copying of finished bytes into the stream takes turns. Files in formats that are already compressed, and
+ * files that do not get smaller, are stored as they are. ZIP64 records are added once the file count or size needs
+ * them.
+ */
+public class ZipSink implements EntrySink {
+
+    /** Extensions of formats already compressed, stored without trying to deflate them. */
+    public static final Set<String> STORED_EXTENSIONS = Set.of("bik", "gz", "jpeg", "jpg", "mp3", "mp4", "ogg",
+        "png", "smk", "zip");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int UTF8_NAMES = 0x0800;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+    private static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+
+    private final CountingOutputStream out;
+    private final int level;
+    private final int dosTime;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final byte[] scratch = new byte[64 * 1024];
+    private long entryCount;
+
+    /**
+     * Instantiate new ZipSink deflating at the default level.
+     * 
+     * @param out Stream to write the ZIP file to. Closed along with the sink.
+     */
+    public ZipSink(OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Instantiate new ZipSink.
+     * 
+     * @param out Stream to write the ZIP file to. Closed along with the sink.
+     * @param level Deflate level from 0 to 9, or -1 for the default.
+     */
+    public ZipSink(OutputStream out, int level) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.level = level;
+        this.dosTime = dosTime(LocalDateTime.now());
+    }
+
+    /**
+     * Adds an entry for every folder, so empty folders are kept.
+     */
+    @Override
+    public void begin(ArchiveIndex index) throws IOException {
+        List<String> folderNames = index.getFolderNames();
+        for (String folderName : folderNames) {
+            writeEntry(zipName(folderName) + "/", 0, 0, 0, 0, null);
+        }
+    }
+
+    @Override
+    public void write(ArchiveIndex index, int entryIndex, ByteBuffer contents) throws IOException {
+        String name = zipName(index.getPath(entryIndex));
+        int rawSize = contents.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(contents.duplicate());
+
+        if (level != Deflater.NO_COMPRESSION && rawSize > 0 && !isStoredExtension(name)) {
+            byte[] deflated = deflate(contents.duplicate(), rawSize);
+            if (deflated != null) {
+                writeEntry(name, Deflater.DEFLATED, (int) crc.getValue(), deflated.length, rawSize,
+                    ByteBuffer.wrap(deflated));
+                return;
+            }
+        }
+        writeEntry(name, 0, (int) crc.getValue(), rawSize, rawSize, contents);
+    }
+
+    /**
+     * Writes the central directory and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            long directoryOffset = out.getCount();
+            centralDirectory.writeTo(out);
+            long directorySize = out.getCount() - directoryOffset;
+
+            if (entryCount > MAX_UNSIGNED_SHORT || directoryOffset >= MAX_UNSIGNED_INT
+                    || directorySize >= MAX_UNSIGNED_INT) {
+                long zip64Offset = out.getCount();
+                ByteBuffer record = littleEndian(56 + 20);
+                record.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY).putLong(44).putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64).putInt(0).putInt(0).putLong(entryCount).putLong(entryCount)
+                    .putLong(directorySize).putLong(directoryOffset);
+                record.putInt(ZIP64_LOCATOR).putInt(0).putLong(zip64Offset).putInt(1);
+                out.write(record.array());
+            }
+
+            ByteBuffer end = littleEndian(22);
+            end.putInt(END_OF_CENTRAL_DIRECTORY).putShort((short) 0).putShort((short) 0)
+                .putShort((short) Math.min(entryCount, MAX_UNSIGNED_SHORT))
+                .putShort((short) Math.min(entryCount, MAX_UNSIGNED_SHORT))
+                .putInt((int) Math.min(directorySize, MAX_UNSIGNED_INT))
+                .putInt((int) Math.min(directoryOffset, MAX_UNSIGNED_INT)).putShort((short) 0);
+            out.write(end.array());
+            out.close();
+        } finally {
+            lock.unlock();
+            Deflater deflater;
+            while ((deflater = deflaters.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private byte[] deflate(ByteBuffer contents, int rawSize) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            // Not worth keeping unless smaller, so never give the deflater more room than the raw size
+            byte[] output = new byte[rawSize];
+            int length = 0;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            byte[] deflated = new byte[length];
+            System.arraycopy(output, 0, deflated, 0, length);
+            return deflated;
+        } finally {
+            deflater.reset();
+            deflaters.add(deflater);
+        }
+    }
+
+    private void writeEntry(String name, int method, int crc32, int compressedSize, int rawSize, ByteBuffer data)
+            throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            long offset = out.getCount();
+            ByteBuffer header = littleEndian(30 + nameBytes.length);
+            header.putInt(LOCAL_HEADER).putShort((short) VERSION).putShort((short) UTF8_NAMES)
+                .putShort((short) method).putInt(dosTime).putInt(crc32).putInt(compressedSize).putInt(rawSize)
+                .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes);
+            out.write(header.array());
+            if (data != null) {
+                writeBuffer(data);
+            }
+
+            boolean zip64 = offset >= MAX_UNSIGNED_INT;
+            ByteBuffer central = littleEndian(46 + nameBytes.length + (zip64 ? 12 : 0));
+            central.putInt(CENTRAL_HEADER).putShort((short) VERSION_ZIP64)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION)).putShort((short) UTF8_NAMES)
+                .putShort((short) method).putInt(dosTime).putInt(crc32).putInt(compressedSize).putInt(rawSize)
+                .putShort((short) nameBytes.length).putShort((short) (zip64 ? 12 : 0)).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0)
+                .putInt((int) Math.min(offset, MAX_UNSIGNED_INT)).put(nameBytes);
+            if (zip64) {
+                central.putShort((short) 0x0001).putShort((short) 8).putLong(offset);
+            }
+            centralDirectory.write(central.array());
+            entryCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBuffer(ByteBuffer data) throws IOException {
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            return;
+        }
+        ByteBuffer source = data.duplicate();
+        while (source.hasRemaining()) {
+            int length = Math.min(scratch.length, source.remaining());
+            source.get(scratch, 0, length);
+            out.write(scratch, 0, length);
+        }
+    }
+
+    private static boolean isStoredExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String zipName(String archivePath) {
+        return archivePath.replace('\\', '/');
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        int year = Math.max(1980, time.getYear());
+        return (year - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+            | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    /**
+     * Keeps track of the offset written to, which ZIP headers refer to.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.kerneweksoftware.h2outility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandLineOptionsTest {
+
+    @Test
+    void test_parse_PathsAndThreads() {
+        String[] args = {"--threads=3", "First.H2O", "Second.H2O"};
+
+        CommandLineOptions options = CommandLineOptions.parse(args);
+
+        assertEquals(3, options.getThreads());
+        assertEquals(Arrays.asList("First.H2O", "Second.H2O"), options.getPaths());
+    }
+
+    @Test
+    void test_parse_InvalidThreads() {
+        String[] args = {"--threads=none", "Archive.H2O"};
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            CommandLineOptions.parse(args);
+        });
+    }
+
+    @Test
+    void test_parse_UnrecognisedOption() {
+        String[] args = {"--unknown", "Archive.H2O"};
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            CommandLineOptions.parse(args);
+        });
+    }
+}
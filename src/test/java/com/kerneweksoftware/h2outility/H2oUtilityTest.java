@@ -1,6 +1,13 @@
 package com.kerneweksoftware.h2outility;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 
 import org.junit.jupiter.api.Test;
 
@@ -27,4 +34,23 @@ public class H2oUtilityTest
 
         assertEquals("Archive.H2O", name);
     }
+
+    @Test
+    void test_openOutput_StandardOutputLeftOpen() throws IOException {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(console));
+        try {
+            try (OutputStream output = H2oUtility.openOutput("-")) {
+                output.write(new byte[] {0x01, 0x02});
+            }
+            System.out.write(0x03);
+            System.out.flush();
+
+            assertFalse(System.out.checkError());
+            assertArrayEquals(new byte[] {0x01, 0x02, 0x03}, console.toByteArray());
+        } finally {
+            System.setOut(original);
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package com.kerneweksoftware.h2outility.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.services.ArchiveInput;
+import com.kerneweksoftware.h2outility.services.ParallelExtractor;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+
+public class ArchiveMetricsTest {
+
+    @Test
+    void test_getDecodePercentileNanos_PowerOfTwoBuckets() {
+        ArchiveMetrics metrics = new ArchiveMetrics();
+        for (int i = 0; i < 99; i++) {
+            metrics.entryDecoded(i, 10, 40, 100);
+        }
+        metrics.entryDecoded(99, 10, 40, 5000);
+
+        assertEquals(127, metrics.getDecodePercentileNanos(50));
+        assertEquals(127, metrics.getDecodePercentileNanos(99));
+        assertEquals(8191, metrics.getDecodePercentileNanos(100));
+        assertEquals(4.0, metrics.getCompressionRatio());
+        assertEquals(100, metrics.getDecodedFiles());
+    }
+
+    @Test
+    void test_getDecodePercentileNanos_Empty() {
+        ArchiveMetrics metrics = new ArchiveMetrics();
+
+        assertEquals(0, metrics.getDecodePercentileNanos(99));
+        assertEquals(0, metrics.getCompressionRatio());
+    }
+
+    @Test
+    void test_readContents_ReportsPhasesAndUnusedEntries()
+            throws IncorrectFileTypeException, DecompressionException, InterruptedException {
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addUnusedFile()
+            .addUnusedFile()
+            .build());
+        ArchiveMetrics metrics = new ArchiveMetrics();
+        input.addListener(metrics);
+
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            input.readContents(extractor);
+        }
+
+        assertEquals(2, metrics.getUnusedEntries());
+        assertEquals(1, metrics.getDecodedFiles());
+        assertEquals(2, metrics.getBytesOut());
+        assertEquals(0, metrics.getFailedFiles());
+        assertEquals(3 * 40, metrics.getPhaseBytes(Phase.ENTRIES));
+        assertTrue(metrics.getPhaseBytes(Phase.NAMES) > 0);
+        assertTrue(metrics.getPhaseNanos(Phase.DATA) > 0);
+    }
+}
@@ -0,0 +1,156 @@
+package com.kerneweksoftware.h2outility.nio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.kerneweksoftware.h2outility.services.ArchiveOutput;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class H2oFileSystemProviderTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path archive;
+    byte[] units;
+    FileSystem fileSystem;
+
+    @BeforeEach
+    void setup() throws IOException, InterruptedException {
+        Path source = tempDir.resolve("Source");
+        Files.createDirectories(source.resolve("Data").resolve("Maps"));
+        units = "Dragon Clan\n".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        Files.write(source.resolve("Readme.txt"), new byte[] {0x01, 0x02, 0x03, 0x04, 0x05});
+        Files.write(source.resolve("Data").resolve("Units.txt"), units);
+        Files.write(source.resolve("Data").resolve("Maps").resolve("Map.txt"), new byte[] {0x07});
+
+        archive = tempDir.resolve("Archive.H2O");
+        try (ArchiveOutput output = new ArchiveOutput(2, 1024);
+                FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ)) {
+            output.write(source, channel);
+        }
+        fileSystem = FileSystems.newFileSystem(archive);
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        fileSystem.close();
+    }
+
+    @Test
+    void test_newFileSystem_FoundByPath() {
+        assertTrue(fileSystem instanceof H2oFileSystem);
+        assertTrue(fileSystem.isReadOnly());
+    }
+
+    @Test
+    void test_walk_FolderHierarchy() throws IOException {
+        List<String> paths;
+        try (Stream<Path> walk = Files.walk(fileSystem.getPath("/"))) {
+            paths = walk.map(Path::toString).sorted().collect(Collectors.toList());
+        }
+
+        List<String> expected = List.of("/", "/Data", "/Data/Maps", "/Data/Maps/Map.txt", "/Data/Units.txt",
+            "/Readme.txt");
+        assertEquals(expected, paths);
+    }
+
+    @Test
+    void test_readAllBytes_CompressedAndStored() throws IOException {
+        assertArrayEquals(units, Files.readAllBytes(fileSystem.getPath("/Data/Units.txt")));
+        assertArrayEquals(new byte[] {0x07}, Files.readAllBytes(fileSystem.getPath("data\\maps\\MAP.TXT")));
+    }
+
+    @Test
+    void test_readAttributes_FilesAndFolders() throws IOException {
+        Path unitsPath = fileSystem.getPath("/Data/Units.txt");
+        BasicFileAttributes file = Files.readAttributes(unitsPath, BasicFileAttributes.class);
+        BasicFileAttributes folder = Files.readAttributes(fileSystem.getPath("/Data"), BasicFileAttributes.class);
+
+        assertTrue(file.isRegularFile());
+        assertEquals(units.length, file.size());
+        assertEquals(Files.getLastModifiedTime(archive), file.lastModifiedTime());
+        assertTrue(folder.isDirectory());
+        assertEquals((long) units.length, Files.readAttributes(unitsPath, "size").get("size"));
+        assertFalse(Files.exists(fileSystem.getPath("/Data/Missing.txt")));
+    }
+
+    @Test
+    void test_newByteChannel_Seeks() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(fileSystem.getPath("/Readme.txt"))) {
+            ByteBuffer buffer = ByteBuffer.allocate(2);
+            channel.position(3);
+
+            assertEquals(2, channel.read(buffer));
+            assertArrayEquals(new byte[] {0x04, 0x05}, buffer.array());
+            assertEquals(-1, channel.read(buffer.clear()));
+            assertEquals(5, channel.size());
+        }
+    }
+
+    @Test
+    void test_write_ReadOnly() {
+        Path path = fileSystem.getPath("/New.txt");
+
+        assertThrows(ReadOnlyFileSystemException.class, () -> Files.write(path, new byte[1]));
+        assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(fileSystem.getPath("/Readme.txt")));
+        assertThrows(NoSuchFileException.class, () -> Files.newByteChannel(path));
+    }
+
+    @Test
+    void test_newFileSystem_ByUri() throws IOException {
+        URI uri = URI.create("h2o:" + archive.toUri());
+        try (FileSystem byUri = FileSystems.newFileSystem(uri, Map.of())) {
+            Path path = byUri.getPath("/Data/Units.txt");
+
+            assertSame(byUri, FileSystems.getFileSystem(uri));
+            assertEquals(path, Paths.get(path.toUri()));
+            assertArrayEquals(units, Files.readAllBytes(Paths.get(path.toUri())));
+        }
+    }
+
+    @Test
+    void test_getPath_Operations() {
+        Path path = fileSystem.getPath("Data", "Maps", "Map.txt");
+
+        assertFalse(path.isAbsolute());
+        assertEquals("Map.txt", path.getFileName().toString());
+        assertEquals("Data/Maps", path.getParent().toString());
+        assertEquals(3, path.getNameCount());
+        assertEquals("/Data/Maps/Map.txt", fileSystem.getPath("/Data/Other/../Maps/./Map.txt").normalize().toString());
+        assertEquals("../Units.txt", fileSystem.getPath("/Data/Maps").relativize(fileSystem.getPath("/Data/Units.txt"))
+            .toString());
+        assertTrue(fileSystem.getPathMatcher("glob:**/*.txt").matches(path));
+        assertTrue(path.startsWith(fileSystem.getPath("Data")));
+        assertTrue(path.endsWith(fileSystem.getPath("Maps/Map.txt")));
+    }
+}
@@ -0,0 +1,206 @@
+package com.kerneweksoftware.h2outility.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.CRC32;
+
+import com.kerneweksoftware.h2outility.services.EntryCache;
+import com.kerneweksoftware.h2outility.services.ParallelExtractor;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchiveServerTest {
+
+    @TempDir
+    Path directory;
+
+    private Path archive;
+    private ParallelExtractor extractor;
+    private ArchiveServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = Files.write(directory.resolve("Data.H2O"), new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02, 0x03, 0x04, 0x05})
+            .addUnusedFile()
+            .addFile(0, "Sky.tga", new byte[] {0x06})
+            .addFile(-1, "Readme.txt", new byte[0])
+            .build());
+        extractor = new ParallelExtractor(2, 1024);
+        server = new ArchiveServer(0, extractor, new EntryCache(1024));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        extractor.close();
+    }
+
+    @Test
+    void test_list() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/list?archive=" + encode(archive.toString()));
+
+        assertEquals(200, response.statusCode());
+        assertEquals("Data\\Units.txt\t5\t5\t470b99f4\n"
+            + "Data\\Sky.tga\t1\t1\t" + crc(0x06) + "\n"
+            + "Readme.txt\t0\t0\t00000000\n", response.body());
+        assertEquals("Data\\Sky.tga\t1\t1\t" + crc(0x06) + "\n",
+            get("/list?include=**.tga&archive=" + encode(archive.toString())).body());
+    }
+
+    @Test
+    void test_stat() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/stat?archive=" + encode(archive.toString()) + "&path=data/units.txt");
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("path: Data\\Units.txt\n"));
+        assertTrue(response.body().contains("size: 5\n"));
+        assertTrue(response.body().contains("compressed: false\n"));
+        assertEquals(404, get("/stat?archive=" + encode(archive.toString()) + "&path=Missing.txt").statusCode());
+    }
+
+    @Test
+    void test_read_WholeAndRanges() throws IOException, InterruptedException {
+        String uri = "/read?archive=" + encode(archive.toString()) + "&path=Data/Units.txt";
+
+        HttpResponse<byte[]> whole = getBytes(uri, null);
+        assertEquals(200, whole.statusCode());
+        assertArrayEquals(new byte[] {0x01, 0x02, 0x03, 0x04, 0x05}, whole.body());
+
+        HttpResponse<byte[]> part = getBytes(uri, "bytes=1-2");
+        assertEquals(206, part.statusCode());
+        assertArrayEquals(new byte[] {0x02, 0x03}, part.body());
+        assertEquals("bytes 1-2/5", part.headers().firstValue("Content-Range").orElse(null));
+
+        assertArrayEquals(new byte[] {0x04, 0x05}, getBytes(uri, "bytes=-2").body());
+        assertArrayEquals(new byte[] {0x05}, getBytes(uri, "bytes=4-").body());
+        assertEquals(416, getBytes(uri, "bytes=5-6").statusCode());
+
+        HttpResponse<byte[]> empty = getBytes("/read?archive=" + encode(archive.toString()) + "&path=Readme.txt", null);
+        assertEquals(200, empty.statusCode());
+        assertEquals(0, empty.body().length);
+    }
+
+    @Test
+    void test_read_ArchiveRewrittenIsOpenedAgain() throws IOException, InterruptedException {
+        String uri = "/read?archive=" + encode(archive.toString()) + "&path=Readme.txt";
+        assertEquals(200, getBytes(uri, null).statusCode());
+
+        Files.write(archive, new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x07, 0x08})
+            .build());
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(0));
+
+        assertArrayEquals(new byte[] {0x07, 0x08}, getBytes(uri, null).body());
+    }
+
+    @Test
+    void test_extract_JobRunsToCompletion() throws IOException, InterruptedException {
+        Path output = directory.resolve("out");
+        HttpResponse<String> started = client.send(HttpRequest.newBuilder(uri("/extract?archive="
+            + encode(archive.toString()) + "&output=" + encode(output.toString()) + "&include=**.tga"))
+            .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(202, started.statusCode());
+
+        String status = "";
+        for (int i = 0; i < 500 && !status.startsWith("status: done"); i++) {
+            status = get("/job?id=" + started.body().trim()).body();
+            Thread.sleep(10);
+        }
+
+        assertTrue(status.startsWith("status: done\nfiles: 1\n"), status);
+        assertEquals(404, get("/job?id=" + started.body().trim()).statusCode());
+        assertArrayEquals(new byte[] {0x06}, Files.readAllBytes(output.resolve("Data/Data/Sky.tga")));
+        assertTrue(Files.notExists(output.resolve("Data/Data/Units.txt")));
+    }
+
+    @Test
+    void test_handle_BadRequests() throws IOException, InterruptedException {
+        assertEquals(400, get("/list").statusCode());
+        assertEquals(404, get("/list?archive=" + encode(directory.resolve("Missing.H2O").toString())).statusCode());
+        assertEquals(405, get("/extract?archive=" + encode(archive.toString())).statusCode());
+        assertEquals(404, get("/job?id=99").statusCode());
+    }
+
+    @Test
+    void test_handle_RefusesWebPages() throws IOException, InterruptedException {
+        Path output = directory.resolve("out");
+        HttpResponse<String> posted = client.send(HttpRequest.newBuilder(uri("/extract?archive="
+            + encode(archive.toString()) + "&output=" + encode(output.toString())))
+            .header("Origin", "https://example.com")
+            .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(403, posted.statusCode());
+        assertTrue(Files.notExists(output));
+        assertEquals(403, client.send(HttpRequest.newBuilder(uri("/list?archive=" + encode(archive.toString())))
+            .header("Origin", "null").build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void test_handle_RefusesOtherHosts() throws IOException {
+        String request = "/list?archive=" + encode(archive.toString());
+
+        assertTrue(rawGet(request, "attacker.example:7460").startsWith("HTTP/1.1 403"));
+        assertTrue(rawGet(request, "127.0.0.1.attacker.example").startsWith("HTTP/1.1 403"));
+        assertTrue(rawGet(request, "localhost:" + server.getAddress().getPort()).startsWith("HTTP/1.1 200"));
+        assertTrue(rawGet(request, "[::1]").startsWith("HTTP/1.1 200"));
+    }
+
+    private String rawGet(String path, String host) throws IOException {
+        // The HTTP client will not send a Host header other than the one it connects to
+        try (Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(String.format("GET %s HTTP/1.1\r\nHost: %s\r\nConnection: close\r\n\r\n", path, host)
+                .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<byte[]> getBytes(String path, String range) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path));
+        if (range != null) {
+            request.header("Range", range);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private URI uri(String path) {
+        return URI.create(String.format("http://127.0.0.1:%s%s", server.getAddress().getPort(), path));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String crc(int b) {
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        return String.format("%08x", crc.getValue());
+    }
+}
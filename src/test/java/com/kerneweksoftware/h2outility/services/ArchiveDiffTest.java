@@ -0,0 +1,137 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.DiffReport;
+import com.kerneweksoftware.h2outility.models.DiffStatus;
+import com.kerneweksoftware.h2outility.models.EntryDifference;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchiveDiffTest {
+
+    private static final int CRC32_OF_SECOND_ENTRY = 37 + 40 + 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void test_compare_AddedRemovedAndChanged() throws IncorrectFileTypeException, DecompressionException {
+        byte[] oldArchive = new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addFile(0, "Maps.txt", new byte[] {0x03})
+            .addFile(-1, "Old.txt", new byte[] {0x04})
+            .build();
+        byte[] newArchive = new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addUnusedFile()
+            .addFile(0, "MAPS.TXT", new byte[] {0x05})
+            .addFile(-1, "New.txt", new byte[] {0x06, 0x07})
+            .build();
+
+        DiffReport report = new ArchiveDiff(new ArchiveInput(oldArchive), new ArchiveInput(newArchive)).compare();
+
+        List<EntryDifference> differences = report.getDifferences();
+        assertEquals(4, differences.size());
+        assertEquals(DiffStatus.UNCHANGED, differences.get(0).getStatus());
+        assertEquals(DiffStatus.CHANGED, differences.get(1).getStatus());
+        assertEquals(1, differences.get(1).getOldEntryIndex());
+        assertEquals(2, differences.get(1).getNewEntryIndex());
+        assertEquals(-1, differences.get(1).getFirstDifference());
+        assertEquals(DiffStatus.ADDED, differences.get(2).getStatus());
+        assertEquals("New.txt", differences.get(2).getPath());
+        assertEquals(DiffStatus.REMOVED, differences.get(3).getStatus());
+        assertEquals("Old.txt", differences.get(3).getPath());
+        assertFalse(report.isIdentical());
+    }
+
+    @Test
+    void test_compare_Identical() throws IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .build();
+
+        DiffReport report = new ArchiveDiff(new ArchiveInput(archive), new ArchiveInput(archive.clone())).compare();
+
+        assertTrue(report.isIdentical());
+        assertEquals(1, report.count(DiffStatus.UNCHANGED));
+    }
+
+    @Test
+    void test_compareContents_DifferenceHiddenFromIndex() throws IncorrectFileTypeException, DecompressionException {
+        byte[] oldArchive = new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x01})
+            .addFile(-1, "Units.txt", new byte[] {0x01, 0x02, 0x03})
+            .build();
+        byte[] newArchive = new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x01})
+            .addFile(-1, "Units.txt", new byte[] {0x01, 0x02, 0x09})
+            .build();
+        // Stored checksums that match although the contents do not
+        ByteBuffer.wrap(newArchive).order(ByteOrder.LITTLE_ENDIAN).putInt(CRC32_OF_SECOND_ENTRY,
+            ByteBuffer.wrap(oldArchive).order(ByteOrder.LITTLE_ENDIAN).getInt(CRC32_OF_SECOND_ENTRY));
+        ArchiveDiff diff = new ArchiveDiff(new ArchiveInput(oldArchive), new ArchiveInput(newArchive));
+
+        assertTrue(diff.compare().isIdentical());
+        DiffReport report = diff.compareContents();
+
+        EntryDifference difference = report.getDifferences().get(1);
+        assertEquals(DiffStatus.CHANGED, difference.getStatus());
+        assertEquals(2, difference.getFirstDifference());
+        assertEquals(DiffStatus.UNCHANGED, report.getDifferences().get(0).getStatus());
+    }
+
+    @Test
+    void test_writeDelta_AddedAndChangedOnly() throws IOException, InterruptedException, IncorrectFileTypeException,
+            DecompressionException {
+        byte[] oldArchive = new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addFile(0, "Maps.txt", new byte[] {0x03})
+            .build();
+        byte[] newArchive = new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addFile(0, "Maps.txt", new byte[] {0x05, 0x05})
+            .addFile(0, "New.txt", new byte[] {0x06})
+            .build();
+        ArchiveDiff diff = new ArchiveDiff(new ArchiveInput(oldArchive), new ArchiveInput(newArchive));
+        Path delta = directory.resolve("Delta.H2O");
+
+        try (ArchiveOutput output = new ArchiveOutput(2, 1024);
+                FileChannel channel = FileChannel.open(delta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ)) {
+            diff.writeDelta(diff.compare(), output, channel);
+        }
+
+        ArchiveInput deltaInput = new ArchiveInput(Files.readAllBytes(delta));
+        ArchiveIndex index = deltaInput.readIndex();
+        assertEquals(2, index.getEntries().size());
+        assertEquals("Data\\Maps.txt", index.getPath(0));
+        assertEquals("Data\\New.txt", index.getPath(1));
+        ByteBuffer contents = deltaInput.readFileContents(index.getEntries(), 0);
+        byte[] bytes = new byte[contents.remaining()];
+        contents.get(bytes);
+        assertArrayEquals(new byte[] {0x05, 0x05}, bytes);
+    }
+}
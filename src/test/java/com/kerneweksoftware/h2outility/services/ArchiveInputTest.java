@@ -1,8 +1,13 @@
 package com.kerneweksoftware.h2outility.services;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -14,20 +19,35 @@ import static org.mockito.Mockito.verify;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.ChecksumSection;
+import com.kerneweksoftware.h2outility.models.FileEntry;
+import com.kerneweksoftware.h2outility.models.VerificationReport;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
 import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
 import com.kerneweksoftware.h2outility.testutils.MockedUnpackedModels;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class ArchiveInputTest {
 
+    private static final byte[] IMPLODED_AIAI = {0x00, 0x04, (byte) 0x82, 0x24, 0x25, (byte) 0x8F, (byte) 0x80, 0x7F};
+
     ArchiveInput service;
 
     @BeforeEach
@@ -50,11 +70,11 @@ public class ArchiveInputTest {
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         service = spy(new ArchiveInput(buffer));
         doReturn(Arrays.asList("Test")).when(service).getStrings(any(), eq(1));
-        doReturn(new byte[1]).when(service).decompress(any());
+        doReturn(new byte[1]).when(service).decompress(any(), anyInt());
 
         service.getNames();
 
-        verify(service, never()).decompress(any());
+        verify(service, never()).decompress(any(), anyInt());
     }
 
     @Test
@@ -72,11 +92,11 @@ public class ArchiveInputTest {
             0x12, 0x00, 0x00, 0x00,
             0x54, 0x00, 0x65, 0x00, 0x73, 0x00, 0x74, 0x00, 0x00, 0x00};
         doReturn(Arrays.asList("Test")).when(service).getStrings(any(), eq(1));
-        doReturn(decompressedBytes).when(service).decompress(any());
+        doReturn(decompressedBytes).when(service).decompress(any(), anyInt());
 
         service.getNames();
 
-        verify(service, times(1)).decompress(any());
+        verify(service, times(1)).decompress(any(), anyInt());
     }
 
     @Test
@@ -90,7 +110,7 @@ public class ArchiveInputTest {
         ByteBuffer buffer = ByteBuffer.wrap(stringBytes);
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         service = spy(new ArchiveInput(buffer));
-        doThrow(IOException.class).when(service).decompress(any());
+        doThrow(IOException.class).when(service).decompress(any(), anyInt());
 
         assertThrows(DecompressionException.class, () -> {
             service.getNames();
@@ -111,13 +131,56 @@ public class ArchiveInputTest {
         byte[] decompressedBytes = {0x01, 0x00, 0x00, 0x00,
             0x12, 0x00, 0x00, 0x00,
             0x54, 0x00, 0x65, 0x00, 0x73, 0x00, 0x74, 0x00, 0x00, 0x00};
-        doReturn(decompressedBytes).when(service).decompress(any());
+        doReturn(decompressedBytes).when(service).decompress(any(), anyInt());
 
         assertThrows(DecompressionException.class, () -> {
             service.getNames();
         });
     }
 
+    @Test
+    void test_decompress_OverrunNotRetried() throws IOException {
+        service = spy(service);
+
+        assertThrows(IOException.class, () -> {
+            service.decompress(ByteBuffer.wrap(IMPLODED_AIAI), 12);
+        });
+        verify(service, never()).decompressWithBlast(any(), anyInt());
+    }
+
+    @Test
+    void test_decompress_OtherErrorsRetried() throws IOException {
+        service = spy(service);
+        doReturn(new byte[13]).when(service).decompressWithBlast(any(), anyInt());
+
+        service.decompress(ByteBuffer.wrap(Arrays.copyOf(IMPLODED_AIAI, 7)), 13);
+
+        verify(service, times(1)).decompressWithBlast(any(), anyInt());
+    }
+
+    @Test
+    void test_decompress_RawSizeOutOfBounds() throws IOException {
+        service = spy(service);
+
+        assertThrows(IOException.class, () -> {
+            service.decompress(ByteBuffer.wrap(IMPLODED_AIAI), -1);
+        });
+        assertThrows(IOException.class, () -> {
+            service.decompress(ByteBuffer.wrap(IMPLODED_AIAI), Integer.MAX_VALUE);
+        });
+        assertThrows(IOException.class, () -> {
+            service.decompress(ByteBuffer.wrap(IMPLODED_AIAI), IMPLODED_AIAI.length * DclDecoder.MAX_EXPANSION + 1);
+        });
+        verify(service, never()).decompressWithBlast(any(), anyInt());
+    }
+
+    @Test
+    void test_decompressWithBlast_OverrunFails() {
+        assertThrows(IOException.class, () -> {
+            service.decompressWithBlast(ByteBuffer.wrap(IMPLODED_AIAI), 5);
+        });
+    }
+
     @Test
     void test_buildArchivedData_NoFoldersAllFilesUsed() {
         ArchivedFolder[] folders = new ArchivedFolder[0];
@@ -220,4 +283,194 @@ public class ArchiveInputTest {
         List<String> expected = Arrays.asList("Test", "Another", "Third", "Third\\\\Fourth");
         assertEquals(expected, producedStrings);
     }
+
+    @Test
+    void test_getStrings_DirectBuffer() {
+        byte[] stringBytes = {0x00, 0x00, 0x41, 0x00, (byte) 0xE9, 0x00, 0x00, 0x00, 0x42, 0x00, 0x00, 0x00, 0x7F};
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stringBytes.length);
+        buffer.put(stringBytes).position(2);
+
+        List<String> producedStrings = service.getStrings(buffer, 2);
+
+        assertEquals(Arrays.asList("Aé", "B"), producedStrings);
+        assertEquals(12, buffer.position());
+    }
+
+    @Test
+    void test_readContents_MappedFile(@TempDir Path tempDir)
+            throws IOException, IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFolder("Example", -1)
+            .addFile(-1, "Top.txt", new byte[] {0x01, 0x02})
+            .addFile(0, "Child.txt", new byte[] {0x03, 0x04, 0x05})
+            .build();
+        Path path = tempDir.resolve("Archive.H2O");
+        Files.write(path, archive);
+        service = new ArchiveInput(path);
+
+        ArchivedData producedData = service.readContents();
+
+        assertEquals(1, producedData.getTopLevelFiles().size());
+        assertEquals("Top.txt", producedData.getTopLevelFiles().get(0).getName());
+        assertArrayEquals(new byte[] {0x01, 0x02}, producedData.getTopLevelFiles().get(0).getContents());
+        assertEquals("Example", producedData.getFolders()[0].getName());
+        assertArrayEquals(new byte[] {0x03, 0x04, 0x05}, producedData.getFolders()[0].getFiles().get(0).getContents());
+    }
+
+    @Test
+    void test_readIndex_ListsEntriesWithPaths() throws IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFolder("Example", -1)
+            .addFolder("Example\\Child", 0)
+            .addFile(-1, "Top.txt", new byte[] {0x01})
+            .addUnusedFile()
+            .addFile(1, "Child.txt", new byte[] {0x02})
+            .build();
+        service = new ArchiveInput(archive);
+
+        ArchiveIndex index = service.readIndex();
+
+        assertEquals(3, index.getEntries().size());
+        assertEquals("Top.txt", index.getPath(0));
+        assertNull(index.getPath(1));
+        assertEquals("Example\\Child\\Child.txt", index.getPath(2));
+        assertEquals(2, index.indexOf("example\\child\\child.txt"));
+        assertEquals(index.getEntries().get(2), index.findEntry("example\\child\\child.txt"));
+    }
+
+    @Test
+    void test_readFileData_SingleEntry() throws IncorrectFileTypeException, DecompressionException {
+        byte[] contents = new byte[300];
+        Arrays.fill(contents, (byte) 0x07);
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "First.txt", new byte[] {0x01})
+            .addFile(-1, "Second.txt", contents)
+            .build();
+        service = new ArchiveInput(archive);
+        ArchiveIndex index = service.readIndex();
+
+        byte[] producedData = service.readFileData(index.findEntry("Second.txt"));
+
+        assertArrayEquals(contents, producedData);
+    }
+
+    @Test
+    void test_readFileData_UnusedEntry() throws IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addUnusedFile()
+            .build();
+        service = new ArchiveInput(archive);
+        FileEntry entry = service.readIndex().getEntries().get(0);
+
+        byte[] producedData = service.readFileData(entry);
+
+        assertNull(producedData);
+    }
+
+    @Test
+    void test_readContents_DataOutOfTableOrderWithGap() throws IncorrectFileTypeException, DecompressionException {
+        byte[] built = new MockedArchives()
+            .addFile(-1, "First.txt", new byte[] {0x01, 0x02})
+            .addFile(-1, "Second.txt", new byte[] {0x03, 0x04, 0x05})
+            .build();
+        // Move the data section around to a gap of 4 bytes, then the second file, then the first
+        int dataStart = built.length - 5;
+        ByteBuffer archive = ByteBuffer.allocate(built.length + 4).order(ByteOrder.LITTLE_ENDIAN);
+        archive.put(built, 0, dataStart).put(new byte[4]).put(built, dataStart + 2, 3).put(built, dataStart, 2);
+        int firstEntryOffset = 37 + 24;
+        archive.putLong(firstEntryOffset, dataStart + 4 + 3);
+        archive.putLong(firstEntryOffset + 40, dataStart + 4);
+        service = new ArchiveInput(archive.array());
+
+        ArchivedData data = service.readContents();
+
+        assertArrayEquals(new byte[] {0x01, 0x02}, data.getTopLevelFiles().get(0).getContents());
+        assertArrayEquals(new byte[] {0x03, 0x04, 0x05}, data.getTopLevelFiles().get(1).getContents());
+    }
+
+    @Test
+    void test_readFileData_OffsetOutsideArchive() throws IncorrectFileTypeException, DecompressionException {
+        byte[] built = new MockedArchives()
+            .addFile(-1, "First.txt", new byte[] {0x01, 0x02})
+            .build();
+        ByteBuffer.wrap(built).order(ByteOrder.LITTLE_ENDIAN).putLong(37 + 24, built.length - 1);
+        service = new ArchiveInput(built);
+        ArchiveIndex index = service.readIndex();
+
+        assertThrows(DecompressionException.class, () -> service.readFileData(index.getEntries(), 0));
+        assertTrue(service.readContents().getTopLevelFiles().isEmpty());
+    }
+
+    @Test
+    void test_readFileData_ConcurrentReaders() throws Exception {
+        MockedArchives mocked = new MockedArchives();
+        for (int i = 0; i < 64; i++) {
+            byte[] contents = new byte[100 + i];
+            Arrays.fill(contents, (byte) i);
+            mocked.addFile(-1, String.format("File%s.txt", i), contents);
+        }
+        service = new ArchiveInput(mocked.build());
+        ArchiveIndex index = service.readIndex();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> reads = new ArrayList<>();
+            for (int round = 0; round < 20; round++) {
+                for (int i = 63; i >= 0; i--) {
+                    int entryIndex = i;
+                    reads.add(executor.submit(() -> {
+                        byte[] contents = service.readFileData(index.getEntries(), entryIndex);
+                        byte[] expected = new byte[100 + entryIndex];
+                        Arrays.fill(expected, (byte) entryIndex);
+                        return Arrays.equals(expected, contents);
+                    }));
+                }
+            }
+            for (Future<Boolean> read : reads) {
+                assertTrue(read.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_verify_ValidArchive() throws InterruptedException, IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFolder("Example", -1)
+            .addFile(-1, "First.txt", new byte[] {0x01, 0x02})
+            .addUnusedFile()
+            .addFile(0, "Second.txt", new byte[] {0x03})
+            .build();
+        service = new ArchiveInput(archive);
+
+        VerificationReport report;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            report = service.verify(extractor);
+        }
+
+        assertTrue(report.isValid());
+        assertEquals(2, report.getCheckedFiles());
+        assertEquals(3, report.getCheckedBytes());
+    }
+
+    @Test
+    void test_verify_CorruptedFile() throws InterruptedException, IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "First.txt", new byte[] {0x01, 0x02})
+            .addFile(-1, "Second.txt", new byte[] {0x03})
+            .build();
+        archive[archive.length - 1] = 0x04;
+        service = new ArchiveInput(archive);
+
+        VerificationReport report;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            report = service.verify(extractor);
+        }
+
+        assertFalse(report.isValid());
+        assertEquals(1, report.getMismatches().size());
+        assertEquals(ChecksumSection.FILE, report.getMismatches().get(0).getSection());
+        assertEquals("Second.txt", report.getMismatches().get(0).getPath());
+    }
 }
@@ -0,0 +1,144 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.FileEntryTable;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
+import com.kerneweksoftware.h2outility.testutils.MockedUnpackedModels;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchiveOutputTest {
+
+    @TempDir
+    Path tempDir;
+
+    ArchiveOutput output;
+    ParallelExtractor extractor;
+
+    @BeforeEach
+    void setup() {
+        output = new ArchiveOutput(4, 64);
+        extractor = new ParallelExtractor(4, 1024);
+    }
+
+    @AfterEach
+    void teardown() {
+        output.close();
+        extractor.close();
+    }
+
+    @Test
+    void test_write_ArchivedDataRoundTrip()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        byte[] text = repeat("Liquid Entertainment\n", 200);
+        byte[] noise = new byte[500];
+        new Random(2).nextBytes(noise);
+        ArchivedFolder[] folders = new ArchivedFolder[2];
+        folders[0] = MockedUnpackedModels.buildArchivedFolder("Example", -1,
+            new ArrayList<>(Arrays.asList(MockedUnpackedModels.buildArchivedFile(1, "Text.txt", 0, text))));
+        folders[1] = MockedUnpackedModels.buildArchivedFolder("Example\\Child", 0,
+            new ArrayList<>(Arrays.asList(MockedUnpackedModels.buildArchivedFile(3, "Noise.bin", 1, noise))));
+        ArchivedData data = new ArchivedData();
+        data.setFolders(folders);
+        data.setTopLevelFiles(new ArrayList<>(Arrays.asList(MockedUnpackedModels.buildArchivedFile(0, "Empty.txt", -1, new byte[0]))));
+        data.setUnusedFiles(new ArrayList<>(Arrays.asList(MockedUnpackedModels.buildArchivedFile(2, "UNUSED", -1, null))));
+        Path archive = tempDir.resolve("Archive.H2O");
+
+        try (FileChannel channel = open(archive)) {
+            output.write(data, channel);
+        }
+
+        ArchiveInput input = new ArchiveInput(archive);
+        ArchiveIndex index = input.readIndex();
+        FileEntryTable entries = index.getEntries();
+        assertEquals(4, entries.size());
+        assertEquals(1, entries.getCompressionTag(1));
+        assertEquals(0, entries.getCompressionTag(3));
+        assertTrue(entries.isUnused(2));
+        assertEquals("Example\\Child\\Noise.bin", index.getPath(3));
+        assertArrayEquals(text, input.readFileData(entries, 1));
+        assertArrayEquals(noise, input.readFileData(entries, 3));
+        assertArrayEquals(new byte[0], input.readFileData(entries.get(0)));
+        assertTrue(input.verify(extractor).isValid());
+    }
+
+    @Test
+    void test_write_DirectoryRoundTrip()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path source = tempDir.resolve("Source");
+        Files.createDirectories(source.resolve("Data").resolve("Maps"));
+        Files.write(source.resolve("Readme.txt"), repeat("Battle Realms\n", 50));
+        Files.write(source.resolve("Data").resolve("Units.txt"), repeat("Dragon Clan\n", 80));
+        Files.write(source.resolve("Data").resolve("Maps").resolve("Map.txt"), repeat("Serpent Clan\n", 30));
+        Path archive = tempDir.resolve("Archive.H2O");
+
+        try (FileChannel channel = open(archive)) {
+            output.write(source, channel);
+        }
+        Path extracted = tempDir.resolve("Extracted");
+        try (DirectorySink sink = new DirectorySink(extracted)) {
+            new ArchiveInput(archive).extract(extractor, sink);
+        }
+
+        ArchiveIndex index = new ArchiveInput(archive).readIndex();
+        assertEquals(Arrays.asList("Data", "Data\\Maps"), index.getFolderNames());
+        assertArrayEquals(new int[] {-1, 0}, index.getFolderParentIndexes());
+        for (String file : Arrays.asList("Readme.txt", "Data/Units.txt", "Data/Maps/Map.txt")) {
+            assertArrayEquals(Files.readAllBytes(source.resolve(file)), Files.readAllBytes(extracted.resolve(file)));
+        }
+    }
+
+    @Test
+    void test_write_ManyFilesInOrder()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        List<ArchivedFile> files = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            files.add(MockedUnpackedModels.buildArchivedFile(i, "File" + i, -1, repeat("File " + i + ";", i % 17)));
+        }
+        ArchivedData data = new ArchivedData();
+        data.setFolders(new ArchivedFolder[0]);
+        data.setTopLevelFiles(files);
+        data.setUnusedFiles(new ArrayList<>());
+        Path archive = tempDir.resolve("Archive.H2O");
+
+        try (FileChannel channel = open(archive)) {
+            output.write(data, channel);
+        }
+
+        ArchivedData producedData = new ArchiveInput(archive).readContents();
+        for (int i = 0; i < 200; i++) {
+            assertEquals("File" + i, producedData.getTopLevelFiles().get(i).getName());
+            assertArrayEquals(files.get(i).getContents(), producedData.getTopLevelFiles().get(i).getContents());
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    }
+
+    private static byte[] repeat(String text, int times) {
+        return text.repeat(times).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,121 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.kerneweksoftware.h2outility.models.BatchSummary;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchExtractorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void test_extract_EveryArchive() throws IOException, InterruptedException {
+        Path first = write("First.H2O", new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addUnusedFile()
+            .build());
+        Path second = write("Second.h2o", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x03})
+            .build());
+        Path output = directory.resolve("out");
+
+        BatchSummary summary;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            summary = new BatchExtractor(extractor, 2).extract(List.of(first, second), output);
+        }
+
+        assertArrayEquals(new byte[] {0x01, 0x02}, Files.readAllBytes(output.resolve("First/Data/Units.txt")));
+        assertArrayEquals(new byte[] {0x03}, Files.readAllBytes(output.resolve("Second/Readme.txt")));
+        assertEquals(2, summary.getArchives());
+        assertEquals(2, summary.getFiles());
+        assertEquals(3, summary.getBytes());
+        assertTrue(summary.isSuccessful());
+    }
+
+    @Test
+    void test_extract_FailedArchiveDoesNotStopOthers() throws IOException, InterruptedException {
+        Path broken = write("Broken.H2O", new byte[] {0x00, 0x01, 0x02});
+        Path good = write("Good.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x03})
+            .build());
+
+        BatchSummary summary;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            summary = new BatchExtractor(extractor).extract(List.of(broken, good), directory.resolve("out"));
+        }
+
+        assertTrue(Files.exists(directory.resolve("out/Good/Readme.txt")));
+        assertEquals(1, summary.getFailedArchives().size());
+        assertTrue(summary.getFailedArchives().get(0).contains("Broken.H2O"));
+        assertFalse(summary.isSuccessful());
+    }
+
+    @Test
+    void test_extract_ArchivesOfSameNameKeptApart() throws IOException, InterruptedException {
+        Path first = write("games/A/Data.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x01})
+            .build());
+        Path second = write("games/B/Data.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x02})
+            .build());
+        Path third = write("games/B/Maps/data.h2o", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x03})
+            .build());
+        Path other = write("games/A/Sounds.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x04})
+            .build());
+        Path output = directory.resolve("out");
+
+        BatchSummary summary;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            BatchExtractor batch = new BatchExtractor(extractor, 4);
+            batch.setIncremental(true);
+            summary = batch.extract(List.of(first, second, third, other), output);
+        }
+
+        assertArrayEquals(new byte[] {0x01}, Files.readAllBytes(output.resolve("A/Data/Readme.txt")));
+        assertArrayEquals(new byte[] {0x02}, Files.readAllBytes(output.resolve("B/Data/Readme.txt")));
+        assertArrayEquals(new byte[] {0x03}, Files.readAllBytes(output.resolve("B/Maps/data/Readme.txt")));
+        assertArrayEquals(new byte[] {0x04}, Files.readAllBytes(output.resolve("Sounds/Readme.txt")));
+        assertTrue(Files.exists(output.resolve("A/Data.manifest")));
+        assertTrue(Files.exists(output.resolve("B/Data.manifest")));
+        assertEquals(4, summary.getFiles());
+        assertTrue(summary.isSuccessful());
+    }
+
+    @Test
+    void test_findArchives_DirectoriesAndPatterns() throws IOException {
+        byte[] archive = new MockedArchives().build();
+        Path nested = write("games/BattleRealms/Data.H2O", archive);
+        Path other = write("games/WarOfTheRing/Maps.h2o", archive);
+        write("games/Readme.txt", new byte[0]);
+        Path plain = write("Single.H2O", archive);
+
+        List<Path> found = BatchExtractor.findArchives(List.of(
+            directory.resolve("games").toString(),
+            directory.toString() + "/games/**/Data.H2O",
+            plain.toString()));
+
+        assertEquals(List.of(nested, other, plain), found);
+    }
+
+    private Path write(String name, byte[] contents) throws IOException {
+        Path path = directory.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, contents);
+    }
+}
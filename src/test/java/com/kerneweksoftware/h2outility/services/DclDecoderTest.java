@@ -0,0 +1,115 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+import org.junit.jupiter.api.Test;
+
+public class DclDecoderTest {
+
+    private static final byte[] IMPLODED_AIAI = {0x00, 0x04, (byte) 0x82, 0x24, 0x25, (byte) 0x8F, (byte) 0x80, 0x7F};
+
+    private static final byte[] IMPLODED_ABC = {
+        0x01, 0x04, 0x62, 0x54, 0x51, 0x5D, 0x3C, (byte) 0x9D, 0x61, 0x06, (byte) 0xFC, 0x03
+    };
+
+    @Test
+    void test_decode_BinaryLiteralsWithMatches() throws DecompressionException {
+        byte[] output = new byte[13];
+
+        int written = DclDecoder.decode(ByteBuffer.wrap(IMPLODED_AIAI), output);
+
+        assertEquals(13, written);
+        assertEquals("AIAIAIAIAIAIA", new String(output, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void test_decode_CodedLiteralsWithMatch() throws DecompressionException {
+        byte[] output = new byte[13];
+
+        int written = DclDecoder.decode(ByteBuffer.wrap(IMPLODED_ABC), output);
+
+        assertEquals(13, written);
+        assertArrayEquals("ABCABCABC dcl".getBytes(StandardCharsets.US_ASCII), output);
+    }
+
+    @Test
+    void test_decode_LeavesBufferPosition() throws DecompressionException {
+        ByteBuffer input = ByteBuffer.wrap(IMPLODED_AIAI);
+
+        DclDecoder.decode(input, new byte[13]);
+
+        assertEquals(0, input.position());
+    }
+
+    @Test
+    void test_decode_StopsAtEndOfStream() throws DecompressionException {
+        byte[] output = new byte[20];
+
+        int written = DclDecoder.decode(ByteBuffer.wrap(IMPLODED_AIAI), output);
+
+        assertEquals(13, written);
+    }
+
+    @Test
+    void test_decode_OutputTooSmall() {
+        byte[] output = new byte[12];
+
+        assertThrows(DecompressionException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(IMPLODED_AIAI), output);
+        });
+    }
+
+    @Test
+    void test_decode_LiteralPastExpectedSize() {
+        byte[] output = new byte[1];
+
+        assertThrows(DclDecoder.OverrunException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(IMPLODED_AIAI), output);
+        });
+    }
+
+    @Test
+    void test_decode_MatchPastExpectedSize() {
+        byte[] output = new byte[12];
+
+        assertThrows(DclDecoder.OverrunException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(IMPLODED_AIAI), output);
+        });
+    }
+
+    @Test
+    void test_decode_MissingEndOfStream() {
+        // Every byte of the output is decoded before the data runs out, but the marker is cut off
+        byte[] input = Arrays.copyOf(IMPLODED_AIAI, IMPLODED_AIAI.length - 1);
+
+        assertThrows(DecompressionException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(input), new byte[13]);
+        });
+    }
+
+    @Test
+    void test_decode_InvalidHeader() {
+        byte[] input = {0x00, 0x09, 0x00, 0x00};
+
+        assertThrows(DecompressionException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(input), new byte[4]);
+        });
+    }
+
+    @Test
+    void test_decode_TruncatedData() {
+        byte[] input = {0x00, 0x04, (byte) 0x82, 0x24};
+
+        assertThrows(DecompressionException.class, () -> {
+            DclDecoder.decode(ByteBuffer.wrap(input), new byte[13]);
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+import org.junit.jupiter.api.Test;
+
+public class DclEncoderTest {
+
+    DclEncoder encoder = new DclEncoder();
+
+    @Test
+    void test_encode_RoundTripsRepetitiveData() throws DecompressionException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("Battle Realms ").append(i % 37).append('\n');
+        }
+        byte[] input = sb.toString().getBytes(StandardCharsets.US_ASCII);
+
+        byte[] compressed = encoder.encode(ByteBuffer.wrap(input));
+
+        assertTrue(compressed.length < input.length / 2);
+        assertArrayEquals(input, decode(compressed, input.length));
+    }
+
+    @Test
+    void test_encode_RoundTripsRandomData() throws DecompressionException {
+        byte[] input = new byte[10000];
+        new Random(6).nextBytes(input);
+
+        byte[] compressed = encoder.encode(ByteBuffer.wrap(input));
+
+        assertArrayEquals(input, decode(compressed, input.length));
+    }
+
+    @Test
+    void test_encode_RoundTripsLongRuns() throws DecompressionException {
+        byte[] input = new byte[5000];
+        for (int i = 2000; i < input.length; i++) {
+            input[i] = (byte) (i / 700);
+        }
+
+        byte[] compressed = encoder.encode(ByteBuffer.wrap(input));
+
+        assertArrayEquals(input, decode(compressed, input.length));
+    }
+
+    @Test
+    void test_encode_ReusedAcrossCalls() throws DecompressionException {
+        byte[] first = "AIAIAIAIAIAIA".getBytes(StandardCharsets.US_ASCII);
+        byte[] second = "Liquid Entertainment".getBytes(StandardCharsets.US_ASCII);
+
+        encoder.encode(ByteBuffer.wrap(first));
+        byte[] compressed = encoder.encode(ByteBuffer.wrap(second));
+
+        assertArrayEquals(second, decode(compressed, second.length));
+    }
+
+    @Test
+    void test_encode_EmptyInput() throws DecompressionException {
+        byte[] compressed = encoder.encode(ByteBuffer.allocate(0));
+
+        assertEquals(0, DclDecoder.decode(ByteBuffer.wrap(compressed), new byte[4]));
+    }
+
+    @Test
+    void test_encode_LargerDictionary() throws DecompressionException {
+        byte[] input = new byte[20000];
+        Random random = new Random(4);
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (i < 3000 ? random.nextInt(256) : input[i - 3000]);
+        }
+
+        byte[] compressed = new DclEncoder(6).encode(ByteBuffer.wrap(input));
+
+        assertTrue(compressed.length < input.length / 2);
+        assertArrayEquals(input, decode(compressed, input.length));
+    }
+
+    private static byte[] decode(byte[] compressed, int rawSize) throws DecompressionException {
+        byte[] output = new byte[rawSize];
+        assertEquals(rawSize, DclDecoder.decode(ByteBuffer.wrap(compressed), output));
+        return output;
+    }
+}
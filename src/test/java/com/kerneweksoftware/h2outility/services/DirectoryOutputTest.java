@@ -0,0 +1,47 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFile;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedFolder;
+import com.kerneweksoftware.h2outility.testutils.MockedUnpackedModels;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectoryOutputTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void test_write_NestedFolders() throws IOException {
+        ArchivedFolder[] folders = new ArchivedFolder[3];
+        folders[0] = MockedUnpackedModels.buildArchivedFolder("Example", -1);
+        folders[1] = MockedUnpackedModels.buildArchivedFolder("Example\\Child", 0,
+            Arrays.asList(MockedUnpackedModels.buildArchivedFile(0, "Child.txt", 1, new byte[] {0x01})));
+        folders[2] = MockedUnpackedModels.buildArchivedFolder("Example\\Child\\Grand Child", 1,
+            Arrays.asList(MockedUnpackedModels.buildArchivedFile(1, "Grand.txt", 2, new byte[] {0x02})));
+        ArchivedData data = new ArchivedData();
+        data.setName("Archive");
+        data.setFolders(folders);
+        data.setTopLevelFiles(Arrays.asList(MockedUnpackedModels.buildArchivedFile(2, "Top.txt", -1, new byte[] {0x03})));
+        data.setUnusedFiles(new ArrayList<ArchivedFile>());
+        Path root = tempDir.resolve("Archive");
+
+        new DirectoryOutput(data, root, 2).write();
+
+        assertTrue(Files.isDirectory(root.resolve("Example")));
+        assertArrayEquals(new byte[] {0x01}, Files.readAllBytes(root.resolve("Example/Child/Child.txt")));
+        assertArrayEquals(new byte[] {0x02}, Files.readAllBytes(root.resolve("Example/Child/Grand Child/Grand.txt")));
+        assertArrayEquals(new byte[] {0x03}, Files.readAllBytes(root.resolve("Top.txt")));
+    }
+}
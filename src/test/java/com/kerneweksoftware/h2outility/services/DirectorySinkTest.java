@@ -0,0 +1,170 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectorySinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    ParallelExtractor extractor;
+
+    @BeforeEach
+    void setup() {
+        extractor = new ParallelExtractor(2, 4);
+    }
+
+    @AfterEach
+    void teardown() {
+        extractor.close();
+    }
+
+    @Test
+    void test_extract_WritesFolderHierarchy()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Example", -1)
+            .addFolder("Example\\Child", 0)
+            .addFile(-1, "Top.txt", new byte[] {0x01})
+            .addUnusedFile()
+            .addFile(1, "Deep.txt", new byte[] {0x02, 0x03})
+            .build());
+        Path root = tempDir.resolve("Archive");
+
+        try (DirectorySink sink = new DirectorySink(root)) {
+            input.extract(extractor, sink);
+        }
+
+        assertArrayEquals(new byte[] {0x01}, Files.readAllBytes(root.resolve("Top.txt")));
+        assertArrayEquals(new byte[] {0x02, 0x03}, Files.readAllBytes(root.resolve("Example").resolve("Child").resolve("Deep.txt")));
+        assertEquals(2, Files.list(root).count());
+    }
+
+    @Test
+    void test_extract_RefusesPathsOutsideRoot() {
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("..\\Escaped", -1)
+            .addFile(0, "File.txt", new byte[] {0x01})
+            .build());
+        Path root = tempDir.resolve("Archive");
+
+        assertThrows(IOException.class, () -> {
+            try (DirectorySink sink = new DirectorySink(root)) {
+                input.extract(extractor, sink);
+            }
+        });
+    }
+
+    @Test
+    void test_extract_TransfersStoredFilesFromArchiveFile()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path archive = Files.write(tempDir.resolve("Archive.H2O"), new MockedArchives()
+            .addFolder("Example", -1)
+            .addFile(-1, "Top.txt", new byte[] {0x01})
+            .addUnusedFile()
+            .addFile(0, "Deep.txt", new byte[] {0x02, 0x03})
+            .build());
+        Path root = tempDir.resolve("Archive");
+        AtomicInteger transfers = new AtomicInteger();
+
+        try (DirectorySink sink = new DirectorySink(root) {
+            @Override
+            public boolean transfer(ArchiveIndex index, int entryIndex, FileChannel archive, long offset)
+                    throws IOException {
+                transfers.incrementAndGet();
+                return super.transfer(index, entryIndex, archive, offset);
+            }
+        }) {
+            new ArchiveInput(archive).extract(extractor, sink);
+        }
+
+        assertEquals(2, transfers.get());
+        assertArrayEquals(new byte[] {0x01}, Files.readAllBytes(root.resolve("Top.txt")));
+        assertArrayEquals(new byte[] {0x02, 0x03}, Files.readAllBytes(root.resolve("Example").resolve("Deep.txt")));
+    }
+
+    @Test
+    void test_extract_IncrementalSkipsUnchangedFiles()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path root = tempDir.resolve("Archive");
+        extractIncremental(root, new byte[] {0x01}, new byte[] {0x02, 0x03});
+        FileTime untouched = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(root.resolve("Top.txt"), untouched);
+
+        DirectorySink sink = extractIncremental(root, new byte[] {0x01}, new byte[] {0x04, 0x05});
+
+        assertEquals(untouched, Files.getLastModifiedTime(root.resolve("Top.txt")));
+        assertArrayEquals(new byte[] {0x04, 0x05}, Files.readAllBytes(root.resolve("Example").resolve("Deep.txt")));
+        assertTrue(Files.exists(sink.getManifestPath()));
+    }
+
+    @Test
+    void test_extract_IncrementalRewritesEditedFiles()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path root = tempDir.resolve("Archive");
+        extractIncremental(root, new byte[] {0x01}, new byte[] {0x02, 0x03});
+        Files.write(root.resolve("Top.txt"), new byte[] {0x09});
+        Files.write(root.resolve("Example").resolve("Deep.txt"), new byte[] {0x02});
+
+        extractIncremental(root, new byte[] {0x01}, new byte[] {0x02, 0x03});
+
+        assertArrayEquals(new byte[] {0x01}, Files.readAllBytes(root.resolve("Top.txt")));
+        assertArrayEquals(new byte[] {0x02, 0x03}, Files.readAllBytes(root.resolve("Example").resolve("Deep.txt")));
+    }
+
+    @Test
+    void test_extract_IncrementalWithFilterKeepsRecordsOfOtherFiles()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        Path root = tempDir.resolve("Archive");
+        DirectorySink sink = extractIncremental(root, new byte[] {0x01}, new byte[] {0x02, 0x03});
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Example", -1)
+            .addFile(-1, "Top.txt", new byte[] {0x04})
+            .addFile(0, "Deep.txt", new byte[] {0x02, 0x03})
+            .build());
+        input.setFilter(new EntryFilter().include("Top.txt"));
+
+        try (DirectorySink filtered = new DirectorySink(root, true)) {
+            input.extract(extractor, filtered);
+        }
+
+        List<String> manifest = Files.readAllLines(sink.getManifestPath());
+        assertEquals(2, manifest.size());
+        assertTrue(manifest.get(0).endsWith("\tExample/Deep.txt"));
+        assertTrue(manifest.get(1).endsWith("\tTop.txt"));
+    }
+
+    private DirectorySink extractIncremental(Path root, byte[] top, byte[] deep)
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Example", -1)
+            .addFile(-1, "Top.txt", top)
+            .addFile(0, "Deep.txt", deep)
+            .build());
+        try (DirectorySink sink = new DirectorySink(root, true)) {
+            input.extract(extractor, sink);
+            return sink;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+
+import org.junit.jupiter.api.Test;
+
+public class EntryCacheTest {
+
+    Object archive = new Object();
+    AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void test_get_HitAfterMiss() throws DecompressionException {
+        EntryCache cache = new EntryCache(100, 1);
+
+        ByteBuffer first = cache.get(archive, 1, () -> load(10));
+        ByteBuffer second = cache.get(archive, 1, () -> load(10));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(10, second.remaining());
+        assertEquals(first, second);
+        assertEquals(10, cache.getBytes());
+    }
+
+    @Test
+    void test_get_EvictsLeastRecentlyUsedByBytes() throws DecompressionException {
+        EntryCache cache = new EntryCache(25, 1);
+        cache.get(archive, 1, () -> load(10));
+        cache.get(archive, 2, () -> load(10));
+        cache.get(archive, 1, () -> load(10));
+
+        cache.get(archive, 3, () -> load(10));
+        cache.get(archive, 1, () -> load(10));
+        cache.get(archive, 2, () -> load(10));
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(20, cache.getBytes());
+    }
+
+    @Test
+    void test_get_TooLargeNotHeld() throws DecompressionException {
+        EntryCache cache = new EntryCache(100, 4);
+
+        cache.get(archive, 1, () -> load(30));
+        cache.get(archive, 1, () -> load(30));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void test_get_ArchivesKeptApart() throws DecompressionException {
+        EntryCache cache = new EntryCache(100, 1);
+        Object otherArchive = new Object();
+        cache.get(archive, 1, () -> load(10));
+
+        cache.get(otherArchive, 1, () -> load(20));
+        cache.invalidate(archive);
+
+        assertEquals(2, loads.get());
+        assertEquals(20, cache.getBytes());
+    }
+
+    @Test
+    void test_get_ContentsReadOnly() throws DecompressionException {
+        EntryCache cache = new EntryCache(100, 1);
+
+        assertFalse(cache.get(archive, 1, () -> load(10)).hasArray());
+    }
+
+    private ByteBuffer load(int size) {
+        loads.incrementAndGet();
+        return ByteBuffer.wrap(new byte[size]);
+    }
+}
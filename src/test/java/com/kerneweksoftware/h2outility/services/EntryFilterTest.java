@@ -0,0 +1,107 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EntryFilterTest {
+
+    private ArchiveIndex index;
+
+    @BeforeEach
+    void setUp() throws IncorrectFileTypeException, DecompressionException {
+        index = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFolder("Data\\Units", 0)
+            .addFolder("Maps", -1)
+            .addFile(1, "Knight.tga", new byte[] {0x01, 0x02, 0x03})
+            .addFile(1, "Knight.txt", new byte[] {0x04})
+            .addFile(0, "Sky.TGA", new byte[] {0x05})
+            .addFile(2, "Island.tga", new byte[] {0x06, 0x07})
+            .addUnusedFile()
+            .addFile(-1, "Readme.txt", new byte[] {0x08})
+            .build()).readIndex();
+    }
+
+    @Test
+    void test_select_GlobIncludeAndExclude() {
+        assertEquals(bits(0, 2), new EntryFilter().include("data/**.tga").select(index));
+        assertEquals(bits(0), new EntryFilter().include("data/**/*.tga").select(index));
+        assertEquals(bits(2), new EntryFilter().include("Data/*.tga").select(index));
+        assertEquals(bits(0, 1, 2, 3, 5), new EntryFilter().select(index));
+        assertEquals(bits(1, 5), new EntryFilter().exclude("**.tga").select(index));
+    }
+
+    @Test
+    void test_select_Regex() {
+        assertEquals(bits(0, 1), new EntryFilter().includeRegex("Knight").select(index));
+        assertEquals(bits(0, 2, 3), new EntryFilter().includeRegex("(?i)\\.tga$").select(index));
+        assertEquals(bits(2, 3, 5), new EntryFilter().excludeRegex("^Data/Units/").select(index));
+    }
+
+    @Test
+    void test_select_FolderSubtree() {
+        assertEquals(bits(0, 1, 2), new EntryFilter().folder("data").select(index));
+        assertEquals(bits(0, 1), new EntryFilter().folder("Data/Units/").select(index));
+        assertEquals(bits(0, 1, 3), new EntryFilter().folder("Data\\Units").folder("Maps").select(index));
+    }
+
+    @Test
+    void test_select_ExtensionAndSize() {
+        assertEquals(bits(0, 2, 3), new EntryFilter().extension("TGA").select(index));
+        assertEquals(bits(0, 3), new EntryFilter().extension(".tga").sizeRange(2, Long.MAX_VALUE).select(index));
+        assertEquals(bits(1, 2, 5), new EntryFilter().sizeRange(0, 1).select(index));
+        assertTrue(new EntryFilter().isEmpty());
+    }
+
+    @Test
+    void test_readContents_FilesLeftOutAreNeverRead()
+            throws IncorrectFileTypeException, DecompressionException, InterruptedException {
+        byte[] built = new MockedArchives()
+            .addFile(-1, "Broken.txt", new byte[] {0x01, 0x02})
+            .addFile(-1, "Wanted.tga", new byte[] {0x03})
+            .build();
+        // Reading the first file's data would fail
+        ByteBuffer.wrap(built).order(ByteOrder.LITTLE_ENDIAN).putLong(37 + 24, built.length - 1);
+        ArchiveInput input = new ArchiveInput(built);
+        input.setFilter(new EntryFilter().extension("tga"));
+
+        ArchivedData data;
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024)) {
+            data = input.readContents(extractor);
+        }
+
+        assertEquals(1, data.getTopLevelFiles().size());
+        assertEquals("Wanted.tga", data.getTopLevelFiles().get(0).getName());
+        assertArrayEquals(new byte[] {0x03}, data.getTopLevelFiles().get(0).getContents());
+        assertNull(input.readContents().getUnusedFiles().get(0).getContents());
+    }
+
+    @Test
+    void test_globToRegex() {
+        assertEquals("[^/]*\\Q.\\E\\Qt\\E\\Qg\\E\\Qa\\E", EntryFilter.globToRegex("*.tga"));
+        assertTrue("Data/Sky.tga".matches(EntryFilter.globToRegex("Data/{Sky,Sea}.t?a")));
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int i : indexes) {
+            bits.set(i);
+        }
+        return bits;
+    }
+}
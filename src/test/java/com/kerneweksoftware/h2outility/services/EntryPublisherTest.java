@@ -0,0 +1,249 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.StreamedEntry;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EntryPublisherTest {
+
+    ManualExecutor executor;
+    RecordingSubscriber subscriber;
+
+    @BeforeEach
+    void setup() {
+        executor = new ManualExecutor();
+        subscriber = new RecordingSubscriber();
+    }
+
+    @Test
+    void test_publish_AllFilesInEntryOrder()
+            throws InterruptedException, IncorrectFileTypeException, DecompressionException {
+        try (ParallelExtractor extractor = new ParallelExtractor(4, 8)) {
+            input(20).publish(extractor).subscribe(subscriber);
+            subscriber.subscription.request(Long.MAX_VALUE);
+
+            assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(18, subscriber.entries.size());
+        int previous = -1;
+        for (StreamedEntry entry : subscriber.entries) {
+            int i = entry.getEntryIndex();
+            assertTrue(i > previous);
+            previous = i;
+            assertEquals("File" + i, entry.getPath());
+            assertArrayEquals(new byte[] {(byte) i, (byte) i, (byte) i}, ArchiveInput.toArray(entry.getContents()));
+            assertNull(entry.getError());
+        }
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    void test_publish_DecodesNoMoreThanRequested() throws IncorrectFileTypeException, DecompressionException {
+        input(20).publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        assertEquals(0, executor.tasks.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(2, subscriber.entries.size());
+        assertEquals(0, executor.tasks.size());
+
+        subscriber.subscription.request(3);
+        assertEquals(3, executor.tasks.size());
+    }
+
+    @Test
+    void test_publish_DeliveredInOrderWhenFinishedOutOfOrder()
+            throws IncorrectFileTypeException, DecompressionException {
+        input(5).publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        subscriber.subscription.request(3);
+
+        Runnable first = executor.tasks.poll();
+        executor.runAll();
+        assertEquals(0, subscriber.entries.size());
+
+        first.run();
+        assertEquals(List.of(1, 2, 3), subscriber.entries.stream().map(StreamedEntry::getEntryIndex).toList());
+    }
+
+    @Test
+    void test_publish_BoundedByBytesInFlight() throws IncorrectFileTypeException, DecompressionException {
+        input(20).publish(new ParallelExtractor(executor, 4)).subscribe(subscriber);
+
+        subscriber.subscription.request(10);
+        assertEquals(2, executor.tasks.size());
+
+        executor.tasks.poll().run();
+        assertEquals(1, subscriber.entries.size());
+        assertEquals(2, executor.tasks.size());
+    }
+
+    @Test
+    void test_publish_FailedFileDeliveredWithError() throws IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "Good", new byte[] {0x01})
+            .addFile(-1, "Bad", new byte[] {0x02})
+            .addFile(-1, "Also good", new byte[] {0x03})
+            .build();
+        ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN).putLong(37 + 40 + 24, archive.length * 2L);
+
+        new ArchiveInput(archive).publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        subscriber.subscription.request(3);
+        executor.runAll();
+
+        assertEquals(3, subscriber.entries.size());
+        assertNull(subscriber.entries.get(1).getContents());
+        assertNotNull(subscriber.entries.get(1).getError());
+        assertArrayEquals(new byte[] {0x03}, ArchiveInput.toArray(subscriber.entries.get(2).getContents()));
+        assertEquals(0, subscriber.completed.getCount());
+    }
+
+    @Test
+    void test_publish_WithFilter() throws IncorrectFileTypeException, DecompressionException {
+        ArchiveInput input = input(20);
+        input.setFilter(new EntryFilter().include("File1*"));
+
+        input.publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        executor.runAll();
+
+        assertEquals(List.of(1, 11, 12, 13, 14, 15, 16, 17, 18, 19),
+            subscriber.entries.stream().map(StreamedEntry::getEntryIndex).toList());
+        assertEquals(0, subscriber.completed.getCount());
+    }
+
+    @Test
+    void test_publish_CancelStopsDecoding() throws IncorrectFileTypeException, DecompressionException {
+        input(20).publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        subscriber.subscription.request(2);
+        subscriber.subscription.cancel();
+        executor.runAll();
+        subscriber.subscription.request(5);
+
+        assertEquals(0, subscriber.entries.size());
+        assertEquals(0, executor.tasks.size());
+        assertEquals(1, subscriber.completed.getCount());
+    }
+
+    @Test
+    void test_publish_NonPositiveRequestSignalsError() throws IncorrectFileTypeException, DecompressionException {
+        input(20).publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void test_publish_EmptyArchiveCompletesWithoutRequest()
+            throws IncorrectFileTypeException, DecompressionException {
+        new ArchiveInput(new MockedArchives().addUnusedFile().build())
+            .publish(new ParallelExtractor(executor, 1024)).subscribe(subscriber);
+
+        assertEquals(0, subscriber.completed.getCount());
+        assertFalse(subscriber.entries.iterator().hasNext());
+    }
+
+    private static ArchiveInput input(int files) {
+        MockedArchives archive = new MockedArchives();
+        for (int i = 0; i < files; i++) {
+            if (i % 10 == 0) {
+                archive.addUnusedFile();
+            } else {
+                archive.addFile(-1, "File" + i, new byte[] {(byte) i, (byte) i, (byte) i});
+            }
+        }
+        return new ArchiveInput(archive.build());
+    }
+
+    /** Holds tasks until the test runs them, so decoding can be watched step by step. */
+    static class ManualExecutor extends AbstractExecutorService {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    static class RecordingSubscriber implements Flow.Subscriber<StreamedEntry> {
+        final List<StreamedEntry> entries = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(StreamedEntry item) {
+            entries.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IndexCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void test_readIndex_CachedIndexMatchesParsed()
+            throws IOException, IncorrectFileTypeException, DecompressionException {
+        Path archive = write("Data.H2O", new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02})
+            .addUnusedFile()
+            .addFile(-1, "Readme.txt", new byte[] {0x03})
+            .build());
+        IndexCache cache = new IndexCache();
+        ArchiveIndex parsed = open(archive, cache).readIndex();
+
+        assertTrue(Files.exists(directory.resolve("Data.H2O.idx")));
+        ArchiveIndex cached = cache.read(archive, ByteBuffer.wrap(Files.readAllBytes(archive)));
+        assertNotNull(cached);
+        assertEquals(parsed.getHeader(), cached.getHeader());
+        assertEquals(parsed.getFolderNames(), cached.getFolderNames());
+        assertEquals(parsed.getFileNames(), cached.getFileNames());
+        assertArrayEquals(parsed.getFolderParentIndexes(), cached.getFolderParentIndexes());
+        assertArrayEquals(parsed.getEntries().toArray(), cached.getEntries().toArray());
+        assertEquals(parsed.getNamesOffset(), cached.getNamesOffset());
+        assertEquals(parsed.getDataOffset(), cached.getDataOffset());
+        assertEquals("Data\\Units.txt", cached.getPath(0));
+        assertArrayEquals(new byte[] {0x03}, open(archive, cache).readFileData(cached.getEntries(), 2));
+    }
+
+    @Test
+    void test_readIndex_PathHashesFindFiles() throws IOException, IncorrectFileTypeException, DecompressionException {
+        Path archive = write("Data.H2O", new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01})
+            .addFile(-1, "Readme.txt", new byte[] {0x02})
+            .build());
+        IndexCache cache = new IndexCache(directory.resolve("cache"));
+        open(archive, cache).readIndex();
+        ArchiveIndex cached = open(archive, cache).readIndex();
+
+        assertNotNull(cached.getPathHashes());
+        assertTrue(Files.exists(cache.getCachePath(archive)));
+        PathIndex paths = new PathIndex(List.of(cached));
+        assertEquals(0, PathIndex.entryIndex(paths.find("data/UNITS.TXT")));
+        assertEquals(1, PathIndex.entryIndex(paths.find("Readme.txt")));
+        assertEquals(-1, paths.find("Missing.txt"));
+    }
+
+    @Test
+    void test_write_ConcurrentWritersOfSameArchive() throws Exception {
+        Path archive = write("Data.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x01})
+            .build());
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(archive));
+        IndexCache cache = new IndexCache();
+        ArchiveIndex index = new ArchiveInput(Files.readAllBytes(archive)).readIndex();
+
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(writers.submit(() -> {
+                    cache.write(archive, contents.duplicate(), index);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+
+        assertNotNull(cache.read(archive, contents.duplicate()));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("Data.H2O", "Data.H2O.idx"),
+                files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void test_read_ChangedArchiveIgnored() throws IOException, IncorrectFileTypeException, DecompressionException {
+        Path archive = write("Data.H2O", new MockedArchives()
+            .addFile(-1, "Old.txt", new byte[] {0x01})
+            .build());
+        IndexCache cache = new IndexCache();
+        open(archive, cache).readIndex();
+
+        // Same size and modified time, so only the checksum tells them apart
+        FileTime modified = Files.getLastModifiedTime(archive);
+        write("Data.H2O", new MockedArchives()
+            .addFile(-1, "New.txt", new byte[] {0x02})
+            .build());
+        Files.setLastModifiedTime(archive, modified);
+
+        assertNull(cache.read(archive, ByteBuffer.wrap(Files.readAllBytes(archive))));
+        assertEquals("New.txt", open(archive, cache).readIndex().getPath(0));
+        assertEquals("New.txt", open(archive, cache).readIndex().getPath(0));
+    }
+
+    @Test
+    void test_read_MalformedCacheIgnored() throws IOException, IncorrectFileTypeException, DecompressionException {
+        Path archive = write("Data.H2O", new MockedArchives()
+            .addFile(-1, "Readme.txt", new byte[] {0x01})
+            .build());
+        IndexCache cache = new IndexCache();
+        Files.write(cache.getCachePath(archive), new byte[] {0x00, 0x00, 0x00, 0x08, 'H', '2', 'O'});
+
+        assertNull(cache.read(archive, ByteBuffer.wrap(Files.readAllBytes(archive))));
+        assertEquals("Readme.txt", open(archive, cache).readIndex().getPath(0));
+        assertNotNull(cache.read(archive, ByteBuffer.wrap(Files.readAllBytes(archive))));
+    }
+
+    private static ArchiveInput open(Path archive, IndexCache cache) throws IOException {
+        ArchiveInput input = new ArchiveInput(archive);
+        input.setIndexCache(cache);
+        return input;
+    }
+
+    private Path write(String name, byte[] contents) throws IOException {
+        return Files.write(directory.resolve(name), contents);
+    }
+}
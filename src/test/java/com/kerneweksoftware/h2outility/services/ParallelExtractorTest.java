@@ -0,0 +1,107 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.models.ArchiveIndex;
+import com.kerneweksoftware.h2outility.models.unpacked.ArchivedData;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelExtractorTest {
+
+    ParallelExtractor extractor;
+    ArchiveInput input;
+
+    @BeforeEach
+    void setup() {
+        MockedArchives archive = new MockedArchives();
+        for (int i = 0; i < 50; i++) {
+            if (i % 10 == 0) {
+                archive.addUnusedFile();
+            } else {
+                archive.addFile(-1, "File" + i, new byte[] {(byte) i, (byte) i, (byte) i});
+            }
+        }
+        input = new ArchiveInput(archive.build());
+        extractor = new ParallelExtractor(4, 8);
+    }
+
+    @AfterEach
+    void teardown() {
+        extractor.close();
+    }
+
+    @Test
+    void test_extract_AllFilesHandedToConsumer()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        ArchiveIndex index = input.readIndex();
+        AtomicReferenceArray<byte[]> received = new AtomicReferenceArray<>(index.getEntries().size());
+
+        extractor.extract(input, index, (entryIndex, contents) -> received.set(entryIndex, ArchiveInput.toArray(contents)));
+
+        for (int i = 0; i < received.length(); i++) {
+            if (i % 10 == 0) {
+                assertNull(received.get(i));
+            } else {
+                assertArrayEquals(new byte[] {(byte) i, (byte) i, (byte) i}, received.get(i));
+            }
+        }
+    }
+
+    @Test
+    void test_extract_ConsumerFailureStopsExtraction() throws IncorrectFileTypeException, DecompressionException {
+        ArchiveIndex index = input.readIndex();
+
+        assertThrows(IOException.class, () -> {
+            extractor.extract(input, index, (entryIndex, contents) -> {
+                throw new IOException("Disk full");
+            });
+        });
+    }
+
+    @Test
+    void test_extract_FailureHandlerErrorStopsExtraction() throws IncorrectFileTypeException, DecompressionException {
+        // A compressed entry whose data is not a valid stream, so it fails on the pool
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "Broken", new byte[] {0x02, 0, 0, 0, 0x05, 0, 0, 0, 0, 0, 0, 0, 0x07, 0x07})
+            .build();
+        ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN).putInt(37, 1);
+        ArchiveInput broken = new ArchiveInput(archive);
+        ArchiveIndex index = broken.readIndex();
+
+        assertThrows(IOException.class, () -> {
+            extractor.extract(broken, index, new ParallelExtractor.EntryConsumer() {
+                @Override
+                public void accept(int entryIndex, ByteBuffer contents) {
+                }
+
+                @Override
+                public void failed(int entryIndex, DecompressionException e) {
+                    throw new IllegalStateException("Report could not be written");
+                }
+            });
+        });
+    }
+
+    @Test
+    void test_readContents_WithExtractor()
+            throws InterruptedException, IncorrectFileTypeException, DecompressionException {
+        ArchivedData producedData = input.readContents(extractor);
+
+        assertEquals(45, producedData.getTopLevelFiles().size());
+        assertEquals(5, producedData.getUnusedFiles().size());
+    }
+}
@@ -0,0 +1,82 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+
+public class TarSinkTest {
+
+    @Test
+    void test_extract_WritesUstarEntries()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x01, 0x02, 0x03})
+            .build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ParallelExtractor extractor = new ParallelExtractor(1, 1024); TarSink sink = new TarSink(out)) {
+            input.extract(extractor, sink);
+        }
+
+        byte[] tar = out.toByteArray();
+        assertEquals(512 * 5, tar.length);
+        assertEquals("Data/", name(tar, 0));
+        assertEquals('5', tar[156]);
+        assertEquals("Data/Units.txt", name(tar, 512));
+        assertEquals(3, Long.parseLong(field(tar, 512 + 124, 11), 8));
+        assertEquals(checksum(tar, 512), Long.parseLong(field(tar, 512 + 148, 6), 8));
+        assertArrayEquals(new byte[] {0x01, 0x02, 0x03}, Arrays.copyOfRange(tar, 1024, 1027));
+    }
+
+    @Test
+    void test_extract_LongPathsUsePaxHeader()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        String folder = "F".repeat(120);
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder(folder, -1)
+            .build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (ParallelExtractor extractor = new ParallelExtractor(1, 1024); TarSink sink = new TarSink(out)) {
+            input.extract(extractor, sink);
+        }
+
+        byte[] tar = out.toByteArray();
+        assertEquals('x', tar[156]);
+        String record = String.format("%d path=%s/\n", 131, folder);
+        int size = (int) Long.parseLong(field(tar, 124, 11), 8);
+        assertEquals(record, new String(tar, 512, size, StandardCharsets.UTF_8));
+        assertEquals('5', tar[1024 + 156]);
+    }
+
+    private static String name(byte[] tar, int offset) {
+        int end = offset;
+        while (tar[end] != 0) {
+            end++;
+        }
+        return new String(tar, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String field(byte[] tar, int offset, int length) {
+        return new String(tar, offset, length, StandardCharsets.US_ASCII);
+    }
+
+    private static long checksum(byte[] tar, int offset) {
+        long sum = 0;
+        for (int i = 0; i < 512; i++) {
+            sum += (i >= 148 && i < 156) ? ' ' : tar[offset + i] & 0xFF;
+        }
+        return sum;
+    }
+}
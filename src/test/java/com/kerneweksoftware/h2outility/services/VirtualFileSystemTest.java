@@ -0,0 +1,111 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VirtualFileSystemTest {
+
+    VirtualFileSystem fileSystem;
+
+    @BeforeEach
+    void setup() throws IncorrectFileTypeException, DecompressionException {
+        ArchiveInput patch = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFile(0, "Units.txt", new byte[] {0x02})
+            .build());
+        ArchiveInput base = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFolder("Data\\Maps", 0)
+            .addFile(0, "Units.txt", new byte[] {0x01})
+            .addUnusedFile()
+            .addFile(1, "Map.txt", new byte[] {0x03})
+            .addFile(-1, "Readme.txt", new byte[] {0x04})
+            .build());
+        fileSystem = new VirtualFileSystem(Arrays.asList(patch, base));
+    }
+
+    @Test
+    void test_readAllBytes_EarlierArchiveOverrides() throws IOException, DecompressionException {
+        assertArrayEquals(new byte[] {0x02}, fileSystem.readAllBytes("Data\\Units.txt"));
+        assertEquals(3, fileSystem.size());
+    }
+
+    @Test
+    void test_readAllBytes_CaseAndSeparatorInsensitive() throws IOException, DecompressionException {
+        assertArrayEquals(new byte[] {0x03}, fileSystem.readAllBytes("data/MAPS\\map.TXT"));
+        assertArrayEquals(new byte[] {0x04}, fileSystem.readAllBytes("readme.txt"));
+    }
+
+    @Test
+    void test_readAllBytes_MissingFile() {
+        assertFalse(fileSystem.exists("Data\\Missing.txt"));
+        assertFalse(fileSystem.exists("Data"));
+        assertFalse(fileSystem.exists("Data\\Maps"));
+        assertThrows(NoSuchFileException.class, () -> fileSystem.readAllBytes("Data\\Missing.txt"));
+    }
+
+    @Test
+    void test_readAllBytes_Cached() throws IOException, IncorrectFileTypeException, DecompressionException {
+        // DCL data for "AIAIAIAIAIAIA" behind its compression header
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "Imploded.txt", new byte[] {
+                0x08, 0, 0, 0, 0x0D, 0, 0, 0, 0, 0, 0, 0,
+                0x00, 0x04, (byte) 0x82, 0x24, 0x25, (byte) 0x8F, (byte) 0x80, 0x7F
+            })
+            .addFile(-1, "Stored.txt", new byte[] {0x01})
+            .build();
+        ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN).putInt(37, 1);
+        fileSystem = new VirtualFileSystem(Arrays.asList(new ArchiveInput(archive)));
+        EntryCache cache = new EntryCache(1024);
+        fileSystem.setCache(cache);
+
+        byte[] first = fileSystem.readAllBytes("Imploded.txt");
+        first[0] = 0x7F;
+        byte[] second = fileSystem.readAllBytes("Imploded.txt");
+        fileSystem.readAllBytes("Stored.txt");
+        fileSystem.readAllBytes("Stored.txt");
+
+        assertArrayEquals("AIAIAIAIAIAIA".getBytes(StandardCharsets.US_ASCII), second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void test_readAllBytes_CompressedWithoutData()
+            throws IOException, IncorrectFileTypeException, DecompressionException {
+        byte[] archive = new MockedArchives()
+            .addFile(-1, "Empty.txt", new byte[] {0x00})
+            .build();
+        // Compressed, but at offset 0, so nothing is stored for it
+        ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN).putInt(37, 1).putLong(37 + 24, 0);
+        fileSystem = new VirtualFileSystem(Arrays.asList(new ArchiveInput(archive)));
+
+        assertArrayEquals(new byte[0], fileSystem.readAllBytes("Empty.txt"));
+    }
+
+    @Test
+    void test_open_StreamsContents() throws IOException, DecompressionException {
+        assertTrue(fileSystem.exists("Data\\Maps\\Map.txt"));
+        try (InputStream stream = fileSystem.open("Data\\Maps\\Map.txt")) {
+            assertArrayEquals(new byte[] {0x03}, stream.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.kerneweksoftware.h2outility.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.kerneweksoftware.h2outility.exceptions.DecompressionException;
+import com.kerneweksoftware.h2outility.exceptions.IncorrectFileTypeException;
+import com.kerneweksoftware.h2outility.testutils.MockedArchives;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ZipSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void test_extract_WritesReadableZip()
+            throws IOException, InterruptedException, IncorrectFileTypeException, DecompressionException {
+        byte[] text = new byte[4096];
+        Arrays.fill(text, (byte) 'a');
+        byte[] music = new byte[4096];
+        Arrays.fill(music, (byte) 'b');
+        ArchiveInput input = new ArchiveInput(new MockedArchives()
+            .addFolder("Data", -1)
+            .addFolder("Data\\Empty", 0)
+            .addFile(0, "Units.txt", text)
+            .addUnusedFile()
+            .addFile(0, "Theme.ogg", music)
+            .addFile(-1, "Tiny.txt", new byte[] {0x01})
+            .build());
+        Path zip = tempDir.resolve("Archive.zip");
+
+        try (ParallelExtractor extractor = new ParallelExtractor(2, 1024);
+                ZipSink sink = new ZipSink(Files.newOutputStream(zip))) {
+            input.extract(extractor, sink);
+        }
+
+        try (ZipFile file = new ZipFile(zip.toFile())) {
+            assertEquals(5, file.size());
+            assertTrue(file.getEntry("Data/Empty/").isDirectory());
+
+            ZipEntry units = file.getEntry("Data/Units.txt");
+            assertEquals(ZipEntry.DEFLATED, units.getMethod());
+            assertTrue(units.getCompressedSize() < text.length);
+            assertArrayEquals(text, file.getInputStream(units).readAllBytes());
+
+            ZipEntry theme = file.getEntry("Data/Theme.ogg");
+            assertEquals(ZipEntry.STORED, theme.getMethod());
+            assertArrayEquals(music, file.getInputStream(theme).readAllBytes());
+
+            ZipEntry tiny = file.getEntry("Tiny.txt");
+            assertNotNull(tiny);
+            assertEquals(ZipEntry.STORED, tiny.getMethod());
+            assertArrayEquals(new byte[] {0x01}, file.getInputStream(tiny).readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.kerneweksoftware.h2outility.testutils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/** Provides methods for quickly building raw H2O archives with uncompressed name tables and file data. */
+public class MockedArchives {
+
+    private final List<String> folderNames = new ArrayList<>();
+    private final List<Integer> folderParents = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+    private final List<Integer> fileFolders = new ArrayList<>();
+    private final List<byte[]> fileContents = new ArrayList<>();
+
+    public MockedArchives addFolder(String name, int parentIndex) {
+        folderNames.add(name);
+        folderParents.add(parentIndex);
+        return this;
+    }
+
+    public MockedArchives addFile(int folderIndex, String name, byte[] contents) {
+        fileNames.add(name);
+        fileFolders.add(folderIndex);
+        fileContents.add(contents);
+        return this;
+    }
+
+    public MockedArchives addUnusedFile() {
+        fileNames.add(null);
+        fileFolders.add(-1);
+        fileContents.add(null);
+        return this;
+    }
+
+    public byte[] build() {
+        byte[] folderTable = buildNameTable(folderNames);
+        List<String> usedFileNames = new ArrayList<>();
+        for (String name : fileNames) {
+            if (name != null) {
+                usedFileNames.add(name);
+            }
+        }
+        byte[] fileTable = buildNameTable(usedFileNames);
+
+        int headerSize = 8 + 4 + 1 + 4 + 4 + 8 + 8;
+        int entriesSize = 40 * fileNames.size();
+        int structureSize = 4 + 4 * folderParents.size();
+        int dataSize = 0;
+        for (byte[] contents : fileContents) {
+            dataSize += contents == null ? 0 : contents.length;
+        }
+        int dataStart = headerSize + entriesSize + folderTable.length + fileTable.length + structureSize;
+
+        ByteBuffer buffer = ByteBuffer.allocate(dataStart + dataSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("LIQDLH2O".getBytes(StandardCharsets.US_ASCII));
+        buffer.putFloat(6.0f);
+        buffer.put((byte) 0x1A);
+        buffer.putInt(6);
+        buffer.putInt(fileNames.size());
+        buffer.putLong(dataSize);
+        buffer.putLong(dataSize);
+
+        long offset = dataStart;
+        int nameIndex = 0;
+        for (int i = 0; i < fileNames.size(); i++) {
+            byte[] contents = fileContents.get(i);
+            if (contents == null) {
+                buffer.putInt(1);
+                buffer.putInt(-1);
+                buffer.putInt(-1);
+                buffer.putInt(i);
+                buffer.putInt(0);
+                buffer.putInt(0);
+                buffer.putLong(0);
+            } else {
+                buffer.putInt(0);
+                buffer.putInt(fileFolders.get(i));
+                buffer.putInt(nameIndex++);
+                buffer.putInt(i);
+                buffer.putInt(contents.length);
+                buffer.putInt(contents.length);
+                buffer.putLong(offset);
+                offset += contents.length;
+            }
+            buffer.putInt(contents == null ? 0 : crc32(contents, 0, contents.length));
+            buffer.putInt(0);
+        }
+
+        buffer.put(folderTable);
+        buffer.put(fileTable);
+        buffer.putInt(folderParents.size());
+        for (int parent : folderParents) {
+            buffer.putInt(parent);
+        }
+        for (byte[] contents : fileContents) {
+            if (contents != null) {
+                buffer.put(contents);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static byte[] buildNameTable(List<String> names) {
+        int stringsSize = 0;
+        for (String name : names) {
+            stringsSize += (name.length() + 1) * 2;
+        }
+        int rawSize = 8 + stringsSize;
+
+        ByteBuffer buffer = ByteBuffer.allocate(12 + rawSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(rawSize);
+        buffer.putInt(rawSize);
+        buffer.putInt(0);
+        buffer.putInt(names.size());
+        buffer.putInt(rawSize);
+        for (String name : names) {
+            buffer.put(name.getBytes(StandardCharsets.UTF_16LE));
+            buffer.putShort((short) 0);
+        }
+        buffer.putInt(8, crc32(buffer.array(), 12, rawSize));
+        return buffer.array();
+    }
+
+    private static int crc32(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}